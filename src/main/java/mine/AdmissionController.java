@@ -0,0 +1,290 @@
+package mine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import mine.fuzzing.FuzzingMode;
+import mine.fuzzing.Operation;
+import mine.fuzzing.StallDetector;
+import mine.fuzzing.TokenControllerProvider;
+
+/**
+ * The AdmissionController limits how many Carts the Producer lets into the
+ * mine at once.
+ *
+ * Carts are in flight from the moment the Producer admits them until the
+ * Consumer takes them away. Too many and they only queue at the Elevator and
+ * the Stations, too few and the Stations starve. By Little's law the carts in
+ * flight are the throughput times the cycle time, so the controller keeps
+ * the fewest carts that saturate the bottleneck: the best departure rate seen
+ * recently, times the shortest cycle time seen, with a little headroom to
+ * keep probing for more throughput. Station occupancy is the other input:
+ * while the Stations are nearly all occupied as carts leave, more carts could
+ * only queue, so the headroom is dropped.
+ *
+ * The limit never exceeds one cart less than the places a cart can occupy
+ * (every Station, every Engine, dedicated or pooled, and every Elevator), so
+ * that at least one place is always free and the carts can never block each
+ * other all around.
+ */
+
+public class AdmissionController {
+
+	// departures per measurement window
+	static final int WINDOW = 2;
+
+	// number of recent windows over which the best rate is kept
+	static final int RATE_WINDOWS = 8;
+
+	// headroom over the carts in flight that just saturate the bottleneck
+	static final double GAIN = 1.25;
+
+	// share of the stations occupied, on average at a window's departures,
+	// from which no headroom is taken
+	static final double FULL_OCCUPANCY = 0.9;
+
+	// the stations, for their occupancy
+	private final Station[] stations;
+
+	// the most carts ever let in at once
+	private final int cap;
+
+	// whether the limit follows the measured throughput
+	private final boolean adaptive;
+
+	// the current limit on carts in flight
+	private int limit;
+
+	// carts admitted and not yet departed, with the time they were admitted
+	private final Map<Integer, Long> admitted = new HashMap<>();
+
+	// the current window: departures so far and when it started
+	private int windowDepartures = 0;
+	private long windowStart = -1;
+	private long windowCycleNanos = 0;
+	private long windowOccupied = 0;
+
+	// departure rates of the recent windows, in carts per nanosecond
+	private final double[] rates = new double[RATE_WINDOWS];
+	private int windows = 0;
+
+	// the shortest mean cycle time of any window
+	private long minCycleNanos = Long.MAX_VALUE;
+
+	// [STATISTICS] carts and gems that left the mine, their cycle times,
+	// station occupancy seen
+	private long[] cycles = new long[64];
+	private long departed = 0;
+	private long gems = 0;
+	private long occupiedStations = 0;
+	private long firstAdmission = -1;
+	private long lastDeparture = -1;
+
+	// the most carts that can be in flight without the mine jamming, for a
+	// line of stations below one shaft with an engine on each track
+	public static int maxInFlight(int stations) {
+		return maxInFlight(stations, 1, Topology.lineEngines(stations, 1));
+	}
+
+	// the most carts that can be in flight without the mine jamming, given
+	// the stations, the shafts (an elevator each) and the engines
+	public static int maxInFlight(int stations, int shafts, int engines) {
+		return stations + shafts + engines - 1;
+	}
+
+	// create a controller adapting its limit to the measured throughput
+	public AdmissionController(Station[] stations) {
+		this(stations, Topology.lineEngines(stations.length, 1), 1);
+	}
+
+	// create a controller adapting its limit to the measured throughput, for
+	// a mine with the given shafts and engines
+	public AdmissionController(Station[] stations, int shafts, int engines) {
+		this(stations, 1, true, maxInFlight(stations.length, shafts, engines));
+	}
+
+	// create a controller with a fixed limit (at most maxInFlight)
+	public AdmissionController(Station[] stations, int limit) {
+		this(stations, limit, false, maxInFlight(stations.length));
+	}
+
+	private AdmissionController(Station[] stations, int limit, boolean adaptive, int cap) {
+		if (limit < 1) {
+			throw new IllegalArgumentException("limit must be positive: " + limit);
+		}
+		if (cap < 1) {
+			throw new IllegalArgumentException("no place for a cart: " + cap);
+		}
+		this.stations = stations;
+		this.cap = cap;
+		this.limit = Math.min(limit, this.cap);
+		this.adaptive = adaptive;
+	}
+
+	// Lets a cart into the mine once fewer carts than the limit are in flight.
+	public synchronized void admit(Cart cart) throws InterruptedException {
+		while (!canAdmit()) {
+			awaitDeparture();
+		}
+		admitted(cart, System.nanoTime());
+	}
+
+	// Gives back the place of an admitted cart that never entered the mine.
+	public synchronized void withdraw(Cart cart) {
+		if (this.admitted.remove(cart.getId()) != null) {
+			signalDeparture();
+		}
+	}
+
+	// waits for a cart to leave; with fuzzing on, the wait is reported to the
+	// stall detector, like a wait inside a location
+	private void awaitDeparture() throws InterruptedException {
+		if (!FuzzingMode.ENABLED) {
+			wait();
+			return;
+		}
+		StallDetector detector = TokenControllerProvider.getStallDetector();
+		StallDetector.Ticket ticket = detector.enterWait(this, Operation.ADMISSION_ADMIT);
+		try {
+			wait();
+		}
+		finally {
+			detector.leaveWait(ticket);
+		}
+	}
+
+	// wakes the producers waiting for a place
+	private void signalDeparture() {
+		if (FuzzingMode.ENABLED) {
+			TokenControllerProvider.getStallDetector().signal(this);
+		}
+		notifyAll();
+	}
+
+	// Records that a cart has left the mine, freeing its place.
+	public void departed(Cart cart) {
+		departed(cart, System.nanoTime());
+	}
+
+	// an admission at the given time, once the limit allows it
+	synchronized void admitted(Cart cart, long now) {
+		this.admitted.put(cart.getId(), now);
+		if (this.firstAdmission < 0) {
+			this.firstAdmission = now;
+			this.windowStart = now;
+		}
+	}
+
+	// a departure at the given time
+	synchronized void departed(Cart cart, long now) {
+		Long since = this.admitted.remove(cart.getId());
+		if (since == null) {
+			// not admitted through this controller
+			return;
+		}
+		if (this.departed == this.cycles.length) {
+			this.cycles = Arrays.copyOf(this.cycles, 2 * this.cycles.length);
+		}
+		this.cycles[(int) this.departed++] = now - since;
+		this.gems += cart.getGems();
+		this.lastDeparture = now;
+		for (Station s : this.stations) {
+			if (s.hasCart()) {
+				this.occupiedStations++;
+				this.windowOccupied++;
+			}
+		}
+
+		this.windowCycleNanos += now - since;
+		if (++this.windowDepartures == WINDOW) {
+			endWindow(now);
+		}
+		signalDeparture();
+	}
+
+	// measures the window just ended, and sets the limit from the best rate
+	// and the shortest cycle time measured, and the window's occupancy
+	private void endWindow(long now) {
+		long elapsed = Math.max(1, now - this.windowStart);
+		this.rates[this.windows++ % RATE_WINDOWS] = (double) WINDOW / elapsed;
+		this.minCycleNanos = Math.min(this.minCycleNanos, this.windowCycleNanos / WINDOW);
+		boolean full = this.stations.length > 0
+				&& this.windowOccupied >= FULL_OCCUPANCY * WINDOW * this.stations.length;
+		this.windowDepartures = 0;
+		this.windowCycleNanos = 0;
+		this.windowOccupied = 0;
+		this.windowStart = now;
+
+		if (this.adaptive) {
+			double rate = 0;
+			for (int i = 0; i < Math.min(this.windows, RATE_WINDOWS); i++) {
+				rate = Math.max(rate, this.rates[i]);
+			}
+			int target = (int) Math.ceil((full ? 1 : GAIN) * rate * this.minCycleNanos);
+			this.limit = Math.max(1, Math.min(this.cap, target));
+		}
+	}
+
+	// --- Observation helpers ---
+
+	/** True iff admit() can proceed without blocking. */
+	public synchronized boolean canAdmit() {
+		return this.admitted.size() < this.limit;
+	}
+
+	/** The current limit on carts in flight. */
+	public synchronized int getLimit() {
+		return limit;
+	}
+
+	/** Number of carts admitted and not yet departed. */
+	public synchronized int getInFlight() {
+		return admitted.size();
+	}
+
+	/** Number of carts that left the mine. */
+	public synchronized long getDeparted() {
+		return departed;
+	}
+
+	/** Number of gems carried out of the mine. */
+	public synchronized long getGems() {
+		return gems;
+	}
+
+	/** Gems carried out per second, from the first admission to the last departure. */
+	public synchronized double getGemsPerSecond() {
+		return lastDeparture <= firstAdmission ? 0 : gems * 1e9 / (lastDeparture - firstAdmission);
+	}
+
+	/** Carts carried out per second, from the first admission to the last departure. */
+	public synchronized double getCartsPerSecond() {
+		return lastDeparture <= firstAdmission ? 0 : departed * 1e9 / (lastDeparture - firstAdmission);
+	}
+
+	/** Shortest mean cycle time of a measurement window, in ms (0 before the first). */
+	public synchronized double getMinCycleMillis() {
+		return minCycleNanos == Long.MAX_VALUE ? 0 : minCycleNanos / 1e6;
+	}
+
+	/** The given quantile (0 to 1) of the carts' cycle times, in ms (0 before the first). */
+	public synchronized double getCycleMillis(double quantile) {
+		if (departed == 0) {
+			return 0;
+		}
+		long[] sorted = Arrays.copyOf(cycles, (int) departed);
+		Arrays.sort(sorted);
+		int at = (int) Math.ceil(quantile * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, at))] / 1e6;
+	}
+
+	public String toString() {
+		return "admission";
+	}
+
+	/** Mean number of stations holding a cart, sampled at each departure. */
+	public synchronized double getMeanStationOccupancy() {
+		return departed == 0 ? 0 : (double) occupiedStations / departed;
+	}
+}
@@ -1,5 +1,7 @@
 package mine;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * The carts that collect gems from the mines.
  * 
@@ -15,8 +17,9 @@ public class Cart {
 	// a unique identifier for this cart
 	protected int id;
 	
-	// the identifier for the next created cart
-	private static int nextId = 1;
+	// the identifier for the next created cart; carts are created by a
+	// producer per shaft at once
+	private static final AtomicInteger nextId = new AtomicInteger(1);
 	
 	// the number of gems carried by a cart
 	protected int gems;
@@ -28,7 +31,13 @@ public class Cart {
 	
 	// create a new cart with a unique identifier
 	public static Cart getNewCart() {
-		return new Cart(nextId++);
+		return new Cart(nextId.getAndIncrement());
+	}
+	
+	// [FUZZING] numbers carts from 1 again, so that a mine reset in place
+	// creates the same carts; only call while no cart is being created
+	static void reset() {
+		nextId.set(1);
 	}
 	
 	public String toString() {
@@ -1,5 +1,9 @@
 package mine;
 
+import mine.fuzzing.ThreadToken;
+import mine.fuzzing.TokenHolder;
+import mine.fuzzing.TokenHooks;
+
 /**
  * The consumer class is responsible for disposing of carts once they 
  * have completed their visit to the mines.
@@ -11,14 +15,32 @@ package mine;
  * @date 6 March 2025
  */
 
-public class Consumer extends Thread {
+public class Consumer extends Thread implements TokenHolder {
 
 	// the elevator that carts are taken from
 	private Elevator elevator;
 	
+	// told of each cart leaving the mine (null if admission is not limited)
+	private final AdmissionController admission;
+	
+	// [FUZZING] token bound at construction (null outside fuzzing harnesses)
+	private final ThreadToken token;
+	
 	// create a new consumer
 	public Consumer(Elevator elevator) {
+		this(elevator, null);
+	}
+	
+	// create a new consumer carrying a fuzzing token
+	public Consumer(Elevator elevator, ThreadToken token) {
+		this(elevator, token, null);
+	}
+	
+	// create a new consumer freeing a place in the mine for each cart removed
+	public Consumer(Elevator elevator, ThreadToken token, AdmissionController admission) {
 		this.elevator = elevator;
+		this.token = token;
+		this.admission = admission;
 	}
 
 	// carts are removed from the elevator at random intervals
@@ -26,8 +48,7 @@ public class Consumer extends Thread {
 		while(!this.isInterrupted()) {
 			try {
 				// [FUZZING-HOOK] Allow token-based control of loop iteration
-				mine.fuzzing.ThreadToken token = mine.fuzzing.TokenControllerProvider.getRegistry().getCurrentThreadToken();
-				mine.fuzzing.TokenControllerProvider.getController().onLoopIteration(token);
+				TokenHooks.onLoopIteration(this.token);
 				
 				// [LOGGING] loop iteration start
 				if (token != null) {
@@ -38,11 +59,18 @@ public class Consumer extends Thread {
 				Cart c = this.elevator.depart();
 				// [LOGGING] cart departs from mine
 				MineLogger.log("CONSUMER", c + " departs from mine");
+				if (this.admission != null) {
+					this.admission.departed(c);
+				}
 				
 				// pause before removing a further cart
 				sleep(Params.departurePause());
 			}
 			catch (InterruptedException e) {
+				// [FUZZING-HOOK] a persistent harness interrupts to rewind the iteration
+				if (TokenHooks.onInterrupted(this.token)) {
+					continue;
+				}
 				this.interrupt();
 			}
 		}
@@ -60,4 +88,9 @@ public class Consumer extends Thread {
 	public Elevator getElevator() {
 		return elevator;
 	}
+
+	@Override
+	public ThreadToken getToken() {
+		return token;
+	}
 }
@@ -0,0 +1,45 @@
+package mine;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A Destination is somewhere an Engine can deliver Carts to: a Location,
+ * or a place that passes each cart on to a location, such as a ShaftRouter
+ * or a Junction. Carts are collected from Locations only.
+ */
+
+public interface Destination {
+
+	// Delivers a Cart, waiting until there is room for it.
+	void deliver(Cart cart) throws InterruptedException;
+
+	// Delivers a Cart, waiting at most the given time for room for it.
+	// Returns false, the cart still with the caller, if it could not be
+	// delivered in time.
+	boolean tryDeliver(Cart cart, long timeout, TimeUnit unit) throws InterruptedException;
+
+	// Delivers a Cart once possible, without blocking the calling thread.
+	// The future completes once delivered, or is cancelled without delivering.
+	CompletableFuture<Void> deliverAsync(Cart cart);
+
+	/**
+	 * Returns true if deliver() may proceed without blocking.
+	 */
+	boolean canDeliver();
+
+	// Whether a cart given up on may be delivered somewhere else when tried
+	// again. A Location only ever takes carts itself.
+	default boolean canReroute() {
+		return false;
+	}
+
+	// [ENGINE-POOL] The Locations a cart delivered here may end up at.
+	List<Location> locations();
+
+	// [ENGINE-POOL] Runs the given listener on every later change that may
+	// let deliver() proceed. It must not block or take another location's
+	// monitor.
+	void addChangeListener(Runnable listener);
+}
@@ -1,5 +1,11 @@
 package mine;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import mine.fuzzing.Operation;
+import mine.fuzzing.TokenHooks;
+
 /**
  * The Elevator transports Carts from above ground to below ground.
  * 
@@ -17,9 +23,26 @@ public class Elevator extends Location {
 	// the cart currently in the elevator (if any)
 	private Cart cart = null;
 	
+	// [CALL-BUTTON] roles waiting for the car at each end: the Producer in
+	// arrive() at the top, an Engine in deliver() at the bottom
+	private int topCalls = 0;
+	private int bottomCalls = 0;
+	// number of operators waiting in awaitCall()
+	private int callWaiters = 0;
+	
+	// [STATISTICS] empty trips, and how long carts waited to be loaded
+	private long emptyTrips = 0;
+	private long cartsLoaded = 0;
+	private long totalCartWaitNanos = 0;
+	private long maxCartWaitNanos = 0;
+	
 	// Operates the elevator, moving it from the top to the bottom of the shaft.
 	public synchronized void operate() {
 		
+		beginTransition();
+		if (this.cart == null) {
+			this.emptyTrips++;
+		}
 //		if ("top".equals(this.current)) {
 		if (atTop) {
 			this.current = "bottom";
@@ -43,48 +66,144 @@ public class Elevator extends Location {
 				MineLogger.log("ELEVATOR", "ascends (empty)");
 			}
 		}
+		endTransition(null);
 		
-		notifyAll();
+		signalChange();
 	}
 
 	// Operates the elevator once it is empty.
-	public synchronized void operateEmpty() throws InterruptedException {
+	public void operateEmpty() throws InterruptedException {
+		// [FUZZING-HOOK] operation hooks run outside the monitor
+		TokenHooks.beforeOperation(Operation.ELEVATOR_OPERATE_EMPTY);
+		doOperateEmpty();
+		TokenHooks.afterOperation(Operation.ELEVATOR_OPERATE_EMPTY);
+	}
+
+	private synchronized void doOperateEmpty() throws InterruptedException {
 		
 		while (this.cart != null) {
-			wait();
+			awaitChange(Operation.ELEVATOR_OPERATE_EMPTY);
 		}
 		
+		beginTransition();
+		this.operate();
+		endTransition(Operation.ELEVATOR_OPERATE_EMPTY);
+		signalChange();
+	}
+	
+	// Waits until the elevator is empty and called to the other end of the
+	// shaft, without operating it: the operator first takes the time the car
+	// travels there, then calls operateOnCall().
+	public synchronized void awaitCall() throws InterruptedException {
+		this.callWaiters++;
+		try {
+			while (!canOperateOnCall()) {
+				awaitChange(Operation.ELEVATOR_OPERATE_ON_CALL);
+			}
+		}
+		finally {
+			this.callWaiters--;
+		}
+	}
+	
+	// Operates the elevator if it is still empty and called to the other end
+	// of the shaft, so that it never travels empty without a reason. Returns
+	// false, without operating it, otherwise.
+	public boolean operateOnCall() throws InterruptedException {
+		// [FUZZING-HOOK] operation hooks run outside the monitor
+		TokenHooks.beforeOperation(Operation.ELEVATOR_OPERATE_ON_CALL);
+		boolean operated = doOperateOnCall();
+		TokenHooks.afterOperation(Operation.ELEVATOR_OPERATE_ON_CALL);
+		return operated;
+	}
+	
+	private synchronized boolean doOperateOnCall() {
+		if (!canOperateOnCall()) {
+			return false;
+		}
+		beginTransition();
 		this.operate();
-		notifyAll();
+		endTransition(Operation.ELEVATOR_OPERATE_ON_CALL);
+		signalChange();
+		return true;
+	}
+	
+	// [CALL-BUTTON] registers a role waiting at one end of the shaft; wakes a
+	// waiting operator if the car is not there to serve it
+	private void call(boolean top) {
+		if (top) {
+			this.topCalls++;
+		}
+		else {
+			this.bottomCalls++;
+		}
+		if (this.callWaiters > 0 && canOperateOnCall()) {
+			signalChange();
+		}
+	}
+	
+	// [STATISTICS] a cart waiting since the given time has been loaded
+	private void loaded(long since) {
+		long waited = System.nanoTime() - since;
+		this.cartsLoaded++;
+		this.totalCartWaitNanos += waited;
+		this.maxCartWaitNanos = Math.max(this.maxCartWaitNanos, waited);
 	}
 	
 	// Allows the Producer to deliver a Cart to the top of the shaft, once
 	// elevator present and empty.
-	public synchronized void arrive(Cart cart) throws InterruptedException {
+	public void arrive(Cart cart) throws InterruptedException {
+		// [FUZZING-HOOK] operation hooks run outside the monitor
+		TokenHooks.beforeOperation(Operation.ELEVATOR_ARRIVE);
+		doArrive(cart);
+		TokenHooks.afterOperation(Operation.ELEVATOR_ARRIVE);
+	}
+
+	private synchronized void doArrive(Cart cart) throws InterruptedException {
 			
-//		while (this.cart != null || "bottom".equals(this.current)) {
-		while (this.cart != null || !atTop) {
-			wait();
+		long since = System.nanoTime();
+		call(true);
+		try {
+//			while (this.cart != null || "bottom".equals(this.current)) {
+			while (this.cart != null || !atTop) {
+				awaitChange(Operation.ELEVATOR_ARRIVE);
+			}
+		}
+		finally {
+			this.topCalls--;
 		}
 		
+		beginTransition();
 		this.cart = cart;
+		loaded(since);
 		this.operate();
-		notifyAll();
+		endTransition(Operation.ELEVATOR_ARRIVE);
+		signalChange();
 		
 	}
 
 	// Allows the Consumer to collect a Cart from the top of the shaft, once
 	// elevator present and not empty.
-	public synchronized Cart depart() throws InterruptedException {
+	public Cart depart() throws InterruptedException {
+		// [FUZZING-HOOK] operation hooks run outside the monitor
+		TokenHooks.beforeOperation(Operation.ELEVATOR_DEPART);
+		Cart c = doDepart();
+		TokenHooks.afterOperation(Operation.ELEVATOR_DEPART);
+		return c;
+	}
+
+	private synchronized Cart doDepart() throws InterruptedException {
 		
 //		while (this.cart == null || "bottom".equals(this.current)) {
 		while (this.cart == null || !atTop) {
-			wait();
+			awaitChange(Operation.ELEVATOR_DEPART);
 		}
 		
+		beginTransition();
 		Cart c = this.cart;
 		this.cart = null;
-		notifyAll();
+		endTransition(Operation.ELEVATOR_DEPART);
+		signalChange();
 			
 		return c;		
 	}
@@ -92,18 +211,61 @@ public class Elevator extends Location {
 	// Allows an Engine to collect Cart from the bottom of the Elevator, once
 	// present and not empty.
 	@Override
-	public synchronized Cart collect() throws InterruptedException {
+	public Cart collect() throws InterruptedException {
+		// [FUZZING-HOOK] operation hooks run outside the monitor
+		TokenHooks.beforeOperation(Operation.ELEVATOR_COLLECT);
+		Cart c = doCollect();
+		TokenHooks.afterOperation(Operation.ELEVATOR_COLLECT);
+		return c;
+	}
+
+	private synchronized Cart doCollect() throws InterruptedException {
 		
 //		while (this.cart == null || "top".equals(this.current)) {
 		while  (this.cart == null || atTop) {
-			wait();
+			awaitChange(Operation.ELEVATOR_COLLECT);
 		}
 		
+		return unload();
+	}
+
+	// Collects a Cart as collect() does, waiting at most the given time.
+	@Override
+	public Cart tryCollect(long timeout, TimeUnit unit) throws InterruptedException {
+		// [FUZZING-HOOK] operation hooks run outside the monitor
+		TokenHooks.beforeOperation(Operation.ELEVATOR_COLLECT);
+		Cart c = doTryCollect(deadline(timeout, unit));
+		TokenHooks.afterOperation(Operation.ELEVATOR_COLLECT);
+		return c;
+	}
+
+	private synchronized Cart doTryCollect(long deadline) throws InterruptedException {
+		
+		while (!canCollectFromBottom()) {
+			if (!awaitChange(Operation.ELEVATOR_COLLECT, deadline)) {
+				return null;
+			}
+		}
+		
+		return unload();
+	}
+
+	// Collects a Cart from the bottom of the Elevator once present and not
+	// empty, without blocking.
+	@Override
+	public CompletableFuture<Cart> collectAsync() {
+		return whenPossible(this::canCollectFromBottom, this::unload, null);
+	}
+
+	// takes the cart out of the car at the bottom
+	private Cart unload() {
+		beginTransition();
 		Cart c = this.cart;
 		this.cart = null;
+		endTransition(Operation.ELEVATOR_COLLECT);
 		// [LOGGING] cart collected from elevator
 		MineLogger.log("ELEVATOR", c + " collected from elevator");
-		notifyAll();
+		signalChange();
 		
 		return c;
 	}
@@ -111,18 +273,86 @@ public class Elevator extends Location {
 	// Allows an Engine to deliver a Cart to the bottom of the Elevator, once 
 	// present and empty.
 	@Override
-	public synchronized void deliver(Cart cart) throws InterruptedException {
+	public void deliver(Cart cart) throws InterruptedException {
+		// [FUZZING-HOOK] operation hooks run outside the monitor
+		TokenHooks.beforeOperation(Operation.ELEVATOR_DELIVER);
+		doDeliver(cart);
+		TokenHooks.afterOperation(Operation.ELEVATOR_DELIVER);
+	}
+
+	private synchronized void doDeliver(Cart cart) throws InterruptedException {
 		
-//		while (this.cart != null || "top".equals(this.current)) {
-		while (this.cart != null || atTop) {
-			wait();
+		long since = System.nanoTime();
+		call(false);
+		try {
+//			while (this.cart != null || "top".equals(this.current)) {
+			while (this.cart != null || atTop) {
+				awaitChange(Operation.ELEVATOR_DELIVER);
+			}
 		}
-			
+		finally {
+			this.bottomCalls--;
+		}
+		
+		load(cart, since);
+	}
+
+	// Delivers a Cart as deliver() does, waiting at most the given time. The
+	// cart calls the car only while it waits.
+	@Override
+	public boolean tryDeliver(Cart cart, long timeout, TimeUnit unit) throws InterruptedException {
+		// [FUZZING-HOOK] operation hooks run outside the monitor
+		TokenHooks.beforeOperation(Operation.ELEVATOR_DELIVER);
+		boolean delivered = doTryDeliver(cart, deadline(timeout, unit));
+		TokenHooks.afterOperation(Operation.ELEVATOR_DELIVER);
+		return delivered;
+	}
+
+	private synchronized boolean doTryDeliver(Cart cart, long deadline) throws InterruptedException {
+		
+		long since = System.nanoTime();
+		call(false);
+		try {
+			while (!canDeliverToBottom()) {
+				if (!awaitChange(Operation.ELEVATOR_DELIVER, deadline)) {
+					return false;
+				}
+			}
+		}
+		finally {
+			this.bottomCalls--;
+		}
+		
+		load(cart, since);
+		return true;
+	}
+
+	// Delivers a Cart to the bottom of the Elevator once present and empty,
+	// without blocking. The cart calls the car while it waits.
+	@Override
+	public CompletableFuture<Void> deliverAsync(Cart cart) {
+		long since = System.nanoTime();
+		synchronized (this) {
+			call(false);
+		}
+		return whenPossible(this::canDeliverToBottom, () -> {
+			this.bottomCalls--;
+			load(cart, since);
+			return null;
+		}, () -> this.bottomCalls--);
+	}
+
+	// puts a cart waiting since the given time into the car at the bottom,
+	// and sends it up
+	private void load(Cart cart, long since) {
+		beginTransition();
 		this.cart = cart;
+		loaded(since);
 		// [LOGGING] cart delivered to elevator
 		MineLogger.log("ELEVATOR", this.cart + " delivered to elevator");
 		this.operate();
-		notifyAll();
+		endTransition(Operation.ELEVATOR_DELIVER);
+		signalChange();
 				
 	}
 
@@ -146,6 +376,16 @@ public class Elevator extends Location {
 		return current;
 	}
 
+	public String toString() {
+		return "elevator";
+	}
+
+	// bit 0: cart present, bit 1: at the top
+	@Override
+	protected int stateBits() {
+		return (this.cart != null ? 1 : 0) | (this.atTop ? 2 : 0);
+	}
+
 	// --- [FUZZING] Predicate methods to check if operations can proceed ---
 
 	/**
@@ -180,6 +420,12 @@ public class Elevator extends Location {
 		return this.cart == null && !atTop;
 	}
 
+	// Carts are delivered to the bottom of the elevator.
+	@Override
+	public boolean canDeliver() {
+		return canDeliverToBottom();
+	}
+
 	/**
 	 * Returns true if operateEmpty() can proceed without blocking.
 	 * Condition: elevator must be empty
@@ -187,4 +433,59 @@ public class Elevator extends Location {
 	public synchronized boolean canOperateEmpty() {
 		return this.cart == null;
 	}
+
+	/**
+	 * Returns true if operateOnCall() operates the elevator, and awaitCall()
+	 * returns, without blocking.
+	 * Condition: elevator must be empty, and a role must be waiting for it
+	 * at the other end of the shaft
+	 */
+	public synchronized boolean canOperateOnCall() {
+		return this.cart == null && (atTop ? bottomCalls > 0 : topCalls > 0);
+	}
+
+	// --- [STATISTICS] Comparing operator policies ---
+
+	/** Number of roles waiting for the car in arrive() (top) or deliver() (bottom). */
+	public synchronized int getCalls(boolean top) {
+		return top ? topCalls : bottomCalls;
+	}
+
+	/** Number of trips the car made while empty. */
+	public synchronized long getEmptyTrips() {
+		return emptyTrips;
+	}
+
+	/** Number of carts loaded into the car, at either end. */
+	public synchronized long getCartsLoaded() {
+		return cartsLoaded;
+	}
+
+	/** Mean time a cart waited in arrive() or deliver() to be loaded, in ms. */
+	public synchronized double getMeanCartWaitMillis() {
+		return cartsLoaded == 0 ? 0 : totalCartWaitNanos / 1e6 / cartsLoaded;
+	}
+
+	/** Longest time a cart waited in arrive() or deliver() to be loaded, in ms. */
+	public synchronized double getMaxCartWaitMillis() {
+		return maxCartWaitNanos / 1e6;
+	}
+
+	// --- [FUZZING] Reuse of one mine across fuzz inputs ---
+
+	/**
+	 * Returns the elevator to its initial state: empty, at the top.
+	 * Only call while no role is using the elevator.
+	 */
+	public synchronized void reset() {
+		this.cart = null;
+		this.current = "top";
+		this.atTop = true;
+		this.topCalls = 0;
+		this.bottomCalls = 0;
+		this.emptyTrips = 0;
+		this.cartsLoaded = 0;
+		this.totalCartWaitNanos = 0;
+		this.maxCartWaitNanos = 0;
+	}
 }
@@ -1,5 +1,9 @@
 package mine;
 
+import mine.fuzzing.ThreadToken;
+import mine.fuzzing.TokenHolder;
+import mine.fuzzing.TokenHooks;
+
 /**
  * Engines transport Carts between Locations, including Stations and the bottom
  * of the Elevator.
@@ -8,19 +12,30 @@ package mine;
  * @date 6 March 2025
  */
 
-public class Engine extends Thread {
+public class Engine extends Thread implements TokenHolder {
 
 	// the engine's origin location (elevator or station)
 	protected Location origin;
 	
-	// the engine's destination location (elevator or station)
-	protected Location destination;
+	// the engine's destination (elevator, station, or a router to them)
+	protected Destination destination;
 
     private volatile boolean inMid = false;
+
+	// [STATISTICS] deliveries given up on after Params.ENGINE_PATIENCE, and tried again
+	private volatile long retries = 0;
+
+	// [FUZZING] token bound at construction (null outside fuzzing harnesses)
+	private final ThreadToken token;
+	
+	public Engine(Location origin, Destination destination) {
+		this(origin, destination, null);
+	}
 	
-	public Engine(Location origin, Location destination) {
+	public Engine(Location origin, Destination destination, ThreadToken token) {
 		this.origin = origin;
 		this.destination = destination;
+		this.token = token;
         this.inMid = false;
 	}
 	
@@ -28,8 +43,7 @@ public class Engine extends Thread {
 		while (!this.isInterrupted()) {
 			try {
 				// [FUZZING-HOOK] Allow token-based control of loop iteration
-				mine.fuzzing.ThreadToken token = mine.fuzzing.TokenControllerProvider.getRegistry().getCurrentThreadToken();
-				mine.fuzzing.TokenControllerProvider.getController().onLoopIteration(token);
+				TokenHooks.onLoopIteration(this.token);
 				
 				// [LOGGING] loop iteration start
 				if (token != null) {
@@ -40,18 +54,22 @@ public class Engine extends Thread {
 				Cart cart = this.origin.collect();
 
                 this.inMid = true;
-
-                mine.fuzzing.TokenControllerProvider.getController().onLoopIteration(token);
 				
 				// wait for the duration of the journey
-				sleep(Params.ENGINE_TIME);
+				sleep(Params.engineTime());
 				
 				// deliver a cart to the destination
-				this.destination.deliver(cart);
+				this.retries += Segment.deliver(this.destination, cart);
 
                 this.inMid = false;
 			}
 			catch (InterruptedException e) {
+				// [FUZZING-HOOK] a persistent harness interrupts to rewind the
+				// iteration; any cart collected so far is dropped with it
+				if (TokenHooks.onInterrupted(this.token)) {
+					this.inMid = false;
+					continue;
+				}
                 System.out.println(e);
 				this.interrupt();
 			}
@@ -68,33 +86,28 @@ public class Engine extends Thread {
         if (!inMid) {
             return canCollectFrom(origin);
         } else {
-            return canDeliverTo(destination);
+            return destination.canDeliver();
         }
     }
     private boolean canCollectFrom(Location loc) {
-        if (loc instanceof Elevator elev) {
-            return elev.canCollectFromBottom();
-        } else if (loc instanceof Station station) {
-            return station.canCollect();
-        } else {
-            throw new IllegalStateException("Unknown origin location type: " + loc.getClass());
-        }
-    }
-    private boolean canDeliverTo(Location loc) {
-        if (loc instanceof Elevator elev) {
-            return elev.canDeliverToBottom();
-        } else if (loc instanceof Station station) {
-            return station.canDeliver();
-        } else {
-            throw new IllegalStateException("Unknown destination location type: " + loc.getClass());
-        }
+        return Segment.canCollectFrom(loc);
     }
 
+	/** Number of deliveries given up on after Params.ENGINE_PATIENCE, and tried again. */
+	public long getRetries() {
+		return retries;
+	}
+
 	public Location getOrigin() {
 		return origin;
 	}
 
-	public Location getDestination() {
+	public Destination getDestination() {
 		return destination;
 	}
+
+	@Override
+	public ThreadToken getToken() {
+		return token;
+	}
 }
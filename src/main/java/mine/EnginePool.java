@@ -0,0 +1,283 @@
+package mine;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The EnginePool shares a fixed number of Engines among all the Segments of
+ * the mine, instead of binding one Engine to each.
+ *
+ * The segments are split into as many contiguous groups as there are
+ * engines, each with a queue of segments that may have become ready. A
+ * Location queues the segments through it whenever its state changes. Each
+ * engine serves its own group's queue first, newest segment first, and only
+ * when that is empty steals the oldest segment from another group's queue.
+ *
+ * A pooled engine collects a cart only when the segment's destination can
+ * take it, and claims every Location a cart delivered there may end up at
+ * (the destination itself, or each location behind a Junction or
+ * ShaftRouter) until the cart is delivered, so that where several segments
+ * end at the same location (the tracks from each elevator to the first
+ * station, merging branches, or a branch and a direct track into the same
+ * station) a second engine does not collect a cart for it meanwhile. So no
+ * cart waits on an engine for a full station, as long as a router sends
+ * each cart down a branch that can take it, as Router.firstFree() does. Only
+ * the engine carrying a cart to the Elevator can be held up, until another
+ * engine empties the Elevator: the pool needs at least two engines.
+ */
+
+public class EnginePool {
+
+	// the segments served, and their groups' queues
+	private final List<Segment> segments;
+	private final List<ConcurrentLinkedDeque<Segment>> queues = new ArrayList<>();
+
+	// the claim on each location carts are delivered to, and the segments
+	// that may end there, by claim
+	private final Map<Location, AtomicBoolean> claims = new IdentityHashMap<>();
+	private final Map<AtomicBoolean, List<Segment>> into = new IdentityHashMap<>();
+
+	// the pooled engines
+	private final List<PooledEngine> engines = new ArrayList<>();
+
+	// idle engines wait on this lock for a segment to be queued
+	private final Object idleLock = new Object();
+	private volatile int idle = 0;
+
+	// [STATISTICS] trips made and segments stolen, per engine
+	private final AtomicLongArray trips;
+	private final AtomicLongArray steals;
+	private final AtomicLong retries = new AtomicLong();
+
+	// create a pool of the given number of engines serving the given segments
+	public EnginePool(List<Segment> segments, int engines) {
+		if (engines < 2) {
+			throw new IllegalArgumentException("a pool needs at least two engines: " + engines);
+		}
+		this.segments = List.copyOf(segments);
+		int groups = Math.min(engines, segments.size());
+		for (int g = 0; g < groups; g++) {
+			this.queues.add(new ConcurrentLinkedDeque<>());
+		}
+		for (int i = 0; i < segments.size(); i++) {
+			segments.get(i).group = (int) ((long) i * groups / segments.size());
+		}
+		for (Segment s : this.segments) {
+			List<Location> ends = s.getDestination().locations();
+			s.inbound = new AtomicBoolean[ends.size()];
+			for (int i = 0; i < ends.size(); i++) {
+				s.inbound[i] = this.claims.computeIfAbsent(ends.get(i), loc -> new AtomicBoolean(false));
+				this.into.computeIfAbsent(s.inbound[i], claim -> new ArrayList<>()).add(s);
+			}
+		}
+		for (int e = 0; e < engines; e++) {
+			this.engines.add(new PooledEngine(e, e % groups));
+		}
+		this.trips = new AtomicLongArray(engines);
+		this.steals = new AtomicLongArray(engines);
+
+		// queue a segment whenever a location on it changes
+		for (Segment s : this.segments) {
+			s.getOrigin().addChangeListener(() -> offer(s));
+			s.getDestination().addChangeListener(() -> offer(s));
+		}
+	}
+
+	// starts every engine, with every segment queued once
+	public void start() {
+		for (Segment s : this.segments) {
+			offer(s);
+		}
+		for (PooledEngine e : this.engines) {
+			e.start();
+		}
+	}
+
+	// stops every engine, and waits for them to finish
+	public void stop() throws InterruptedException {
+		for (PooledEngine e : this.engines) {
+			e.interrupt();
+		}
+		for (PooledEngine e : this.engines) {
+			e.join();
+		}
+	}
+
+	public List<? extends Thread> getEngines() {
+		return engines;
+	}
+
+	// queues a segment that may have become ready, unless already queued
+	void offer(Segment s) {
+		if (s.queued.compareAndSet(false, true)) {
+			this.queues.get(s.group).addLast(s);
+			if (this.idle > 0) {
+				synchronized (this.idleLock) {
+					this.idleLock.notify();
+				}
+			}
+		}
+	}
+
+	// claims a ready segment for the engine at the given index, from its own
+	// group first and then from the others; null if none is ready
+	Segment poll(int engine) {
+		int home = this.engines.get(engine).home;
+		for (int i = 0; i < this.queues.size(); i++) {
+			ConcurrentLinkedDeque<Segment> queue = this.queues.get((home + i) % this.queues.size());
+			Segment s;
+			while ((s = i == 0 ? queue.pollLast() : queue.pollFirst()) != null) {
+				// changes from now on queue the segment again
+				s.queued.set(false);
+				if (!s.busy.compareAndSet(false, true)) {
+					// queued again when the engine serving it is done
+					continue;
+				}
+				if (!claim(s)) {
+					// queued again when the cart carried there is delivered
+					s.busy.set(false);
+					continue;
+				}
+				if (s.isReady()) {
+					if (i != 0) {
+						this.steals.incrementAndGet(engine);
+					}
+					return s;
+				}
+				release(s);
+			}
+		}
+		return null;
+	}
+
+	// claims every location a claimed segment may deliver to, or none if
+	// another engine is carrying a cart to any of them
+	private boolean claim(Segment s) {
+		for (int i = 0; i < s.inbound.length; i++) {
+			if (!s.inbound[i].compareAndSet(false, true)) {
+				while (--i >= 0) {
+					s.inbound[i].set(false);
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// releases a claimed segment and the locations it delivers to, queueing
+	// the segments that may end there again in case they are ready after a
+	// change seen, and dropped, while they were claimed
+	void release(Segment s) {
+		for (AtomicBoolean claim : s.inbound) {
+			claim.set(false);
+		}
+		s.busy.set(false);
+		for (AtomicBoolean claim : s.inbound) {
+			for (Segment t : this.into.get(claim)) {
+				if (t.isReady()) {
+					offer(t);
+				}
+			}
+		}
+	}
+
+	// waits until a segment is claimed for the engine at the given index
+	private Segment next(int engine) throws InterruptedException {
+		while (true) {
+			Segment s = poll(engine);
+			if (s != null) {
+				return s;
+			}
+			synchronized (this.idleLock) {
+				this.idle++;
+				try {
+					if (!hasQueued()) {
+						this.idleLock.wait();
+					}
+				}
+				finally {
+					this.idle--;
+				}
+			}
+		}
+	}
+
+	private boolean hasQueued() {
+		for (ConcurrentLinkedDeque<Segment> queue : this.queues) {
+			if (!queue.isEmpty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// --- [STATISTICS] ---
+
+	/** Number of trips made by every engine. */
+	public long getTrips() {
+		long total = 0;
+		for (int e = 0; e < this.trips.length(); e++) {
+			total += this.trips.get(e);
+		}
+		return total;
+	}
+
+	/** Number of segments served from another engine's group. */
+	public long getSteals() {
+		long total = 0;
+		for (int e = 0; e < this.steals.length(); e++) {
+			total += this.steals.get(e);
+		}
+		return total;
+	}
+
+	/** Number of deliveries given up on after Params.ENGINE_PATIENCE, and tried again. */
+	public long getRetries() {
+		return retries.get();
+	}
+
+	// An engine of the pool: carries a cart along each segment it claims.
+	private class PooledEngine extends Thread {
+
+		// index of this engine, and of its own group of segments
+		private final int index;
+		private final int home;
+
+		PooledEngine(int index, int home) {
+			super("engine-pool-" + index);
+			this.index = index;
+			this.home = home;
+		}
+
+		public void run() {
+			while (!this.isInterrupted()) {
+				try {
+					Segment s = next(this.index);
+					try {
+						// collect a cart from the origin
+						Cart cart = s.getOrigin().collect();
+
+						// wait for the duration of the journey
+						sleep(Params.engineTime());
+
+						// deliver a cart to the destination
+						retries.addAndGet(Segment.deliver(s.getDestination(), cart));
+						trips.incrementAndGet(this.index);
+					}
+					finally {
+						release(s);
+					}
+				}
+				catch (InterruptedException e) {
+					this.interrupt();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package mine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A Junction is where a track branches: an Engine delivering a Cart to the
+ * junction delivers it to whichever of the branches' destinations the
+ * Router picks.
+ *
+ * Carts are never collected from a junction, which is a Destination only.
+ */
+
+public class Junction implements Destination {
+
+	// the location the branches leave from
+	private final Location from;
+
+	// the destinations the branches lead to
+	private final List<Destination> choices;
+
+	// decides the branch for each cart
+	private final Router router;
+
+	public Junction(Location from, List<? extends Destination> choices, Router router) {
+		if (choices.size() < 2) {
+			throw new IllegalArgumentException("a junction needs at least two branches: " + choices);
+		}
+		this.from = from;
+		this.choices = List.copyOf(choices);
+		this.router = router;
+	}
+
+	// Delivers a Cart to the branch the router picks, once it can take it.
+	@Override
+	public void deliver(Cart cart) throws InterruptedException {
+		route(cart).deliver(cart);
+	}
+
+	// Delivers a Cart to the branch the router picks, waiting at most the
+	// given time for it. Trying again asks the router again.
+	@Override
+	public boolean tryDeliver(Cart cart, long timeout, TimeUnit unit) throws InterruptedException {
+		return route(cart).tryDeliver(cart, timeout, unit);
+	}
+
+	// Delivers a Cart to the branch the router picks, once it can take it,
+	// without blocking.
+	@Override
+	public CompletableFuture<Void> deliverAsync(Cart cart) {
+		return route(cart).deliverAsync(cart);
+	}
+
+	// asks the router for the branch a cart goes down
+	private Destination route(Cart cart) {
+		Destination to = this.router.next(cart, this.from, this.choices);
+		if (!this.choices.contains(to)) {
+			throw new IllegalStateException("router picked " + to + ", not a branch of " + this);
+		}
+		// [LOGGING] cart routed at the junction
+		MineLogger.log("JUNCTION", cart + " routed to " + to);
+		return to;
+	}
+
+	// a cart given up on may be routed down another branch
+	@Override
+	public boolean canReroute() {
+		return true;
+	}
+
+	public List<Destination> getChoices() {
+		return choices;
+	}
+
+	public String toString() {
+		return "junction after " + this.from;
+	}
+
+	// [ENGINE-POOL] a cart delivered to the junction ends up at a location
+	// down one of the branches
+	@Override
+	public List<Location> locations() {
+		List<Location> list = new ArrayList<>();
+		for (Destination to : this.choices) {
+			for (Location loc : to.locations()) {
+				if (!list.contains(loc)) {
+					list.add(loc);
+				}
+			}
+		}
+		return list;
+	}
+
+	// [ENGINE-POOL] a change at any branch may let the junction proceed
+	@Override
+	public void addChangeListener(Runnable listener) {
+		for (Destination to : this.choices) {
+			to.addChangeListener(listener);
+		}
+	}
+
+	// --- [FUZZING] Predicate methods to check if operations can proceed ---
+
+	/**
+	 * Returns true if deliver() may proceed without blocking.
+	 * Condition: some branch must be able to take a cart
+	 */
+	@Override
+	public boolean canDeliver() {
+		for (Destination to : this.choices) {
+			if (to.canDeliver()) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
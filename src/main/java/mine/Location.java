@@ -1,5 +1,20 @@
 package mine;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import mine.fuzzing.FuzzingMode;
+import mine.fuzzing.Operation;
+import mine.fuzzing.StallDetector;
+import mine.fuzzing.TokenControllerProvider;
+
 /**
  * The src.main.java.mine.Location is an abstract base class (src.main.java.mine.Station or src.main.java.mine.Elevator) that
  * Carts can be delivered to and collected from.
@@ -8,12 +23,258 @@ package mine;
  * @date 6 March 2025
  */
 
-public abstract class Location {
+public abstract class Location implements Destination {
+	
+	// [ENGINE-POOL] run on every state change, holding this monitor
+	private volatile Runnable[] changeListeners = new Runnable[0];
+	
+	// [ASYNC] operations waiting for a state change that allows them, oldest
+	// first, and whether they are being retried
+	private final ArrayDeque<Pending<?>> pending = new ArrayDeque<>();
+	private boolean retrying = false;
+	private boolean retryAgain = false;
 	
 	public abstract Cart collect() 
 			throws InterruptedException;
 	
 	public abstract void deliver(Cart cart) 
 			throws InterruptedException;
+	
+	// Collects a Cart, waiting at most the given time for one to be ready.
+	// Returns null if none could be collected in time.
+	public abstract Cart tryCollect(long timeout, TimeUnit unit)
+			throws InterruptedException;
+	
+	// Delivers a Cart, waiting at most the given time for room for it.
+	// Returns false, the cart still with the caller, if it could not be
+	// delivered in time.
+	public abstract boolean tryDeliver(Cart cart, long timeout, TimeUnit unit)
+			throws InterruptedException;
+	
+	// Collects a Cart once possible, without blocking the calling thread.
+	// The future completes with the cart, or is cancelled without taking one.
+	public abstract CompletableFuture<Cart> collectAsync();
+	
+	// Delivers a Cart once possible, without blocking the calling thread.
+	// The future completes once delivered, or is cancelled without delivering.
+	public abstract CompletableFuture<Void> deliverAsync(Cart cart);
+
+	// Compact encoding of this location's state, read under its monitor.
+	protected abstract int stateBits();
+
+	// --- [FUZZING] wait/notify wrappers, must be called holding this monitor ---
+
+	// Waits for a state change while blocked in the given operation. With
+	// fuzzing on, the wait is reported to the stall detector.
+	protected final void awaitChange(Operation operation) throws InterruptedException {
+		if (!FuzzingMode.ENABLED) {
+			wait();
+			return;
+		}
+		StallDetector detector = TokenControllerProvider.getStallDetector();
+		StallDetector.Ticket ticket = detector.enterWait(this, operation);
+		try {
+			wait();
+		}
+		finally {
+			detector.leaveWait(ticket);
+		}
+	}
+
+	// Waits for a state change while blocked in the given operation, until
+	// the given deadline at the latest. Returns false, without waiting, once
+	// the deadline has passed; the caller checks its condition again either way.
+	// The wait is not reported to the stall detector: the caller is never
+	// blocked for good, and may do something else once the deadline passes.
+	protected final boolean awaitChange(Operation operation, long deadline) throws InterruptedException {
+		long nanos = deadline - System.nanoTime();
+		if (nanos <= 0) {
+			return false;
+		}
+		wait(nanos / 1_000_000, (int) (nanos % 1_000_000));
+		return true;
+	}
+	
+	// The System.nanoTime() deadline for a wait of the given time from now,
+	// never overflowing for long timeouts.
+	protected static long deadline(long timeout, TimeUnit unit) {
+		long now = System.nanoTime();
+		long nanos = Math.max(0, unit.toNanos(timeout));
+		return nanos > Long.MAX_VALUE / 2 ? now + Long.MAX_VALUE / 2 : now + nanos;
+	}
+
+	// Brackets a state change, holding this monitor, so that snapshots of the
+	// whole mine never observe it half done.
+	protected final void beginTransition() {
+		if (FuzzingMode.ENABLED) {
+			TokenControllerProvider.getStateBoard().beginTransition();
+		}
+	}
+
+	protected final void endTransition(Operation operation) {
+		if (FuzzingMode.ENABLED) {
+			TokenControllerProvider.getStateBoard().endTransition(operation, this, stateBits());
+		}
+	}
+
+	// Wakes every thread waiting on this location after a state change, and
+	// performs the pending operations it allows.
+	protected final void signalChange() {
+		if (FuzzingMode.ENABLED) {
+			TokenControllerProvider.getStallDetector().signal(this);
+		}
+		notifyChangeListeners();
+		retryPending();
+		notifyAll();
+	}
+	
+	// --- [ASYNC] operations completed by the state change that allows them ---
+	
+	/**
+	 * Performs an operation as soon as it is possible, without blocking: now
+	 * if it already is, otherwise on the first state change that allows it,
+	 * after the operations pending before it.
+	 *
+	 * The operation is performed holding this monitor. When performed on a
+	 * state change, its future is completed asynchronously, so that callbacks
+	 * never run holding this monitor. Cancelling the future, or completing it
+	 * any other way (e.g. orTimeout), before the operation is performed
+	 * withdraws it.
+	 *
+	 * @param possible Whether the operation can be performed now
+	 * @param perform Performs the operation (a transition), and returns its result
+	 * @param withdrawn Run holding this monitor if the operation is cancelled, or null
+	 */
+	protected final <T> CompletableFuture<T> whenPossible(BooleanSupplier possible, Supplier<T> perform,
+			Runnable withdrawn) {
+		Pending<T> p = new Pending<>(this, possible, perform, withdrawn);
+		T value;
+		synchronized (this) {
+			if (!possible.getAsBoolean()) {
+				this.pending.add(p);
+				return p;
+			}
+			p.claimed.set(true);
+			value = perform.get();
+		}
+		p.completed(value);
+		return p;
+	}
+	
+	// performs every pending operation now possible, in order; a performed
+	// operation's own state change retries those before it again
+	private void retryPending() {
+		if (this.pending.isEmpty()) {
+			return;
+		}
+		if (this.retrying) {
+			this.retryAgain = true;
+			return;
+		}
+		this.retrying = true;
+		try {
+			do {
+				this.retryAgain = false;
+				for (Iterator<Pending<?>> it = this.pending.iterator(); it.hasNext(); ) {
+					Pending<?> p = it.next();
+					if (p.isDone()) {
+						it.remove();
+					}
+					else if (p.possible.getAsBoolean() && p.claimed.compareAndSet(false, true)) {
+						it.remove();
+						p.performAsync();
+					}
+				}
+			} while (this.retryAgain);
+		}
+		finally {
+			this.retrying = false;
+		}
+	}
+	
+	// A pending operation, and the future of its result given to the caller.
+	private static final class Pending<T> extends CompletableFuture<T> {
+		
+		private final Location location;
+		private final BooleanSupplier possible;
+		private final Supplier<T> perform;
+		private final Runnable withdrawn;
+		
+		// set once the operation is performed, or withdrawn
+		private final AtomicBoolean claimed = new AtomicBoolean(false);
+		
+		Pending(Location location, BooleanSupplier possible, Supplier<T> perform, Runnable withdrawn) {
+			this.location = location;
+			this.possible = possible;
+			this.perform = perform;
+			this.withdrawn = withdrawn;
+		}
+		
+		// performs the operation, holding the location's monitor
+		void performAsync() {
+			T value = this.perform.get();
+			completeAsync(() -> value);
+		}
+		
+		// completes the future of an operation performed now
+		void completed(T value) {
+			super.complete(value);
+		}
+		
+		// withdraws the operation, unless it has been performed
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			return withdraw() && super.cancel(mayInterruptIfRunning);
+		}
+		
+		// withdraws the operation, unless it has been performed, so that a
+		// cart is never taken or placed for a future completed meanwhile
+		@Override
+		public boolean complete(T value) {
+			return withdraw() && super.complete(value);
+		}
+		
+		@Override
+		public boolean completeExceptionally(Throwable ex) {
+			return withdraw() && super.completeExceptionally(ex);
+		}
+		
+		// claims the operation for the caller, true unless already claimed
+		private boolean withdraw() {
+			if (!this.claimed.compareAndSet(false, true)) {
+				return false;
+			}
+			synchronized (this.location) {
+				this.location.pending.remove(this);
+				if (this.withdrawn != null) {
+					this.withdrawn.run();
+				}
+			}
+			return true;
+		}
+	}
+	
+	// [ENGINE-POOL] Runs the change listeners, for a change seen elsewhere
+	// that may let this location proceed.
+	protected final void notifyChangeListeners() {
+		for (Runnable listener : this.changeListeners) {
+			listener.run();
+		}
+	}
+	
+	// [ENGINE-POOL] a cart delivered to a location stays there
+	@Override
+	public final List<Location> locations() {
+		return List.of(this);
+	}
+	
+	// [ENGINE-POOL] Runs the given listener on every later state change. It
+	// must not block or take another location's monitor.
+	@Override
+	public final synchronized void addChangeListener(Runnable listener) {
+		Runnable[] listeners = Arrays.copyOf(this.changeListeners, this.changeListeners.length + 1);
+		listeners[listeners.length - 1] = listener;
+		this.changeListeners = listeners;
+	}
 
 }
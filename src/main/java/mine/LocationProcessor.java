@@ -0,0 +1,221 @@
+package mine;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A LocationProcessor is a Location as a stage of a reactive pipeline of
+ * Carts: each cart it is sent travels for Params.engineTime() and is then
+ * delivered to the location, and each cart collected from the location is
+ * sent on to its subscriber.
+ *
+ * Demand is what holds carts back, as engines do in the threaded mine. The
+ * processor asks for the next cart only once the last one it was sent has
+ * been delivered, so each track between two stages carries at most one
+ * cart, and collects a cart only when its subscriber has asked for one.
+ *
+ * No thread waits on a location: deliveries and collections are queued on
+ * the location with its asynchronous operations, and journeys and signals
+ * run on the given executor.
+ */
+
+public class LocationProcessor implements Flow.Processor<Cart, Cart> {
+
+	// the location carts are delivered to and collected from
+	private final Location location;
+
+	// runs the signals to the subscriber, and the journeys to the location
+	private final Executor executor;
+
+	// the stage carts come from, and the one they are sent on to
+	private Flow.Subscription upstream;
+	private Flow.Subscriber<? super Cart> downstream;
+
+	// carts asked for by the subscriber and not yet sent, and the collection
+	// under way for them, if any
+	private long demand = 0;
+	private CompletableFuture<Cart> collecting;
+
+	// whether the subscriber has cancelled, or the pipeline has ended
+	private boolean cancelled = false;
+	private boolean done = false;
+
+	// [STATISTICS] carts delivered to and sent on from the location
+	private long received = 0;
+	private long sent = 0;
+
+	public LocationProcessor(Location location, Executor executor) {
+		this.location = location;
+		this.executor = executor;
+	}
+
+	// --- the location as a subscriber to the stage before it ---
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		synchronized (this) {
+			if (this.upstream != null) {
+				subscription.cancel();
+				return;
+			}
+			this.upstream = subscription;
+		}
+		// room for the first cart
+		subscription.request(1);
+	}
+
+	// Delivers the cart once it has travelled to the location, then asks for
+	// the next one.
+	@Override
+	public void onNext(Cart cart) {
+		Executor journey = CompletableFuture.delayedExecutor(Params.engineTime(), TimeUnit.MILLISECONDS,
+				this.executor);
+		CompletableFuture.supplyAsync(() -> cart, journey)
+				.thenCompose(this.location::deliverAsync)
+				.whenComplete((delivered, failed) -> {
+					if (failed != null) {
+						onError(failed);
+						return;
+					}
+					Flow.Subscription s;
+					synchronized (this) {
+						this.received++;
+						s = this.upstream;
+					}
+					s.request(1);
+				});
+	}
+
+	@Override
+	public void onError(Throwable failure) {
+		Flow.Subscriber<? super Cart> s = end();
+		if (s != null) {
+			s.onError(failure);
+		}
+	}
+
+	@Override
+	public void onComplete() {
+		Flow.Subscriber<? super Cart> s = end();
+		if (s != null) {
+			s.onComplete();
+		}
+	}
+
+	// ends the pipeline once, returning the subscriber to tell
+	private synchronized Flow.Subscriber<? super Cart> end() {
+		if (this.done) {
+			return null;
+		}
+		this.done = true;
+		return this.cancelled ? null : this.downstream;
+	}
+
+	// --- the location as a publisher to the stage after it ---
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super Cart> subscriber) {
+		boolean taken;
+		synchronized (this) {
+			taken = this.downstream != null;
+			if (!taken) {
+				this.downstream = subscriber;
+			}
+		}
+		if (taken) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				public void request(long n) {
+				}
+
+				public void cancel() {
+				}
+			});
+			subscriber.onError(new IllegalStateException(this + " already has a subscriber"));
+			return;
+		}
+		subscriber.onSubscribe(new Subscription());
+	}
+
+	// The subscriber's demand for carts.
+	private class Subscription implements Flow.Subscription {
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				onError(new IllegalArgumentException("non-positive request: " + n));
+				return;
+			}
+			synchronized (LocationProcessor.this) {
+				demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+			}
+			collect();
+		}
+
+		// Stops sending carts, withdrawing the collection under way unless it
+		// has taken a cart already.
+		@Override
+		public void cancel() {
+			CompletableFuture<Cart> c;
+			synchronized (LocationProcessor.this) {
+				cancelled = true;
+				c = collecting;
+			}
+			if (c != null) {
+				c.cancel(false);
+			}
+		}
+	}
+
+	// collects a cart for the subscriber, if it has asked for one and none
+	// is being collected already
+	private void collect() {
+		CompletableFuture<Cart> c;
+		synchronized (this) {
+			if (this.cancelled || this.done || this.demand == 0 || this.collecting != null) {
+				return;
+			}
+			c = this.location.collectAsync();
+			this.collecting = c;
+		}
+		c.whenCompleteAsync((cart, failed) -> {
+			Flow.Subscriber<? super Cart> s;
+			synchronized (this) {
+				this.collecting = null;
+				if (failed == null) {
+					this.demand--;
+					this.sent++;
+				}
+				s = this.downstream;
+			}
+			if (failed == null) {
+				s.onNext(cart);
+				collect();
+			}
+			else if (!c.isCancelled()) {
+				onError(failed);
+			}
+		}, this.executor);
+	}
+
+	public Location getLocation() {
+		return location;
+	}
+
+	public String toString() {
+		return "processor for " + this.location;
+	}
+
+	// --- [STATISTICS] ---
+
+	/** Number of carts delivered to the location. */
+	public synchronized long getReceived() {
+		return received;
+	}
+
+	/** Number of carts collected from the location and sent on. */
+	public synchronized long getSent() {
+		return sent;
+	}
+}
@@ -1,5 +1,8 @@
 package mine;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * The top-level component of the mine simulator.
  *
@@ -18,9 +21,7 @@ public class Main {
 
     public static void main(String [] args) {
     	int n = Params.STATIONS;
-    	
-    	// create the elevator
-    	Elevator elevator = new Elevator();
+    	int k = Params.SHAFTS;
     	
     	// create an array for the stations
     	Station[] station = new Station[n];
@@ -30,10 +31,35 @@ public class Main {
     		station[i] = new Station(i);
     	}	
     	
-    	// create the producer, consumer, and elevator operator
-    	Producer producer = new Producer(elevator);
-    	Consumer consumer = new Consumer(elevator);
-    	Operator operator = new Operator(elevator);
+    	// limit the carts in the mine, if enabled, to fewer than the places
+    	// for them: the stations, the elevators, and the pooled engines or
+    	// those on each track
+    	int engines = Params.ENGINE_POOL > 0 ? Params.ENGINE_POOL : Topology.lineEngines(n, k);
+    	AdmissionController admission = Params.ADAPTIVE_ADMISSION
+    			? new AdmissionController(station, k, engines) : null;
+    	
+    	// create the shafts, each with its elevator, producer, consumer, and
+    	// elevator operator
+    	Shaft[] shaft = new Shaft[k];
+    	List<Elevator> elevators = new ArrayList<>();
+    	for (int j = 0; j < k; j++) {
+    		shaft[j] = new Shaft(admission);
+    		elevators.add(shaft[j].getElevator());
+    	}
+    	
+    	// carts leave the last station for the only elevator, or for the
+    	// least loaded one
+    	Destination exit = k == 1 ? elevators.get(0) : new ShaftRouter(elevators);
+    	
+    	if (Params.REACTIVE_THREADS > 0) {
+    		// run the engines and miners as a reactive pipeline instead
+    		if (k != 1) {
+    			throw new IllegalStateException("the reactive line runs below a single shaft");
+    		}
+    		new ReactiveLine(elevators.get(0), station, Params.REACTIVE_THREADS).start();
+    		shaft[0].start();
+    		return;
+    	}
     	
     	// create an array for the mines
     	Miner[] miner = new Miner[n];
@@ -44,25 +70,26 @@ public class Main {
     		miner[i].start();
     	}
     	
-    	// create an array for the engines
-    	Engine[] engine = new Engine[n-1];
+    	// lay the tracks: from each elevator through every station in turn,
+    	// and back to the exit
+    	Topology topology = Topology.line(elevators, exit, station);
     	
-    	// create (and start) the engines
-    	for (int i = 0; i < n-1; i++) {
-    		engine[i] = new Engine(station[i], station[i+1]);
-    		engine[i].start();
+    	if (Params.ENGINE_POOL > 0) {
+    		// share a pool of engines among all the segments of the line
+    		EnginePool pool = new EnginePool(topology.segments(), Params.ENGINE_POOL);
+    		pool.start();
+    	}
+    	else {
+	    	// create (and start) an engine for each track
+	    	for (Engine engine : topology.createEngines()) {
+	    		engine.start();
+	    	}
     	}
-    	
-    	// create engines for the bottom of the elevator
-    	Engine firstEngine = new Engine(elevator, station[0]);
-    	Engine lastEngine = new Engine(station[n-1], elevator);
     	    	
     	// start remaining components
-    	firstEngine.start();
-    	lastEngine.start();
-    	producer.start();
-    	consumer.start();
-    	operator.start();   	
+    	for (Shaft s : shaft) {
+    		s.start();
+    	}
    	
     }
 }
\ No newline at end of file
@@ -11,7 +11,7 @@ public class Mine extends Thread {
     public void run() {
         while (!this.isInterrupted()) {
             try {
-                sleep(Params.MINING_TIME);
+                sleep(Params.miningTime());
 
                 // deposit mined gem at station
                 this.station.depositGem();
@@ -1,5 +1,9 @@
 package mine;
 
+import mine.fuzzing.ThreadToken;
+import mine.fuzzing.TokenHolder;
+import mine.fuzzing.TokenHooks;
+
 /**
  * Miners mine for gems, which the deposit at Stations.
  *
@@ -7,27 +11,34 @@ package mine;
  * @date 6 March 2025
  */
 
-public class Miner extends Thread {
+public class Miner extends Thread implements TokenHolder {
 
     protected Station station;
 
+    // [FUZZING] token bound at construction (null outside fuzzing harnesses)
+    private final ThreadToken token;
+
     public Miner(Station station) {
+        this(station, null);
+    }
+
+    public Miner(Station station, ThreadToken token) {
         this.station = station;
+        this.token = token;
     }
 
     public void run() {
         while (!this.isInterrupted()) {
             try {
                 // [FUZZING-HOOK] Allow token-based control of loop iteration
-                mine.fuzzing.ThreadToken token = mine.fuzzing.TokenControllerProvider.getRegistry().getCurrentThreadToken();
-                mine.fuzzing.TokenControllerProvider.getController().onLoopIteration(token);
+                TokenHooks.onLoopIteration(this.token);
                 
                 // [LOGGING] loop iteration start
                 if (token != null) {
                     MineLogger.log("MINER", "iteration start [" + token.getUniqueId() + "]");
                 }
                 
-                sleep(Params.MINING_TIME);
+                sleep(Params.miningTime());
 
                 // deposit mined gem at station
                 this.station.depositGem();
@@ -36,6 +47,10 @@ public class Miner extends Thread {
                 sleep(Params.minerPause());
             }
             catch (InterruptedException e) {
+                // [FUZZING-HOOK] a persistent harness interrupts to rewind the iteration
+                if (TokenHooks.onInterrupted(this.token)) {
+                    continue;
+                }
                 this.interrupt();
             }
         }
@@ -53,5 +68,10 @@ public class Miner extends Thread {
     public Station getStation() {
         return station;
     }
+
+    @Override
+    public ThreadToken getToken() {
+        return token;
+    }
 }
 
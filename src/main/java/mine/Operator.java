@@ -1,43 +1,81 @@
 package mine;
 
+import mine.fuzzing.ThreadToken;
+import mine.fuzzing.TokenHolder;
+import mine.fuzzing.TokenHooks;
+
 /**
- * The Operator periodically raises and lowers the Elevator.
+ * The Operator periodically raises and lowers the Elevator. With the
+ * call-button policy it moves the empty Elevator only toward a role waiting
+ * for it at the other end of the shaft.
  * 
  * @author ngeard@unimelb.edu.au
  * @date 6 March 2025
  */
 
-public class Operator extends Thread {
+public class Operator extends Thread implements TokenHolder {
 
 	// the elevator managed by the operator
 	private Elevator elevator;
+	
+	// true to move the empty elevator only when called, false for a fixed rhythm
+	private final boolean onCall;
+
+	// [FUZZING] token bound at construction (null outside fuzzing harnesses)
+	private final ThreadToken token;
 
 	// create a new operator
 	public Operator(Elevator elevator) {
+		this(elevator, null);
+	}
+
+	// create a new operator carrying a fuzzing token
+	public Operator(Elevator elevator, ThreadToken token) {
+		this(elevator, token, Params.ELEVATOR_ON_CALL);
+	}
+	
+	// create a new operator with the given policy
+	public Operator(Elevator elevator, ThreadToken token, boolean onCall) {
 		this.elevator = elevator;
+		this.token = token;
+		this.onCall = onCall;
 	}
 	
 	public void run() {
 		while (!isInterrupted()) {
 			try {
 				// [FUZZING-HOOK] Allow token-based control of loop iteration
-				mine.fuzzing.ThreadToken token = mine.fuzzing.TokenControllerProvider.getRegistry().getCurrentThreadToken();
-				mine.fuzzing.TokenControllerProvider.getController().onLoopIteration(token);
+				TokenHooks.onLoopIteration(this.token);
 				
 				// [LOGGING] loop iteration start
 				if (token != null) {
 					MineLogger.log("OPERATOR", "iteration start [" + token.getUniqueId() + "]");
 				}
 				
-				sleep(Params.ELEVATOR_TIME);
-				
-				// update the status of the elevator
-				this.elevator.operateEmpty();
-
-				// wait before operating the elevator again
-				sleep(Params.operatorPause());
+				if (this.onCall) {
+					// wait until the empty elevator is called to the other end
+					this.elevator.awaitCall();
+					
+					// the car travels there as with the fixed rhythm, and
+					// moves only if the call is still waiting once it arrives
+					sleep(Params.elevatorTime());
+					this.elevator.operateOnCall();
+				}
+				else {
+					sleep(Params.elevatorTime());
+					
+					// update the status of the elevator
+					this.elevator.operateEmpty();
+					
+					// wait before operating the elevator again
+					sleep(Params.operatorPause());
+				}
 			}
 			catch (InterruptedException e) {
+				// [FUZZING-HOOK] a persistent harness interrupts to rewind the iteration
+				if (TokenHooks.onInterrupted(this.token)) {
+					continue;
+				}
 				this.interrupt();
 			}
 		}
@@ -46,13 +84,23 @@ public class Operator extends Thread {
 	// --- [FUZZING] Methods to check if this operator can make progress ---
 
 	/**
-	 * Returns true if the operator can proceed (can operate empty elevator).
+	 * Returns true if the operator can proceed (can operate empty elevator,
+	 * and is called to, under the call-button policy).
 	 */
 	public boolean canProceed() {
-		return elevator.canOperateEmpty();
+		return onCall ? elevator.canOperateOnCall() : elevator.canOperateEmpty();
+	}
+
+	public boolean isOnCall() {
+		return onCall;
 	}
 
 	public Elevator getElevator() {
 		return elevator;
 	}
+
+	@Override
+	public ThreadToken getToken() {
+		return token;
+	}
 }
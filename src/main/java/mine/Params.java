@@ -20,6 +20,18 @@ public class Params {
 	// the number of stations in the mine
 	public static final int STATIONS = 4;
 	
+	// whether a cart may pass through a station that has no gem ready, rather
+	// than wait there for one
+	public static final boolean EXPRESS_STATIONS = false;
+	
+	// the number of carts that can wait on a siding at each station, beside
+	// the cart being loaded
+	public static final int STATION_SIDING = 0;
+	
+	// the number of elevator shafts into the mine, each with its own
+	// producer, consumer and operator
+	public static final int SHAFTS = 1;
+	
 	// the amount of time taken to mine a gem
 	public static final long MINING_TIME = 300;
 
@@ -40,6 +52,27 @@ public class Params {
 	
 	// the maximum amount of time the miner pauses before producing next gem
 	public static final int MAX_MINER_PAUSE = 200;
+	
+	// whether the operator moves the empty elevator only when it is called to
+	// the other end (true), or raises and lowers it on a fixed rhythm (false)
+	public static final boolean ELEVATOR_ON_CALL = false;
+	
+	// whether the producer admits carts only while the mine has room for them,
+	// adapting the number of carts in the mine to the measured throughput
+	public static final boolean ADAPTIVE_ADMISSION = false;
+	
+	// the number of engines shared by all the segments of the line (at least
+	// two), or 0 for one engine bound to each segment
+	public static final int ENGINE_POOL = 0;
+	
+	// how long an engine waits to deliver a cart before trying again, which
+	// may route the cart another way at a junction or the shafts, or 0 to
+	// wait as long as it takes
+	public static final long ENGINE_PATIENCE = 0;
+	
+	// the number of threads running the line below a single shaft as a
+	// reactive pipeline, or 0 for a thread for each engine and miner
+	public static final int REACTIVE_THREADS = 0;
 
     private static PauseProvider provider = new RandomPauseProvider();
 
@@ -63,6 +96,15 @@ public class Params {
     public static long minerPause() {
         return provider.minerPause();
     }
+    public static long miningTime() {
+        return provider.miningTime();
+    }
+    public static long elevatorTime() {
+        return provider.elevatorTime();
+    }
+    public static long engineTime() {
+        return provider.engineTime();
+    }
 
     // random implementation
     private static class RandomPauseProvider implements PauseProvider {
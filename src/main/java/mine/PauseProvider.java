@@ -5,4 +5,15 @@ public interface PauseProvider {
     long departurePause();
     long operatorPause();
     long minerPause();
+
+    // How long the timed steps take: the real durations unless stubbed
+    default long miningTime() {
+        return Params.MINING_TIME;
+    }
+    default long elevatorTime() {
+        return Params.ELEVATOR_TIME;
+    }
+    default long engineTime() {
+        return Params.ENGINE_TIME;
+    }
 }
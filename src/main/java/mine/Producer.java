@@ -1,5 +1,9 @@
 package mine;
 
+import mine.fuzzing.ThreadToken;
+import mine.fuzzing.TokenHolder;
+import mine.fuzzing.TokenHooks;
+
 /**
  * The producer class is responsible for creating carts that will visit to the mines.
  * 
@@ -10,14 +14,32 @@ package mine;
  * @date 6 March 2025
  */
 
-public class Producer extends Thread {
+public class Producer extends Thread implements TokenHolder {
 
 	// the elevator for new carts
 	private Elevator elevator;
 	
+	// limits the carts in the mine (null to send carts regardless)
+	private final AdmissionController admission;
+	
+	// [FUZZING] token bound at construction (null outside fuzzing harnesses)
+	private final ThreadToken token;
+	
 	// create a new producer
 	public Producer(Elevator elevator) {
+		this(elevator, null);
+	}
+	
+	// create a new producer carrying a fuzzing token
+	public Producer(Elevator elevator, ThreadToken token) {
+		this(elevator, token, null);
+	}
+	
+	// create a new producer whose carts wait to be admitted into the mine
+	public Producer(Elevator elevator, ThreadToken token, AdmissionController admission) {
 		this.elevator = elevator;
+		this.token = token;
+		this.admission = admission;
 	}
 
 	// carts are sent to the elevator at random intervals
@@ -25,8 +47,7 @@ public class Producer extends Thread {
 		while(!this.isInterrupted()) {
 			try {
 				// [FUZZING-HOOK] Allow token-based control of loop iteration
-				mine.fuzzing.ThreadToken token = mine.fuzzing.TokenControllerProvider.getRegistry().getCurrentThreadToken();
-				mine.fuzzing.TokenControllerProvider.getController().onLoopIteration(token);
+				TokenHooks.onLoopIteration(this.token);
 				
 				// [LOGGING] loop iteration start
 				if (token != null) {
@@ -35,14 +56,32 @@ public class Producer extends Thread {
 				
 				// create a new cart and send to elevator
 				Cart cart = Cart.getNewCart();
+				// wait until the mine has room for another cart
+				if (this.admission != null) {
+					this.admission.admit(cart);
+				}
 				// [LOGGING] new cart arrives at the mine
 				MineLogger.log("PRODUCER", cart + " arrives at the mine");
-				this.elevator.arrive(cart);
+				boolean arrived = false;
+				try {
+					this.elevator.arrive(cart);
+					arrived = true;
+				}
+				finally {
+					// a cart that never arrived gives its place back
+					if (!arrived && this.admission != null) {
+						this.admission.withdraw(cart);
+					}
+				}
 				
 				// pause before sending another cart
 				sleep(Params.arrivalPause());
 			}
 			catch (InterruptedException e) {
+				// [FUZZING-HOOK] a persistent harness interrupts to rewind the iteration
+				if (TokenHooks.onInterrupted(this.token)) {
+					continue;
+				}
                 System.out.println(e);
 				this.interrupt();
 			}
@@ -52,13 +91,19 @@ public class Producer extends Thread {
 	// --- [FUZZING] Methods to check if this producer can make progress ---
 
 	/**
-	 * Returns true if the producer can proceed (can arrive with a cart to elevator).
+	 * Returns true if the producer can proceed (can arrive with a cart to elevator,
+	 * and have it admitted, if admission is limited).
 	 */
 	public boolean canProceed() {
-		return elevator.canArrive();
+		return elevator.canArrive() && (admission == null || admission.canAdmit());
 	}
 
 	public Elevator getElevator() {
 		return elevator;
 	}
+
+	@Override
+	public ThreadToken getToken() {
+		return token;
+	}
 }
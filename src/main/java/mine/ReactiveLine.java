@@ -0,0 +1,81 @@
+package mine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A ReactiveLine runs the line of stations below one Elevator as a reactive
+ * pipeline, in place of a thread for each Engine and Miner: a
+ * LocationProcessor for the bottom of the elevator and for each station,
+ * each subscribed to the one before it and the elevator's to the last
+ * station's, and each miner a task that deposits a gem at its station once
+ * there is room and then mines the next.
+ *
+ * Everything runs on a small pool of threads. The elevator's Producer,
+ * Consumer and Operator still run above ground as threads of their own.
+ */
+
+public class ReactiveLine {
+
+	// the stages of the line: the elevator, then each station in turn
+	private final List<LocationProcessor> processors = new ArrayList<>();
+
+	// the stations gems are mined at
+	private final Station[] stations;
+
+	// runs the stages and the miners
+	private final ScheduledExecutorService executor;
+
+	// create a line from the given elevator through the given stations,
+	// running on the given number of threads
+	public ReactiveLine(Elevator elevator, Station[] stations, int threads) {
+		if (stations.length == 0) {
+			throw new IllegalArgumentException("a line needs at least one station");
+		}
+		this.stations = stations.clone();
+		this.executor = Executors.newScheduledThreadPool(threads, r -> {
+			Thread t = new Thread(r, "reactive-line");
+			t.setDaemon(true);
+			return t;
+		});
+		this.processors.add(new LocationProcessor(elevator, this.executor));
+		for (Station s : stations) {
+			this.processors.add(new LocationProcessor(s, this.executor));
+		}
+	}
+
+	// subscribes each stage to the one before it, and starts the miners
+	public void start() {
+		int n = this.processors.size();
+		for (int i = 0; i < n; i++) {
+			this.processors.get(i).subscribe(this.processors.get((i + 1) % n));
+		}
+		for (Station s : this.stations) {
+			mine(s);
+		}
+	}
+
+	// stops the line; carts on it stay where they are
+	public void stop() {
+		this.executor.shutdownNow();
+	}
+
+	// mines a gem at a station, deposits it once there is room, and pauses
+	// before mining the next
+	private void mine(Station station) {
+		this.executor.schedule(() -> {
+			station.depositGemAsync().thenRun(() -> {
+				if (!this.executor.isShutdown()) {
+					this.executor.schedule(() -> mine(station), Params.minerPause(), TimeUnit.MILLISECONDS);
+				}
+			});
+		}, Params.miningTime(), TimeUnit.MILLISECONDS);
+	}
+
+	public List<LocationProcessor> getProcessors() {
+		return processors;
+	}
+}
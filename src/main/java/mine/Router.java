@@ -0,0 +1,55 @@
+package mine;
+
+import java.util.List;
+
+/**
+ * A Router decides where a Cart goes next when the track it is on branches.
+ */
+
+public interface Router {
+
+	/**
+	 * Returns where a cart leaving a location goes next.
+	 *
+	 * @param cart The cart
+	 * @param from The location the cart is leaving
+	 * @param choices Where the tracks out of it lead to, at least two
+	 * @return One of the choices
+	 */
+	Destination next(Cart cart, Location from, List<Destination> choices);
+
+	/**
+	 * A router sending each cart down the first track, from one that depends
+	 * on the cart, whose location can take the cart straight away; down that
+	 * track regardless if none can. Carts are spread across the branches even
+	 * when all of them are busy.
+	 */
+	static Router firstFree() {
+		return (cart, from, choices) -> {
+			int start = Math.floorMod(cart.getId(), choices.size());
+			for (int i = 0; i < choices.size(); i++) {
+				Destination to = choices.get((start + i) % choices.size());
+				if (to.canDeliver()) {
+					return to;
+				}
+			}
+			return choices.get(start);
+		};
+	}
+
+	/**
+	 * A router sending each cart toward a station with a gem ready for it,
+	 * and otherwise as {@link #firstFree()} does.
+	 */
+	static Router gemReady() {
+		Router otherwise = firstFree();
+		return (cart, from, choices) -> {
+			for (Destination to : choices) {
+				if (to instanceof Station station && station.hasGemReady()) {
+					return to;
+				}
+			}
+			return otherwise.next(cart, from, choices);
+		};
+	}
+}
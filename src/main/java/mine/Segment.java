@@ -0,0 +1,97 @@
+package mine;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A Segment is a stretch of track from one Location to the next that an
+ * Engine carries Carts along: from the bottom of the Elevator to the first
+ * Station, between consecutive Stations, and from the last Station back to
+ * the Elevator.
+ *
+ * A segment is ready when a cart can be collected from its origin and
+ * delivered to its destination straight away.
+ */
+
+public class Segment {
+
+	// the segment's origin and destination
+	private final Location origin;
+	private final Destination destination;
+
+	// [ENGINE-POOL] index of the group of segments it is queued with
+	int group;
+	// whether it is queued for an engine to check, or being served by one
+	final AtomicBoolean queued = new AtomicBoolean(false);
+	final AtomicBoolean busy = new AtomicBoolean(false);
+	// whether an engine is carrying a cart to each location its destination
+	// delivers to, shared by every segment of the pool that may end there
+	AtomicBoolean[] inbound = new AtomicBoolean[0];
+
+	public Segment(Location origin, Destination destination) {
+		this.origin = origin;
+		this.destination = destination;
+	}
+
+	// The segments of the mine's line: the elevator, each station in turn,
+	// and back to the elevator.
+	public static List<Segment> line(Elevator elevator, Station[] stations) {
+		return line(List.of(elevator), elevator, stations);
+	}
+
+	// The segments of a line with several shafts: from each elevator to the
+	// first station, each station in turn, and from the last station to the
+	// exit, once for each elevator.
+	public static List<Segment> line(List<Elevator> elevators, Destination exit, Station[] stations) {
+		return Topology.line(elevators, exit, stations).segments();
+	}
+
+	/**
+	 * Returns true if a cart can be collected from the origin and delivered
+	 * to the destination without blocking.
+	 */
+	public boolean isReady() {
+		return canCollectFrom(origin) && destination.canDeliver();
+	}
+
+	static boolean canCollectFrom(Location loc) {
+		if (loc instanceof Elevator elev) {
+			return elev.canCollectFromBottom();
+		} else if (loc instanceof Station station) {
+			return station.canCollect();
+		} else {
+			throw new IllegalStateException("Unknown origin location type: " + loc.getClass());
+		}
+	}
+
+	// Delivers a cart to a destination as an engine does: outright, or, where
+	// the cart may be sent another way, giving up after each
+	// Params.ENGINE_PATIENCE without delivering and trying again. Returns the
+	// number of times it gave up.
+	static int deliver(Destination to, Cart cart) throws InterruptedException {
+		if (Params.ENGINE_PATIENCE <= 0 || !to.canReroute()) {
+			to.deliver(cart);
+			return 0;
+		}
+		int retries = 0;
+		while (!to.tryDeliver(cart, Params.ENGINE_PATIENCE, TimeUnit.MILLISECONDS)) {
+			retries++;
+			// [LOGGING] cart still waiting to be delivered
+			MineLogger.log("ENGINE", cart + " still waiting for " + to + ", trying again");
+		}
+		return retries;
+	}
+
+	public Location getOrigin() {
+		return origin;
+	}
+
+	public Destination getDestination() {
+		return destination;
+	}
+
+	public String toString() {
+		return origin + " -> " + destination;
+	}
+}
@@ -0,0 +1,46 @@
+package mine;
+
+import java.util.List;
+
+/**
+ * A Shaft is one way into and out of the mine: an Elevator with its own
+ * Producer, Consumer and Operator.
+ */
+
+public class Shaft {
+
+	// the shaft's elevator and the roles using it above ground
+	private final Elevator elevator;
+	private final Producer producer;
+	private final Consumer consumer;
+	private final Operator operator;
+
+	// create a new shaft
+	public Shaft() {
+		this(null);
+	}
+
+	// create a new shaft whose carts wait to be admitted into the mine
+	public Shaft(AdmissionController admission) {
+		this.elevator = new Elevator();
+		this.producer = new Producer(this.elevator, null, admission);
+		this.consumer = new Consumer(this.elevator, null, admission);
+		this.operator = new Operator(this.elevator);
+	}
+
+	// starts the producer, consumer and operator
+	public void start() {
+		this.producer.start();
+		this.consumer.start();
+		this.operator.start();
+	}
+
+	public Elevator getElevator() {
+		return elevator;
+	}
+
+	// the producer, consumer and operator
+	public List<Thread> getThreads() {
+		return List.of(producer, consumer, operator);
+	}
+}
@@ -0,0 +1,153 @@
+package mine;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ShaftRouter is the way out of the mine when it has several Elevator
+ * shafts: an Engine delivering a Cart to the router delivers it to the
+ * bottom of the least loaded Elevator, the one with the fewest carts in its
+ * car, waiting for it at the top, or routed to it and not yet loaded.
+ *
+ * Carts are never collected from the router, which is a Destination only;
+ * each shaft's own Engine collects the carts its Elevator brings down.
+ */
+
+public class ShaftRouter implements Destination {
+
+	// the elevators carts are routed to
+	private final List<Elevator> elevators;
+
+	// carts routed to each elevator and not yet loaded into it
+	private final int[] bound;
+
+	// [STATISTICS] carts routed to each elevator
+	private final long[] routed;
+
+	public ShaftRouter(List<Elevator> elevators) {
+		if (elevators.isEmpty()) {
+			throw new IllegalArgumentException("no elevators to route to");
+		}
+		this.elevators = List.copyOf(elevators);
+		this.bound = new int[elevators.size()];
+		this.routed = new long[elevators.size()];
+	}
+
+	// Delivers a Cart to the bottom of the least loaded elevator, once
+	// present and empty.
+	@Override
+	public void deliver(Cart cart) throws InterruptedException {
+		int k = choose();
+		try {
+			this.elevators.get(k).deliver(cart);
+		}
+		finally {
+			synchronized (this) {
+				this.bound[k]--;
+			}
+		}
+	}
+
+	// Delivers a Cart to the bottom of the least loaded elevator, waiting at
+	// most the given time for it. A cart not delivered in time is no longer
+	// routed there, so that trying again may route it to another elevator.
+	@Override
+	public boolean tryDeliver(Cart cart, long timeout, TimeUnit unit) throws InterruptedException {
+		int k = choose();
+		try {
+			return this.elevators.get(k).tryDeliver(cart, timeout, unit);
+		}
+		finally {
+			synchronized (this) {
+				this.bound[k]--;
+			}
+		}
+	}
+
+	// Delivers a Cart to the bottom of the least loaded elevator, once
+	// present and empty, without blocking.
+	@Override
+	public CompletableFuture<Void> deliverAsync(Cart cart) {
+		int k = choose();
+		return this.elevators.get(k).deliverAsync(cart).whenComplete((done, failed) -> {
+			synchronized (this) {
+				this.bound[k]--;
+			}
+		});
+	}
+
+	// picks the least loaded elevator, preferring one that can take a cart
+	// straight away, and counts a cart on its way to it
+	private synchronized int choose() {
+		int best = -1;
+		int bestLoad = Integer.MAX_VALUE;
+		boolean bestReady = false;
+		for (int k = 0; k < this.elevators.size(); k++) {
+			Elevator e = this.elevators.get(k);
+			int load = (e.hasCart() ? 1 : 0) + e.getCalls(true) + this.bound[k];
+			boolean ready = e.canDeliverToBottom();
+			if (load < bestLoad || (load == bestLoad && ready && !bestReady)) {
+				best = k;
+				bestLoad = load;
+				bestReady = ready;
+			}
+		}
+		this.bound[best]++;
+		this.routed[best]++;
+		// [LOGGING] cart routed to an elevator
+		MineLogger.log("ROUTER", "routes to elevator " + best + " (load " + bestLoad + ")");
+		return best;
+	}
+
+	// a cart given up on may be routed to another shaft
+	@Override
+	public boolean canReroute() {
+		return this.elevators.size() > 1;
+	}
+
+	public List<Elevator> getElevators() {
+		return elevators;
+	}
+
+	public String toString() {
+		return "router";
+	}
+
+	// [ENGINE-POOL] a cart delivered to the router ends up at one of the elevators
+	@Override
+	public List<Location> locations() {
+		return List.copyOf(this.elevators);
+	}
+
+	// [ENGINE-POOL] a change at any elevator may let the router proceed
+	@Override
+	public void addChangeListener(Runnable listener) {
+		for (Elevator e : this.elevators) {
+			e.addChangeListener(listener);
+		}
+	}
+
+	// --- [FUZZING] Predicate methods to check if operations can proceed ---
+
+	/**
+	 * Returns true if deliver() may proceed without blocking.
+	 * Condition: some elevator must be at the bottom and empty
+	 */
+	@Override
+	public boolean canDeliver() {
+		for (Elevator e : this.elevators) {
+			if (e.canDeliverToBottom()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// --- [STATISTICS] ---
+
+	/** Number of carts routed to the elevator at the given index. */
+	public synchronized long getRouted(int k) {
+		return routed[k];
+	}
+}
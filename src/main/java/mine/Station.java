@@ -1,5 +1,12 @@
 package mine;
 
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import mine.fuzzing.Operation;
+import mine.fuzzing.TokenHooks;
+
 /**
  * The src.main.java.mine.Station class is a type of src.main.java.mine.Location at which mined gems are stored
  * until they are loaded onto Carts. Carts are delivered to and collected
@@ -20,21 +27,95 @@ public class Station extends Location {
 	// gem currently at the station 
 	private boolean gem;
 	
+	// [EXPRESS] whether carts may pass through without a gem, and how many did
+	private final boolean express;
+	private long passed = 0;
+	
+	// [SIDING] carts waiting beside the cart being loaded, oldest first, and
+	// how many may wait there
+	private final ArrayDeque<Cart> siding = new ArrayDeque<>();
+	private final int sidingCapacity;
+	
+	// [STATISTICS] carts at the station seen by each cart delivered
+	private long deliveries = 0;
+	private long queueSeen = 0;
+	private int maxQueue = 0;
+	
 	// create a new station with specified id
 	public Station(int i) {
+		this(i, Params.EXPRESS_STATIONS, Params.STATION_SIDING);
+	}
+	
+	// create a new station with specified id, that lets carts pass through
+	// without a gem if express
+	public Station(int i, boolean express) {
+		this(i, express, Params.STATION_SIDING);
+	}
+	
+	// create a new station with specified id and room for the given number
+	// of carts to wait beside the one being loaded
+	public Station(int i, boolean express, int sidingCapacity) {
+		if (sidingCapacity < 0) {
+			throw new IllegalArgumentException("siding capacity must not be negative: " + sidingCapacity);
+		}
 		this.id = i;
 		this.gem = false;
+		this.express = express;
+		this.sidingCapacity = sidingCapacity;
 	}
 
-	// Allows an Engine to collect Cart from the Station once loaded with a gem.
+	// Allows an Engine to collect Cart from the Station once loaded with a gem,
+	// or straight away if express, with a gem only if one is ready.
 	@Override
-	public synchronized Cart collect() throws InterruptedException {
+	public Cart collect() throws InterruptedException {
+		// [FUZZING-HOOK] operation hooks run outside the monitor
+		TokenHooks.beforeOperation(Operation.STATION_COLLECT);
+		Cart c = doCollect();
+		TokenHooks.afterOperation(Operation.STATION_COLLECT);
+		return c;
+	}
+
+	private synchronized Cart doCollect() throws InterruptedException {
 		
 		// wait while there is no cart at this station
-		while(this.cart == null || !this.gem) {
-			wait();
+		while(this.cart == null || !(this.gem || this.express)) {
+			awaitChange(Operation.STATION_COLLECT);
 		}
 		
+		return release();
+	}
+
+	// Collects a Cart as collect() does, waiting at most the given time.
+	@Override
+	public Cart tryCollect(long timeout, TimeUnit unit) throws InterruptedException {
+		// [FUZZING-HOOK] operation hooks run outside the monitor
+		TokenHooks.beforeOperation(Operation.STATION_COLLECT);
+		Cart c = doTryCollect(deadline(timeout, unit));
+		TokenHooks.afterOperation(Operation.STATION_COLLECT);
+		return c;
+	}
+
+	private synchronized Cart doTryCollect(long deadline) throws InterruptedException {
+		
+		// wait while no cart is ready to go, until the deadline
+		while (!canCollect()) {
+			if (!awaitChange(Operation.STATION_COLLECT, deadline)) {
+				return null;
+			}
+		}
+		
+		return release();
+	}
+
+	// Collects a Cart once loaded with a gem, or express, without blocking.
+	@Override
+	public CompletableFuture<Cart> collectAsync() {
+		return whenPossible(this::canCollect, this::release, null);
+	}
+
+	// loads the cart with the gem, if any, and lets it go
+	private Cart release() {
+		beginTransition();
 		Cart c = this.cart;
 		
 		if (this.gem) {
@@ -43,48 +124,143 @@ public class Station extends Location {
 			MineLogger.log("STATION-" + id, c + " loaded with a gem");
 			this.gem = false;
 		}
+		else {
+			// [LOGGING] cart passes through an express station
+			MineLogger.log("STATION-" + id, c + " passes through without a gem");
+			this.passed++;
+		}
 		
-		this.cart = null;
+		// the oldest cart on the siding moves up to be loaded
+		this.cart = this.siding.poll();
+		endTransition(Operation.STATION_COLLECT);
 		// [LOGGING] cart collected from this station
 		MineLogger.log("STATION-" + id, c + " collected from " + this);
-		notifyAll();
+		signalChange();
 		
 		return c;
 	}
 
-	// Allows an Engine to deliver a Cart to the Station once there is no other cart.
+	// Allows an Engine to deliver a Cart to the Station once there is no other
+	// cart, or room on its siding.
+	@Override
+	public void deliver(Cart cart) throws InterruptedException {
+		// [FUZZING-HOOK] operation hooks run outside the monitor
+		TokenHooks.beforeOperation(Operation.STATION_DELIVER);
+		doDeliver(cart);
+		TokenHooks.afterOperation(Operation.STATION_DELIVER);
+	}
+
+	private synchronized void doDeliver(Cart cart) throws InterruptedException {
+
+		// wait while there is already a cart at this station, and the siding
+		// is full
+		while(this.cart != null && this.siding.size() >= this.sidingCapacity) {
+			awaitChange(Operation.STATION_DELIVER);
+		}
+		
+		accept(cart);
+	}
+
+	// Delivers a Cart as deliver() does, waiting at most the given time.
 	@Override
-	public synchronized void deliver(Cart cart) throws InterruptedException {
+	public boolean tryDeliver(Cart cart, long timeout, TimeUnit unit) throws InterruptedException {
+		// [FUZZING-HOOK] operation hooks run outside the monitor
+		TokenHooks.beforeOperation(Operation.STATION_DELIVER);
+		boolean delivered = doTryDeliver(cart, deadline(timeout, unit));
+		TokenHooks.afterOperation(Operation.STATION_DELIVER);
+		return delivered;
+	}
 
-		// wait while there is already a cart at this station
-		while(this.cart != null) {
-			wait();
+	private synchronized boolean doTryDeliver(Cart cart, long deadline) throws InterruptedException {
+		
+		// wait while there is no room for the cart, until the deadline
+		while (!canDeliver()) {
+			if (!awaitChange(Operation.STATION_DELIVER, deadline)) {
+				return false;
+			}
 		}
 		
-		this.cart = cart;
+		accept(cart);
+		return true;
+	}
+
+	// Delivers a Cart once there is no other cart, or room on the siding,
+	// without blocking.
+	@Override
+	public CompletableFuture<Void> deliverAsync(Cart cart) {
+		return whenPossible(this::canDeliver, () -> {
+			accept(cart);
+			return null;
+		}, null);
+	}
+
+	// takes a cart to be loaded, or onto the siding
+	private void accept(Cart cart) {
+		beginTransition();
+		int queue = getQueueLength();
+		this.deliveries++;
+		this.queueSeen += queue;
+		this.maxQueue = Math.max(this.maxQueue, queue + 1);
+		if (this.cart == null) {
+			this.cart = cart;
+		}
+		else {
+			// wait on the siding until the carts ahead have been loaded
+			this.siding.add(cart);
+		}
+		endTransition(Operation.STATION_DELIVER);
 		// [LOGGING] cart delivered to this station
 		MineLogger.log("STATION-" + id, cart + " delivered to " + this);
-		notifyAll();		
+		signalChange();		
 	}
 
 	// Allows a miner to deposit a gem at the Station once the previous gem has been taken.
-	public synchronized void depositGem() throws InterruptedException {
+	public void depositGem() throws InterruptedException {
+		// [FUZZING-HOOK] operation hooks run outside the monitor
+		TokenHooks.beforeOperation(Operation.STATION_DEPOSIT_GEM);
+		doDepositGem();
+		TokenHooks.afterOperation(Operation.STATION_DEPOSIT_GEM);
+	}
+
+	private synchronized void doDepositGem() throws InterruptedException {
 		
 		// wait while the station is full
 		while(this.gem) {
-			wait();
+			awaitChange(Operation.STATION_DEPOSIT_GEM);
 		}
 		
+		store();
+	}
+
+	// Deposits a gem once the previous gem has been taken, without blocking.
+	public CompletableFuture<Void> depositGemAsync() {
+		return whenPossible(this::canDepositGem, () -> {
+			store();
+			return null;
+		}, null);
+	}
+
+	// puts a newly mined gem at the station
+	private void store() {
+		beginTransition();
 		this.gem = true;
+		endTransition(Operation.STATION_DEPOSIT_GEM);
 		// Optional: [LOGGING] miner deposits a gen
 		// MineLogger.log("STATION-" + id, "gem deposited");
-		notifyAll();
+		signalChange();
 	}
 	
 	public String toString() {
 		return "station " + this.id;
 	}
 
+	// bit 0: cart present, bit 1: gem present (carts on the siding are not
+	// encoded: the fuzzing harnesses keep stations without sidings)
+	@Override
+	protected int stateBits() {
+		return (this.cart != null ? 1 : 0) | (this.gem ? 2 : 0);
+	}
+
 	// [JBMC - OBSERVATION METHODS FOR VERIFICATION]
 	public boolean hasCart() {
 		return this.cart != null;
@@ -98,22 +274,65 @@ public class Station extends Location {
 		return this.id;
 	}
 
+	public boolean isExpress() {
+		return this.express;
+	}
+
+	/** Number of carts that passed through without a gem. */
+	public synchronized long getPassed() {
+		return this.passed;
+	}
+
+	public int getSidingCapacity() {
+		return this.sidingCapacity;
+	}
+
+	// --- [STATISTICS] Station queues ---
+
+	/** Number of carts at the station: the one being loaded and those on the siding. */
+	public synchronized int getQueueLength() {
+		return (this.cart != null ? 1 : 0) + this.siding.size();
+	}
+
+	/** Most carts ever at the station at once. */
+	public synchronized int getMaxQueueLength() {
+		return this.maxQueue;
+	}
+
+	/** Number of carts delivered to the station. */
+	public synchronized long getDeliveries() {
+		return this.deliveries;
+	}
+
+	/** Mean number of carts a cart found at the station when delivered. */
+	public synchronized double getMeanQueueSeen() {
+		return this.deliveries == 0 ? 0 : (double) this.queueSeen / this.deliveries;
+	}
+
 	// --- [FUZZING] Predicate methods to check if operations can proceed ---
 
 	/**
 	 * Returns true if collect() can proceed without blocking.
-	 * Condition: station must have a cart and a gem
+	 * Condition: station must have a cart, and a gem unless express
 	 */
 	public synchronized boolean canCollect() {
-		return this.cart != null && this.gem;
+		return this.cart != null && (this.gem || this.express);
+	}
+
+	/**
+	 * Returns true if a cart delivered now would be loaded with a gem straight
+	 * away: the station has a gem and no cart.
+	 */
+	public synchronized boolean hasGemReady() {
+		return this.cart == null && this.gem;
 	}
 
 	/**
 	 * Returns true if deliver() can proceed without blocking.
-	 * Condition: station must not have a cart
+	 * Condition: station must not have a cart, or have room on its siding
 	 */
 	public synchronized boolean canDeliver() {
-		return this.cart == null;
+		return this.cart == null || this.siding.size() < this.sidingCapacity;
 	}
 
 	/**
@@ -123,4 +342,20 @@ public class Station extends Location {
 	public synchronized boolean canDepositGem() {
 		return !this.gem;
 	}
+
+	// --- [FUZZING] Reuse of one mine across fuzz inputs ---
+
+	/**
+	 * Returns the station to its initial state: no cart and no gem.
+	 * Only call while no role is using the station.
+	 */
+	public synchronized void reset() {
+		this.cart = null;
+		this.gem = false;
+		this.passed = 0;
+		this.siding.clear();
+		this.deliveries = 0;
+		this.queueSeen = 0;
+		this.maxQueue = 0;
+	}
 }
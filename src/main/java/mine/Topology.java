@@ -0,0 +1,165 @@
+package mine;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Topology is the layout of the tracks in the mine: a directed graph of
+ * Locations, where a track from a location to a Destination (another
+ * location, or a ShaftRouter) is served by Engines collecting Carts from the
+ * first and delivering them to the second.
+ *
+ * Tracks may branch and merge. Where more than one track leaves a location,
+ * its engines deliver to a Junction, and the topology's Router picks each
+ * cart's branch, so a cart need not visit every station on a trip. Where
+ * tracks merge, their engines deliver to the same location in turn.
+ */
+
+public class Topology {
+
+	// the tracks out of each location, in the order they were added
+	private final Map<Location, List<Destination>> tracks;
+
+	// the number of engines collecting from each location
+	private final Map<Location, Integer> engines;
+
+	// where the engines from each location deliver: the only location its
+	// track leads to, or the junction of its branches
+	private final Map<Location, Destination> exits = new LinkedHashMap<>();
+
+	private Topology(Builder builder) {
+		this.tracks = new LinkedHashMap<>();
+		for (Map.Entry<Location, List<Destination>> e : builder.tracks.entrySet()) {
+			this.tracks.put(e.getKey(), List.copyOf(e.getValue()));
+		}
+		this.engines = new LinkedHashMap<>(builder.engines);
+		for (Map.Entry<Location, List<Destination>> e : this.tracks.entrySet()) {
+			List<Destination> to = e.getValue();
+			this.exits.put(e.getKey(), to.size() == 1 ? to.get(0) : new Junction(e.getKey(), to, builder.router));
+		}
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	// The mine's line: from each elevator to the first station, each station
+	// in turn, and from the last station to the exit, with one engine on
+	// that last track for each elevator.
+	public static Topology line(List<Elevator> elevators, Destination exit, Station[] stations) {
+		Builder builder = builder();
+		for (Elevator elevator : elevators) {
+			builder.track(elevator, stations[0]);
+		}
+		for (int i = 0; i < stations.length - 1; i++) {
+			builder.track(stations[i], stations[i + 1]);
+		}
+		return builder.track(stations[stations.length - 1], exit)
+				.engines(stations[stations.length - 1], elevators.size())
+				.build();
+	}
+
+	// the number of engines on a line of the given stations below the given
+	// shafts: one from each elevator, one between consecutive stations, and
+	// one from the last station for each elevator
+	public static int lineEngines(int stations, int shafts) {
+		return stations - 1 + 2 * shafts;
+	}
+
+	/** Where the tracks out of the given location lead to. */
+	public List<Destination> successors(Location from) {
+		return this.tracks.getOrDefault(from, List.of());
+	}
+
+	/** Where the engines from the given location deliver, or null if no track leaves it. */
+	public Destination exit(Location from) {
+		return this.exits.get(from);
+	}
+
+	// one engine for each engine on each track out of a location
+	public List<Engine> createEngines() {
+		List<Engine> list = new ArrayList<>();
+		for (Map.Entry<Location, Destination> e : this.exits.entrySet()) {
+			for (int i = 0; i < this.engines.getOrDefault(e.getKey(), 1); i++) {
+				list.add(new Engine(e.getKey(), e.getValue()));
+			}
+		}
+		return list;
+	}
+
+	// one segment for each engine, for an engine pool to serve
+	public List<Segment> segments() {
+		List<Segment> list = new ArrayList<>();
+		for (Map.Entry<Location, Destination> e : this.exits.entrySet()) {
+			for (int i = 0; i < this.engines.getOrDefault(e.getKey(), 1); i++) {
+				list.add(new Segment(e.getKey(), e.getValue()));
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Collects the tracks of a topology.
+	 */
+	public static class Builder {
+
+		private final Map<Location, List<Destination>> tracks = new LinkedHashMap<>();
+		private final Map<Location, Integer> engines = new LinkedHashMap<>();
+		private final List<Destination> into = new ArrayList<>();
+		private Router router = Router.firstFree();
+
+		private Builder() {
+		}
+
+		// adds a track from a location to a destination
+		public Builder track(Location from, Destination to) {
+			if (from == to) {
+				throw new IllegalArgumentException("track from " + from + " to itself");
+			}
+			List<Destination> out = this.tracks.computeIfAbsent(from, k -> new ArrayList<>());
+			if (out.contains(to)) {
+				throw new IllegalArgumentException("track from " + from + " to " + to + " added twice");
+			}
+			out.add(to);
+			this.into.add(to);
+			return this;
+		}
+
+		// sets the number of engines collecting from a location (default one)
+		public Builder engines(Location from, int count) {
+			if (count < 1) {
+				throw new IllegalArgumentException("engines must be positive: " + count);
+			}
+			this.engines.put(from, count);
+			return this;
+		}
+
+		// sets the router picking a cart's branch (default Router.firstFree())
+		public Builder router(Router router) {
+			this.router = router;
+			return this;
+		}
+
+		// checks that every station is on the way and not a dead end
+		public Topology build() {
+			for (Destination at : this.into) {
+				if (at instanceof Station && !this.tracks.containsKey(at)) {
+					throw new IllegalArgumentException("no track leaves " + at);
+				}
+			}
+			for (Location from : this.tracks.keySet()) {
+				if (from instanceof Station && !this.into.contains(from)) {
+					throw new IllegalArgumentException("no track leads to " + from);
+				}
+			}
+			for (Location from : this.engines.keySet()) {
+				if (!this.tracks.containsKey(from)) {
+					throw new IllegalArgumentException("engines set for " + from + ", which no track leaves");
+				}
+			}
+			return new Topology(this);
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package mine.fuzzing;
+
+/**
+ * Process-wide switch for the fuzzing hooks.
+ *
+ * {@link #ENABLED} is a static final field, so once this class is initialised
+ * the JIT treats it as a constant and folds every guarded hook call away when
+ * fuzzing is off. It is deliberately not a compile-time constant: javac would
+ * otherwise inline the value into the thread classes, and the test classpath
+ * copy of this class (same override mechanism as {@code MineLogger}) could no
+ * longer switch the hooks on.
+ *
+ * Production default: off. Can be forced with {@code -Dmine.fuzzing=true}.
+ */
+public final class FuzzingMode {
+
+    public static final boolean ENABLED =
+            Boolean.parseBoolean(System.getProperty("mine.fuzzing", "false"));
+
+    // Prevent instantiation
+    private FuzzingMode() {}
+}
@@ -0,0 +1,110 @@
+package mine.fuzzing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per-role progress counters, one heartbeat per completed Location operation.
+ *
+ * Each armed role owns one slot and is its only writer, so a beat is a plain
+ * increment published with release semantics: no CAS and no contention. The
+ * slots are padded apart so that no two share a cache line (nor an adjacent
+ * pair of lines, which some CPUs prefetch together); a watchdog reading them
+ * never slows the roles down, and can tell which role stopped.
+ */
+public class Heartbeats {
+
+    // Longs per slot: 128 bytes
+    private static final int STRIDE = 16;
+
+    private static final VarHandle BEATS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private volatile ThreadToken[] tokens = new ThreadToken[0];
+
+    // Slot of each role, by role ordinal then instance id; -1 if not armed
+    private volatile int[][] slotsByRole = new int[ThreadToken.Role.values().length][0];
+
+    // Slot i at index (i + 1) * STRIDE, clear of the array header
+    private volatile long[] beats = new long[STRIDE];
+
+    /**
+     * Give each role a slot, starting from zero beats. Roles not armed are
+     * ignored by {@link #beat}.
+     *
+     * @param roles The roles, in slot order
+     */
+    public void arm(List<ThreadToken> roles) {
+        int[][] byRole = new int[ThreadToken.Role.values().length][0];
+        for (int i = 0; i < roles.size(); i++) {
+            ThreadToken t = roles.get(i);
+            int[] byId = byRole[t.getRole().ordinal()];
+            if (t.getInstanceId() >= byId.length) {
+                int old = byId.length;
+                byId = Arrays.copyOf(byId, t.getInstanceId() + 1);
+                Arrays.fill(byId, old, byId.length, -1);
+                byRole[t.getRole().ordinal()] = byId;
+            }
+            byId[t.getInstanceId()] = i;
+        }
+        this.beats = new long[(roles.size() + 1) * STRIDE];
+        this.tokens = roles.toArray(new ThreadToken[0]);
+        this.slotsByRole = byRole;
+    }
+
+    /**
+     * Record one unit of progress. Only the role itself may beat its slot.
+     *
+     * @param token The calling role's token (may be null)
+     */
+    public void beat(ThreadToken token) {
+        int slot = slotOf(token);
+        if (slot >= 0) {
+            long[] b = beats;
+            int at = (slot + 1) * STRIDE;
+            BEATS.setRelease(b, at, (long) BEATS.get(b, at) + 1);
+        }
+    }
+
+    private int slotOf(ThreadToken token) {
+        if (token == null) {
+            return -1;
+        }
+        int[] byId = slotsByRole[token.getRole().ordinal()];
+        int id = token.getInstanceId();
+        return id >= 0 && id < byId.length ? byId[id] : -1;
+    }
+
+    /**
+     * @return Number of armed roles
+     */
+    public int size() {
+        return tokens.length;
+    }
+
+    /**
+     * @return The role owning the slot
+     */
+    public ThreadToken getToken(int slot) {
+        return tokens[slot];
+    }
+
+    /**
+     * @return Beats of the role in the slot so far
+     */
+    public long get(int slot) {
+        return (long) BEATS.getAcquire(beats, (slot + 1) * STRIDE);
+    }
+
+    /**
+     * @return Beats of all roles so far
+     */
+    public long total() {
+        long sum = 0;
+        for (int i = 0; i < size(); i++) {
+            sum += get(i);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,225 @@
+package mine.fuzzing;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, bit-packed state of the whole mine at one instant, taken by
+ * {@link StateBoard#snapshot()}.
+ *
+ * Each Station takes two bits (cart, gem), the Elevator two (cart, at top)
+ * and each Engine one (holding a cart between collect and deliver). The
+ * predicates mirror the {@code can*()} methods of the Locations, but are
+ * evaluated against this one instant instead of one monitor at a time.
+ * Stations are strict (a cart waits for its gem) and have no siding;
+ * {@link StateBoard#attach} rejects any other.
+ */
+public final class MineSnapshot {
+
+    private final int stations;
+    private final int engines;
+    private final long version;
+    private final long[] words;
+
+    MineSnapshot(int stations, int engines, long version, long[] words) {
+        this.stations = stations;
+        this.engines = engines;
+        this.version = version;
+        this.words = words;
+    }
+
+    // --- bit layout ---
+
+    static int stationCartBit(int station) {
+        return 2 * station;
+    }
+
+    static int stationGemBit(int station) {
+        return 2 * station + 1;
+    }
+
+    static int elevatorCartBit(int stations) {
+        return 2 * stations;
+    }
+
+    static int elevatorTopBit(int stations) {
+        return 2 * stations + 1;
+    }
+
+    static int engineBit(int stations, int engine) {
+        return 2 * stations + 2 + engine;
+    }
+
+    static long[] newWords(int stations, int engines) {
+        return new long[(engineBit(stations, engines) + 63) >>> 6];
+    }
+
+    static void set(long[] words, int bit, boolean value) {
+        if (value) {
+            words[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private boolean get(int bit) {
+        return (words[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Zobrist key of one state bit: fixed, pseudo-random, the same in every JVM.
+     */
+    static long zobristKey(int bit) {
+        // splitmix64 of the bit index
+        long z = (bit + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // --- raw state ---
+
+    /**
+     * @return Number of 64-bit words the state bits take
+     */
+    int wordCount() {
+        return words.length;
+    }
+
+    /**
+     * @return One word of state bits, in the layout above
+     */
+    long word(int i) {
+        return words[i];
+    }
+
+    public int getStationCount() {
+        return stations;
+    }
+
+    public int getEngineCount() {
+        return engines;
+    }
+
+    /**
+     * @return Number of Location transitions that had completed when this
+     *         snapshot was taken
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean stationHasCart(int station) {
+        return get(stationCartBit(checkStation(station)));
+    }
+
+    public boolean stationHasGem(int station) {
+        return get(stationGemBit(checkStation(station)));
+    }
+
+    public boolean elevatorHasCart() {
+        return get(elevatorCartBit(stations));
+    }
+
+    public boolean elevatorAtTop() {
+        return get(elevatorTopBit(stations));
+    }
+
+    /**
+     * @return True if the engine has collected a cart it has not yet delivered
+     */
+    public boolean engineInMid(int engine) {
+        if (engine < 0 || engine >= engines) {
+            throw new IndexOutOfBoundsException("engine " + engine);
+        }
+        return get(engineBit(stations, engine));
+    }
+
+    private int checkStation(int station) {
+        if (station < 0 || station >= stations) {
+            throw new IndexOutOfBoundsException("station " + station);
+        }
+        return station;
+    }
+
+    // --- predicates, as in Station and Elevator ---
+
+    public boolean canCollect(int station) {
+        return stationHasCart(station) && stationHasGem(station);
+    }
+
+    public boolean canDeliver(int station) {
+        return !stationHasCart(station);
+    }
+
+    public boolean canDepositGem(int station) {
+        return !stationHasGem(station);
+    }
+
+    public boolean canArrive() {
+        return !elevatorHasCart() && elevatorAtTop();
+    }
+
+    public boolean canDepart() {
+        return elevatorHasCart() && elevatorAtTop();
+    }
+
+    public boolean canCollectFromBottom() {
+        return elevatorHasCart() && !elevatorAtTop();
+    }
+
+    public boolean canDeliverToBottom() {
+        return !elevatorHasCart() && !elevatorAtTop();
+    }
+
+    public boolean canOperateEmpty() {
+        return !elevatorHasCart();
+    }
+
+    /**
+     * Zobrist hash of the state: the XOR of the keys of all set bits. The
+     * {@link StateBoard} keeps the same hash up to date as the Locations
+     * change, see {@link StateBoard#fingerprint()}; this recomputes it.
+     */
+    public long fingerprint() {
+        long hash = 0;
+        for (int w = 0; w < words.length; w++) {
+            for (long bits = words[w]; bits != 0; bits &= bits - 1) {
+                hash ^= zobristKey((w << 6) + Long.numberOfTrailingZeros(bits));
+            }
+        }
+        return hash;
+    }
+
+    // Equal snapshots describe the same mine state, whenever they were taken
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MineSnapshot other)) return false;
+        return stations == other.stations
+                && engines == other.engines
+                && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * stations + engines) + Arrays.hashCode(words);
+    }
+
+    /**
+     * Compact form, e.g. {@code [CG|C-|--|-G] E[C^] M[01000]}: per station
+     * cart/gem, the elevator's cart and position (^ top, v bottom), then one
+     * digit per engine that is in transit.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < stations; i++) {
+            if (i > 0) sb.append('|');
+            sb.append(stationHasCart(i) ? 'C' : '-').append(stationHasGem(i) ? 'G' : '-');
+        }
+        sb.append("] E[").append(elevatorHasCart() ? 'C' : '-').append(elevatorAtTop() ? '^' : 'v');
+        sb.append("] M[");
+        for (int i = 0; i < engines; i++) {
+            sb.append(engineInMid(i) ? '1' : '0');
+        }
+        return sb.append(']').toString();
+    }
+}
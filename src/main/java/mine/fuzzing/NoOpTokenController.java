@@ -13,12 +13,18 @@ public class NoOpTokenController implements TokenController {
     }
     
     @Override
-    public void beforeOperation(ThreadToken token, String operation) {
+    public void beforeOperation(ThreadToken token, Operation operation) {
         // No-op: normal simulation continues unaffected
     }
     
     @Override
-    public void afterOperation(ThreadToken token, String operation) {
+    public void afterOperation(ThreadToken token, Operation operation) {
         // No-op: normal simulation continues unaffected
     }
+    
+    @Override
+    public boolean onInterrupted(ThreadToken token) {
+        // Interrupts stop the thread, as without fuzzing
+        return false;
+    }
 }
@@ -0,0 +1,36 @@
+package mine.fuzzing;
+
+/**
+ * Interned identifiers for the blocking operations offered by Locations.
+ * Passed to {@link TokenController#beforeOperation} and
+ * {@link TokenController#afterOperation} instead of strings, so hooks can
+ * switch or index on them without hashing.
+ *
+ * Each operation also names the predicate that must hold for it to proceed,
+ * which is what a role is blocked on while it waits inside the operation.
+ */
+public enum Operation {
+    STATION_COLLECT("canCollect"),
+    STATION_DELIVER("canDeliver"),
+    STATION_DEPOSIT_GEM("canDepositGem"),
+    ELEVATOR_ARRIVE("canArrive"),
+    ELEVATOR_DEPART("canDepart"),
+    ELEVATOR_COLLECT("canCollectFromBottom"),
+    ELEVATOR_DELIVER("canDeliverToBottom"),
+    ELEVATOR_OPERATE_EMPTY("canOperateEmpty"),
+    ELEVATOR_OPERATE_ON_CALL("canOperateOnCall"),
+    ADMISSION_ADMIT("canAdmit");
+
+    private final String predicate;
+
+    Operation(String predicate) {
+        this.predicate = predicate;
+    }
+
+    /**
+     * @return Name of the Location predicate guarding this operation
+     */
+    public String getPredicate() {
+        return predicate;
+    }
+}
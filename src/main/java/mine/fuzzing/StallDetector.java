@@ -0,0 +1,185 @@
+package mine.fuzzing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Event-driven detector for logical (wait()-based) deadlocks.
+ *
+ * Locations report every role that enters a wait and every state change that
+ * wakes their waiters. A waiter counts as blocked from the moment it waits
+ * until a signal on the same Location releases it, so a role that has been
+ * notified but not yet scheduled is never mistaken for a blocked one. When
+ * the number of blocked roles reaches the number of armed roles, no role can
+ * make the transition that would wake another: the stall is flagged right
+ * away, by the thread that entered the last wait.
+ *
+ * Each blocked role records the predicate it waits on under its own
+ * Location's monitor, so detection never needs a second lock.
+ */
+public class StallDetector {
+
+    /**
+     * A role waiting inside a Location, released by the next signal on it.
+     */
+    public static final class Ticket {
+        private final ThreadToken token;
+        private final Operation operation;
+        private final Object location;
+        private final long generation;
+
+        private Ticket(ThreadToken token, Operation operation, Object location, long generation) {
+            this.token = token;
+            this.operation = operation;
+            this.location = location;
+            this.generation = generation;
+        }
+    }
+
+    // Per-location waiters; only touched while holding that location's monitor
+    private static final class Waiters {
+        long generation;
+        final List<Ticket> tickets = new ArrayList<>();
+    }
+
+    private final Map<Object, Waiters> waitersByLocation = new ConcurrentHashMap<>();
+    private final Map<ThreadToken, Ticket> blocked = new ConcurrentHashMap<>();
+    private final AtomicInteger blockedCount = new AtomicInteger();
+    private final CountDownLatch stalled = new CountDownLatch(1);
+
+    private volatile int roleCount = 0;
+    private volatile StallReport report = null;
+
+    /**
+     * Arm the detector for a simulation with the given number of roles.
+     * Until armed, waits are tracked but never reported as a stall.
+     *
+     * @param roleCount Number of role threads taking part in the simulation
+     */
+    public void arm(int roleCount) {
+        this.roleCount = roleCount;
+    }
+
+    /**
+     * Called by a Location, holding its monitor, right before {@code wait()}.
+     *
+     * @param location The Location whose monitor is held
+     * @param operation The operation the caller is blocked in
+     * @return A ticket to pass to {@link #leaveWait}, or null if the caller is not a role
+     */
+    public Ticket enterWait(Object location, Operation operation) {
+        ThreadToken token = TokenHooks.currentToken();
+        if (token == null) {
+            return null;
+        }
+
+        Waiters waiters = waitersByLocation.computeIfAbsent(location, l -> new Waiters());
+        Ticket ticket = new Ticket(token, operation, location, waiters.generation);
+        waiters.tickets.add(ticket);
+        blocked.put(token, ticket);
+
+        int armed = roleCount;
+        if (blockedCount.incrementAndGet() == armed && armed > 0) {
+            flagStall();
+        }
+        return ticket;
+    }
+
+    /**
+     * Called by a Location, holding its monitor, when {@code wait()} returns.
+     * If no signal released the ticket (spurious wakeup or interrupt), the
+     * caller is withdrawn here.
+     *
+     * @param ticket The ticket returned by {@link #enterWait} (may be null)
+     */
+    public void leaveWait(Ticket ticket) {
+        if (ticket == null) {
+            return;
+        }
+        Waiters waiters = waitersByLocation.get(ticket.location);
+        if (waiters != null && waiters.generation == ticket.generation
+                && waiters.tickets.remove(ticket)) {
+            blocked.remove(ticket.token, ticket);
+            blockedCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Called by a Location, holding its monitor, before {@code notifyAll()}.
+     * Every role waiting on the Location becomes runnable again.
+     *
+     * @param location The Location whose monitor is held
+     */
+    public void signal(Object location) {
+        Waiters waiters = waitersByLocation.get(location);
+        if (waiters == null || waiters.tickets.isEmpty()) {
+            return;
+        }
+        waiters.generation++;
+        for (Ticket t : waiters.tickets) {
+            blocked.remove(t.token, t);
+        }
+        blockedCount.addAndGet(-waiters.tickets.size());
+        waiters.tickets.clear();
+    }
+
+    private void flagStall() {
+        report = blockedRoles();
+        stalled.countDown();
+    }
+
+    /**
+     * Wait up to the given time for a global stall.
+     *
+     * @param timeoutMs Maximum time to wait
+     * @return The stall report, or null if no stall was flagged in time
+     */
+    public StallReport awaitStall(long timeoutMs) throws InterruptedException {
+        if (stalled.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+            return report;
+        }
+        return null;
+    }
+
+    /**
+     * @return The stall report, or null if no global stall has been flagged
+     */
+    public StallReport getReport() {
+        return report;
+    }
+
+    /**
+     * The roles blocked right now, whether or not every role is. Each entry
+     * was accurate when read; roles may be released while the report is built.
+     *
+     * @return The currently blocked roles
+     */
+    public StallReport blockedRoles() {
+        List<StallReport.Entry> entries = new ArrayList<>();
+        for (Ticket t : blocked.values()) {
+            entries.add(new StallReport.Entry(t.token, t.operation, String.valueOf(t.location)));
+        }
+        return new StallReport(entries);
+    }
+
+    /**
+     * @param token A role's token
+     * @return true if the role waits inside a Location and no signal has
+     *         released it yet
+     */
+    public boolean isBlocked(ThreadToken token) {
+        return blocked.containsKey(token);
+    }
+
+    /**
+     * @return Number of roles currently blocked inside a Location
+     */
+    public int getBlockedCount() {
+        return blockedCount.get();
+    }
+}
@@ -0,0 +1,80 @@
+package mine.fuzzing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable description of a global stall: every registered role is waiting
+ * inside a Location, each on the predicate of the operation it is blocked in.
+ */
+public final class StallReport {
+
+    /**
+     * One role blocked inside a Location operation.
+     */
+    public static final class Entry {
+        private final ThreadToken token;
+        private final Operation operation;
+        private final String location;
+
+        Entry(ThreadToken token, Operation operation, String location) {
+            this.token = token;
+            this.operation = operation;
+            this.location = location;
+        }
+
+        public ThreadToken getToken() {
+            return token;
+        }
+
+        public Operation getOperation() {
+            return operation;
+        }
+
+        /**
+         * @return The blocked predicate, e.g. "canCollectFromBottom"
+         */
+        public String getPredicate() {
+            return operation.getPredicate();
+        }
+
+        /**
+         * @return The Location's {@code toString()}, e.g. "station 2"
+         */
+        public String getLocation() {
+            return location;
+        }
+
+        @Override
+        public String toString() {
+            return token + " blocked on " + getPredicate() + " @ " + location;
+        }
+    }
+
+    private final List<Entry> entries;
+
+    StallReport(List<Entry> entries) {
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparing((Entry e) -> e.token.getRole())
+                .thenComparingInt(e -> e.token.getInstanceId()));
+        this.entries = Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * @return The blocked roles, ordered by role and instance id
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Global stall (" + entries.size() + " roles blocked):");
+        for (Entry e : entries) {
+            sb.append("\n  ").append(e);
+        }
+        return sb.toString();
+    }
+}
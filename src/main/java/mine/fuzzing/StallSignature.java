@@ -0,0 +1,95 @@
+package mine.fuzzing;
+
+import java.util.List;
+
+/**
+ * Fingerprint of a stall, for bucketing findings by the bug behind them.
+ *
+ * Two stalls have the same signature when the same roles are blocked on the
+ * same predicates at the same Locations, and the mine is in the same
+ * occupancy pattern (carts and gems per station, the elevator's cart and
+ * position, the engines in transit). How the mine got there, and when, is
+ * left out: every schedule that ends in the same stall is the same finding.
+ */
+public final class StallSignature {
+
+    private final List<StallReport.Entry> blocked;
+    private final String occupancy;
+    private final String canonical;
+    private final long hash;
+
+    private StallSignature(List<StallReport.Entry> blocked, String occupancy) {
+        this.blocked = blocked;
+        this.occupancy = occupancy;
+        StringBuilder sb = new StringBuilder();
+        for (StallReport.Entry e : blocked) {
+            sb.append(e).append('\n');
+        }
+        this.canonical = sb.append(occupancy).toString();
+        this.hash = fnv1a(canonical);
+    }
+
+    /**
+     * @param report The blocked roles; for a partial stall, only those blocked
+     * @param state The mine state at the stall, or null if unknown
+     */
+    public static StallSignature of(StallReport report, MineSnapshot state) {
+        // The report's entries are already in role order
+        return new StallSignature(report.getEntries(), state != null ? state.toString() : "?");
+    }
+
+    /**
+     * @return The blocked roles, ordered by role and instance id
+     */
+    public List<StallReport.Entry> getBlocked() {
+        return blocked;
+    }
+
+    /**
+     * @return The occupancy pattern, in {@link MineSnapshot#toString()} form
+     */
+    public String getOccupancy() {
+        return occupancy;
+    }
+
+    /**
+     * @return 64-bit hash of the signature, the same in every JVM
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * @return The hash as 16 hex digits, to name a bucket by
+     */
+    public String getId() {
+        return String.format("%016x", hash);
+    }
+
+    // FNV-1a: String.hashCode() is too narrow to name buckets by
+    private static long fnv1a(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof StallSignature other)) return false;
+        return hash == other.hash && canonical.equals(other.canonical);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hash);
+    }
+
+    @Override
+    public String toString() {
+        return "stall " + getId() + " (" + blocked.size() + " roles blocked, " + occupancy + ")";
+    }
+}
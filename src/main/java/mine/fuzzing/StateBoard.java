@@ -0,0 +1,322 @@
+package mine.fuzzing;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mine.Elevator;
+import mine.Station;
+
+/**
+ * Source of consistent global snapshots of the mine.
+ *
+ * Every state change of a Location is bracketed by
+ * {@link #beginTransition()} and {@link #endTransition}, still under that
+ * Location's monitor. A snapshot reads the Station, Elevator and Engine
+ * state without taking any monitor, and is accepted only if no transition
+ * was in flight when it started and none began before it finished, so it is
+ * always a state the mine really was in. Readers never block the roles; a
+ * reader that races a transition simply reads again, which takes
+ * nanoseconds.
+ *
+ * Whether an Engine is between its collect and its deliver is tracked here,
+ * inside the same transition that moves the cart, rather than read from the
+ * Engine: its own {@code inMid} flag is set outside any monitor and would
+ * lag the Location it has just emptied.
+ *
+ * The board also keeps a Zobrist hash of the whole state, so that visited
+ * states can be told apart in O(1): each state bit of a {@link MineSnapshot}
+ * has a fixed key, and the hash is the XOR of the keys of the bits set. Each
+ * Location's share of it is replaced inside the Location's own transitions,
+ * and an Engine's key is toggled when it collects or delivers.
+ */
+public class StateBoard {
+
+    /**
+     * Told of every completed Location operation, still under that
+     * Location's monitor, so calls for one Location arrive in order.
+     * Operations completed inside another transition of the same thread (an
+     * asynchronous operation retried while the Elevator moves) are told once
+     * the outermost transition has ended, so a listener can always take a
+     * snapshot.
+     */
+    public interface TransitionListener {
+        /**
+         * @param token The role that performed the operation, or null
+         * @param operation The operation
+         * @param location The Location it was performed on
+         * @param locationState The Location's state bits after the operation
+         */
+        void onTransition(ThreadToken token, Operation operation, Object location, int locationState);
+    }
+
+    // Transitions started / finished; equal when none is in flight
+    private final AtomicLong begun = new AtomicLong();
+    private final AtomicLong ended = new AtomicLong();
+
+    private volatile Station[] stations = null;
+    private volatile Elevator elevator = null;
+
+    // Engine i holds a cart between collect and deliver; one writer per slot
+    private volatile boolean[] carrying = new boolean[0];
+
+    private volatile TransitionListener[] listeners = new TransitionListener[0];
+
+    // Per thread: transitions open, and operations completed inside them
+    private final ThreadLocal<Open> open = ThreadLocal.withInitial(Open::new);
+
+    private static final class Open {
+        int depth = 0;
+        final List<Transition> held = new ArrayList<>();
+    }
+
+    private record Transition(ThreadToken token, Operation operation, Object location, int locationState) {}
+
+    // Zobrist keys of the snapshot bits; each Location's share of the hash,
+    // stations by id then the elevator, with one writer per slot
+    private volatile long[] keys = new long[0];
+    private volatile long[] shares = new long[0];
+    private final AtomicLong zobrist = new AtomicLong();
+
+    /**
+     * Attach the Locations and number of Engines to snapshot.
+     *
+     * @param stations The stations, indexed by id
+     * @param elevator The elevator
+     * @param engines Number of engines, whose tokens are numbered from 0
+     * @throws IllegalArgumentException if a station is express or has a
+     *         siding, which snapshots do not model
+     */
+    public void attach(Station[] stations, Elevator elevator, int engines) {
+        int n = stations.length;
+        for (Station station : stations) {
+            if (station.isExpress() || station.getSidingCapacity() > 0) {
+                throw new IllegalArgumentException("Snapshots model strict stations without a siding: "
+                        + station);
+            }
+        }
+        long[] k = new long[MineSnapshot.engineBit(n, engines)];
+        for (int bit = 0; bit < k.length; bit++) {
+            k[bit] = MineSnapshot.zobristKey(bit);
+        }
+        long[] s = new long[n + 1];
+        long hash = 0;
+        for (int i = 0; i < n; i++) {
+            s[i] = share(k, MineSnapshot.stationCartBit(i),
+                    (stations[i].hasCart() ? 1 : 0) | (stations[i].hasGem() ? 2 : 0));
+            hash ^= s[i];
+        }
+        s[n] = share(k, MineSnapshot.elevatorCartBit(n),
+                (elevator.hasCart() ? 1 : 0) | (elevator.isAtTop() ? 2 : 0));
+        hash ^= s[n];
+        this.keys = k;
+        this.shares = s;
+        this.zobrist.set(hash);
+
+        this.carrying = new boolean[engines];
+        this.stations = stations.clone();
+        this.elevator = elevator;
+    }
+
+    /**
+     * Add a listener for completed operations.
+     */
+    public synchronized void addListener(TransitionListener listener) {
+        TransitionListener[] current = listeners;
+        TransitionListener[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        listeners = updated;
+    }
+
+    /**
+     * Called by a Location, holding its monitor, before it changes state.
+     * Transitions may nest (the Elevator operates inside arrive and deliver).
+     */
+    public void beginTransition() {
+        open.get().depth++;
+        begun.incrementAndGet();
+    }
+
+    /**
+     * Called by a Location, holding its monitor, after it changed state.
+     *
+     * @param operation The operation that made the change, or null for a
+     *        step nested inside another operation (the Elevator moving)
+     * @param location The Location that changed
+     * @param locationState Its state bits after the change
+     */
+    public void endTransition(Operation operation, Object location, int locationState) {
+        Station[] st = stations;
+        int slot = st != null ? slotOf(location, st) : -1;
+        if (slot >= 0) {
+            // Nested steps change the state too: always replace the share
+            int first = slot < st.length ? MineSnapshot.stationCartBit(slot) : MineSnapshot.elevatorCartBit(st.length);
+            long share = share(keys, first, locationState);
+            long[] s = shares;
+            toggle(share ^ s[slot]);
+            s[slot] = share;
+        }
+
+        ThreadToken token = null;
+        if (operation != null) {
+            token = TokenHooks.currentToken();
+            if (token != null && token.getRole() == ThreadToken.Role.ENGINE) {
+                boolean[] slots = carrying;
+                int id = token.getInstanceId();
+                if (id >= 0 && id < slots.length) {
+                    boolean holds = switch (operation) {
+                        case STATION_COLLECT, ELEVATOR_COLLECT -> true;
+                        case STATION_DELIVER, ELEVATOR_DELIVER -> false;
+                        default -> slots[id];
+                    };
+                    if (holds != slots[id]) {
+                        slots[id] = holds;
+                        if (st != null) {
+                            toggle(keys[MineSnapshot.engineBit(st.length, id)]);
+                        }
+                    }
+                }
+            }
+        }
+        ended.incrementAndGet();
+
+        Open o = open.get();
+        if (o.depth > 0) {
+            o.depth--;
+        }
+        TransitionListener[] ls = listeners;
+        if (o.depth > 0) {
+            if (operation != null && ls.length > 0) {
+                o.held.add(new Transition(token, operation, location, locationState));
+            }
+            return;
+        }
+        // Outermost transition ended: nested operations first, in order
+        if (!o.held.isEmpty()) {
+            List<Transition> held = new ArrayList<>(o.held);
+            o.held.clear();
+            for (Transition t : held) {
+                for (TransitionListener l : ls) {
+                    l.onTransition(t.token(), t.operation(), t.location(), t.locationState());
+                }
+            }
+        }
+        if (operation != null) {
+            for (TransitionListener l : ls) {
+                l.onTransition(token, operation, location, locationState);
+            }
+        }
+    }
+
+    /**
+     * @return The slot of an attached Location, fixed while it stays
+     *         attached: a station's id, or the number of stations for the
+     *         elevator; -1 for any other Location
+     */
+    public int slotOf(Object location) {
+        Station[] st = stations;
+        return st != null ? slotOf(location, st) : -1;
+    }
+
+    // Index of an attached Location in shares, or -1
+    private int slotOf(Object location, Station[] st) {
+        if (location instanceof Station s) {
+            int id = s.getId();
+            return id >= 0 && id < st.length && st[id] == s ? id : -1;
+        }
+        return location == elevator ? st.length : -1;
+    }
+
+    // A Location's share: the keys of its set state bits (bit 0, then bit 1)
+    private static long share(long[] keys, int firstBit, int locationState) {
+        return ((locationState & 1) != 0 ? keys[firstBit] : 0)
+                ^ ((locationState & 2) != 0 ? keys[firstBit + 1] : 0);
+    }
+
+    private void toggle(long keys) {
+        if (keys != 0) {
+            zobrist.getAndAccumulate(keys, (a, b) -> a ^ b);
+        }
+    }
+
+    /**
+     * Zobrist hash of the current state, in O(1) and without blocking any
+     * role. Equal to {@link MineSnapshot#fingerprint()} of a snapshot taken
+     * at the same instant.
+     *
+     * @return The hash
+     */
+    public long fingerprint() {
+        int spins = 0;
+        while (true) {
+            long before = ended.get();
+            long version = begun.get();
+            if (version == before) {
+                long hash = zobrist.get();
+                if (begun.get() == version) {
+                    return hash;
+                }
+            }
+            backOff(++spins);
+        }
+    }
+
+    /**
+     * Capture a consistent snapshot of all Stations, the Elevator and the
+     * Engines' in-transit flags, without blocking any role.
+     *
+     * @return The snapshot
+     * @throws IllegalStateException if no mine has been attached
+     */
+    public MineSnapshot snapshot() {
+        Station[] st = stations;
+        Elevator el = elevator;
+        if (st == null || el == null) {
+            throw new IllegalStateException("No mine attached to the state board");
+        }
+        boolean[] slots = carrying;
+
+        int spins = 0;
+        while (true) {
+            long before = ended.get();
+            long version = begun.get();
+            if (version == before) {
+                long[] words = MineSnapshot.newWords(st.length, slots.length);
+                for (int i = 0; i < st.length; i++) {
+                    MineSnapshot.set(words, MineSnapshot.stationCartBit(i), st[i].hasCart());
+                    MineSnapshot.set(words, MineSnapshot.stationGemBit(i), st[i].hasGem());
+                }
+                MineSnapshot.set(words, MineSnapshot.elevatorCartBit(st.length), el.hasCart());
+                MineSnapshot.set(words, MineSnapshot.elevatorTopBit(st.length), el.isAtTop());
+                for (int i = 0; i < slots.length; i++) {
+                    MineSnapshot.set(words, MineSnapshot.engineBit(st.length, i), slots[i]);
+                }
+
+                // Order the plain reads above before the validating read
+                VarHandle.acquireFence();
+                if (begun.get() == version) {
+                    return new MineSnapshot(st.length, slots.length, version, words);
+                }
+            }
+            backOff(++spins);
+        }
+    }
+
+    // Readers that race a transition spin briefly, then yield
+    private static void backOff(int spins) {
+        if (spins < 100) {
+            Thread.onSpinWait();
+        } else {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * @return Number of transitions completed so far
+     */
+    public long getVersion() {
+        return ended.get();
+    }
+}
@@ -1,5 +1,6 @@
 package mine.fuzzing;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -7,11 +8,21 @@ import java.util.concurrent.ConcurrentHashMap;
  * Registry that manages token assignments for thread instances.
  * Tokens are assigned at thread construction/startup and remain immutable.
  * Thread-safe to allow concurrent registration during simulation setup.
+ *
+ * Each registered token also gets a dense index, 0 to
+ * {@link #getTokenCount()} - 1 in order of first registration, so that
+ * per-role state can be kept in flat arrays. Indices belong to the registry,
+ * not to the tokens, which may be registered with several registries; looking
+ * one up uses the token's cached hash and compares its role and instance.
  */
 public class ThreadTokenRegistry {
     
     private final Map<Thread, ThreadToken> threadToToken = new ConcurrentHashMap<>();
     private final Map<ThreadToken, Thread> tokenToThread = new ConcurrentHashMap<>();
+    private final Map<ThreadToken, Integer> tokenToIndex = new ConcurrentHashMap<>();
+
+    // Tokens by index; replaced, never modified, under this
+    private volatile ThreadToken[] indexed = new ThreadToken[0];
     
     /**
      * Register a thread with its assigned token.
@@ -23,6 +34,47 @@ public class ThreadTokenRegistry {
     public void register(Thread thread, ThreadToken token) {
         threadToToken.put(thread, token);
         tokenToThread.put(token, thread);
+        assignIndex(token);
+    }
+
+    private synchronized void assignIndex(ThreadToken token) {
+        Integer index = tokenToIndex.get(token);
+        if (index == null) {
+            ThreadToken[] current = indexed;
+            ThreadToken[] updated = Arrays.copyOf(current, current.length + 1);
+            index = current.length;
+            updated[index] = token;
+            tokenToIndex.put(token, index);
+            indexed = updated;
+        }
+    }
+
+    /**
+     * Get the dense index of a token.
+     *
+     * @param token The token to look up (any instance equal to a registered one)
+     * @return Its index, or -1 if not registered
+     */
+    public int indexOf(ThreadToken token) {
+        Integer index = tokenToIndex.get(token);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Get the token with the given index.
+     *
+     * @param index An index below {@link #getTokenCount()}
+     * @return The first token registered with that index
+     */
+    public ThreadToken getTokenAt(int index) {
+        return indexed[index];
+    }
+
+    /**
+     * Get the number of distinct tokens registered, i.e. the number of indices.
+     */
+    public int getTokenCount() {
+        return indexed.length;
     }
     
     /**
@@ -57,9 +109,11 @@ public class ThreadTokenRegistry {
     /**
      * Clear all registrations. Useful for cleanup between test runs.
      */
-    public void clear() {
+    public synchronized void clear() {
         threadToToken.clear();
         tokenToThread.clear();
+        tokenToIndex.clear();
+        indexed = new ThreadToken[0];
     }
     
     /**
@@ -16,18 +16,31 @@ public interface TokenController {
     void onLoopIteration(ThreadToken token);
     
     /**
-     * Hook point called before a critical operation (e.g., acquiring a lock).
+     * Hook point called before a Location operation, outside its monitor,
+     * so an implementation may block here without holding any lock.
      * 
      * @param token The token of the calling thread
-     * @param operation Description of the operation about to occur
+     * @param operation The operation about to occur
      */
-    void beforeOperation(ThreadToken token, String operation);
+    void beforeOperation(ThreadToken token, Operation operation);
     
     /**
-     * Hook point called after a critical operation completes.
+     * Hook point called after a Location operation completes, outside its monitor.
+     * Not called if the operation was interrupted.
      * 
      * @param token The token of the calling thread
-     * @param operation Description of the operation that completed
+     * @param operation The operation that completed
      */
-    void afterOperation(ThreadToken token, String operation);
+    void afterOperation(ThreadToken token, Operation operation);
+    
+    /**
+     * Hook point called when a thread's loop iteration was interrupted.
+     * 
+     * @param token The token of the calling thread
+     * @return true to start a new iteration, false to let the thread stop;
+     *         by default interrupts stop the thread, as without fuzzing
+     */
+    default boolean onInterrupted(ThreadToken token) {
+        return false;
+    }
 }
@@ -9,6 +9,9 @@ public class TokenControllerProvider {
     
     private static ThreadTokenRegistry registry = new ThreadTokenRegistry();
     private static TokenController controller = new NoOpTokenController();
+    private static StallDetector stallDetector = new StallDetector();
+    private static StateBoard stateBoard = new StateBoard();
+    private static Heartbeats heartbeats = new Heartbeats();
     
     /**
      * Get the current token registry.
@@ -24,12 +27,40 @@ public class TokenControllerProvider {
         return controller;
     }
     
+    /**
+     * Get the current stall detector, fed by every Location wait.
+     */
+    public static StallDetector getStallDetector() {
+        return stallDetector;
+    }
+    
+    /**
+     * Get the current state board, fed by every Location transition.
+     */
+    public static StateBoard getStateBoard() {
+        return stateBoard;
+    }
+    
+    /**
+     * Get the current per-role heartbeats, fed by every completed operation.
+     */
+    public static Heartbeats getHeartbeats() {
+        return heartbeats;
+    }
+    
     /**
      * Set the token controller (typically for fuzzing).
      * 
      * @param newController The controller to use
+     * @throws IllegalStateException if a real controller is installed while
+     *         {@link FuzzingMode#ENABLED} is false, since the hooks would never call it
      */
     public static void setController(TokenController newController) {
+        if (!FuzzingMode.ENABLED && newController != null
+                && !(newController instanceof NoOpTokenController)) {
+            throw new IllegalStateException(
+                    "Fuzzing hooks are disabled; run with -Dmine.fuzzing=true or the test classpath");
+        }
         controller = newController != null ? newController : new NoOpTokenController();
     }
     
@@ -49,5 +80,8 @@ public class TokenControllerProvider {
     public static void reset() {
         controller = new NoOpTokenController();
         registry = new ThreadTokenRegistry();
+        stallDetector = new StallDetector();
+        stateBoard = new StateBoard();
+        heartbeats = new Heartbeats();
     }
 }
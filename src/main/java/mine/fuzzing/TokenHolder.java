@@ -0,0 +1,14 @@
+package mine.fuzzing;
+
+/**
+ * Implemented by thread roles that carry their token from construction,
+ * so hooks never have to look the token up by thread.
+ */
+public interface TokenHolder {
+
+    /**
+     * @return The token bound to this role instance, or null when the role
+     *         was created outside a fuzzing harness
+     */
+    ThreadToken getToken();
+}
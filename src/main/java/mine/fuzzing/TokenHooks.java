@@ -0,0 +1,81 @@
+package mine.fuzzing;
+
+/**
+ * Static entry points for the fuzzing hooks used by the thread roles.
+ *
+ * Every hook is guarded by {@link FuzzingMode#ENABLED}. With fuzzing off the
+ * guard is a JIT constant and the call inlines to nothing, so production loops
+ * pay neither the controller dispatch nor a token lookup.
+ */
+public final class TokenHooks {
+
+    // Prevent instantiation
+    private TokenHooks() {}
+
+    /**
+     * Hook point at the start of a role's loop iteration.
+     *
+     * @param token The token bound to the calling role (may be null)
+     */
+    public static void onLoopIteration(ThreadToken token) {
+        if (FuzzingMode.ENABLED) {
+            TokenControllerProvider.getController().onLoopIteration(token);
+        }
+    }
+
+    /**
+     * Hook point before a Location operation. Called by the Location itself,
+     * outside its monitor, on the thread that performs the operation.
+     *
+     * @param operation The operation about to occur
+     * @throws InterruptedException if the thread was interrupted while the
+     *         controller held it, so it never performs an ungranted operation
+     */
+    public static void beforeOperation(Operation operation) throws InterruptedException {
+        if (FuzzingMode.ENABLED) {
+            TokenControllerProvider.getController().beforeOperation(currentToken(), operation);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /**
+     * Hook point after a Location operation completed, outside its monitor.
+     * The completed operation counts as a heartbeat of the calling role.
+     *
+     * @param operation The operation that completed
+     */
+    public static void afterOperation(Operation operation) {
+        if (FuzzingMode.ENABLED) {
+            ThreadToken token = currentToken();
+            TokenControllerProvider.getHeartbeats().beat(token);
+            TokenControllerProvider.getController().afterOperation(token, operation);
+        }
+    }
+
+    /**
+     * Hook point in a role's handler for {@link InterruptedException}.
+     *
+     * @param token The token bound to the calling role (may be null)
+     * @return true if the role should start a new iteration rather than stop
+     */
+    public static boolean onInterrupted(ThreadToken token) {
+        if (FuzzingMode.ENABLED) {
+            return TokenControllerProvider.getController().onInterrupted(token);
+        }
+        return false;
+    }
+
+    /**
+     * Token of the calling thread: taken from the role itself when it is a
+     * {@link TokenHolder}, otherwise from the registry (e.g. plain test threads).
+     */
+    static ThreadToken currentToken() {
+        Thread t = Thread.currentThread();
+        if (t instanceof TokenHolder holder) {
+            return holder.getToken();
+        }
+        return TokenControllerProvider.getRegistry().getCurrentThreadToken();
+    }
+}
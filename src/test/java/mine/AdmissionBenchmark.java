@@ -0,0 +1,84 @@
+package mine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Compares fixed limits on the carts in the mine with the adaptive one.
+ *
+ * Builds the mine as {@link Main} does, runs it for a while under each fixed
+ * limit from one cart up to {@link AdmissionController#maxInFlight}, then
+ * under the adaptive limit, and reports for each the gems carried out per
+ * second, the shortest cycle time and the mean station occupancy:
+ * <pre>
+ * java -Dmine.fuzzing=false -cp "target/test-classes:target/classes" \
+ *   mine.AdmissionBenchmark [seconds]
+ * </pre>
+ * Pauses are random, so compare runs of several seconds.
+ */
+public class AdmissionBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        long runMs = 1000L * (args.length > 0 ? Integer.parseInt(args[0]) : 5);
+        int n = Params.STATIONS;
+        MineLogger.setQuiet(true);
+        System.out.printf("%-10s %8s %8s %10s %12s %10s%n",
+                "limit", "final", "carts", "gems/s", "min cycle", "occupancy");
+        for (int limit = 1; limit <= AdmissionController.maxInFlight(n) + 1; limit++) {
+            boolean adaptive = limit > AdmissionController.maxInFlight(n);
+            Station[] station = stations(n);
+            AdmissionController admission = adaptive
+                    ? new AdmissionController(station) : new AdmissionController(station, limit);
+            run(station, admission, runMs);
+            System.out.printf("%-10s %8d %8d %10.2f %9.0f ms %10.2f%n", adaptive ? "adaptive" : limit,
+                    admission.getLimit(), admission.getDeparted(), admission.getGemsPerSecond(),
+                    admission.getMinCycleMillis(), admission.getMeanStationOccupancy());
+        }
+    }
+
+    static Station[] stations(int n) {
+        Station[] station = new Station[n];
+        for (int i = 0; i < n; i++) {
+            station[i] = new Station(i);
+        }
+        return station;
+    }
+
+    // Run a mine on the given stations with the given admission control
+    static void run(Station[] station, AdmissionController admission, long runMs) throws InterruptedException {
+        run(station, admission, runMs, Miner::new);
+    }
+
+    // The same, with the given miner at each station
+    static void run(Station[] station, AdmissionController admission, long runMs,
+                    Function<Station, Thread> miner) throws InterruptedException {
+        int n = station.length;
+        Elevator elevator = new Elevator();
+
+        List<Thread> threads = new ArrayList<>();
+        threads.add(new Producer(elevator, null, admission));
+        threads.add(new Consumer(elevator, null, admission));
+        threads.add(new Operator(elevator));
+        for (int i = 0; i < n; i++) {
+            threads.add(miner.apply(station[i]));
+        }
+        for (int i = 0; i < n - 1; i++) {
+            threads.add(new Engine(station[i], station[i + 1]));
+        }
+        threads.add(new Engine(elevator, station[0]));
+        threads.add(new Engine(station[n - 1], elevator));
+
+        for (Thread t : threads) {
+            t.setDaemon(true);
+            t.start();
+        }
+        Thread.sleep(runMs);
+        for (Thread t : threads) {
+            t.interrupt();
+        }
+        for (Thread t : threads) {
+            t.join(1000);
+        }
+    }
+}
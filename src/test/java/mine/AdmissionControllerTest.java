@@ -0,0 +1,233 @@
+package mine;
+
+import mine.fuzzing.Operation;
+import mine.fuzzing.StallDetector;
+import mine.fuzzing.StallReport;
+import mine.fuzzing.ThreadToken;
+import mine.fuzzing.TokenControllerProvider;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the limit on carts in the mine.
+ */
+public class AdmissionControllerTest {
+
+    private static final long MS = 1_000_000L;
+
+    private static Station[] stations(int n) {
+        Station[] station = new Station[n];
+        for (int i = 0; i < n; i++) {
+            station[i] = new Station(i);
+        }
+        return station;
+    }
+
+    /**
+     * Drives the controller with a mine in virtual time: every cart travels
+     * for a fixed time, then queues for a single departure taking a fixed
+     * time, the bottleneck. Admits carts whenever the limit allows.
+     *
+     * @return the controller after the given number of departures
+     */
+    private static AdmissionController simulate(AdmissionController admission, long travel, long service,
+                                                int departures) {
+        Deque<long[]> travelling = new ArrayDeque<>(); // arrival at the bottleneck, cart
+        Deque<Cart> queued = new ArrayDeque<>();
+        Cart[] carts = new Cart[departures + 64];
+        int next = 0;
+        long now = 0;
+        Cart departing = null;
+        long departed = 0;
+        for (int d = 0; d < departures; ) {
+            while (admission.canAdmit()) {
+                Cart cart = Cart.getNewCart();
+                carts[next] = cart;
+                admission.admitted(cart, now);
+                travelling.add(new long[] {now + travel, next++});
+            }
+            if (departing == null && !queued.isEmpty()) {
+                departing = queued.poll();
+                departed = now + service;
+            }
+            // the next event: a cart reaching the bottleneck, or one departing
+            long arrival = travelling.isEmpty() ? Long.MAX_VALUE : travelling.peek()[0];
+            if (departing == null || arrival < departed) {
+                now = arrival;
+                queued.add(carts[(int) travelling.poll()[1]]);
+            } else {
+                now = departed;
+                admission.departed(departing, now);
+                departing = null;
+                d++;
+            }
+        }
+        return admission;
+    }
+
+    @Test
+    public void testFixedLimitHoldsTheProducer() throws Exception {
+        AdmissionController admission = new AdmissionController(stations(4), 2);
+        Cart a = Cart.getNewCart();
+        admission.admit(a);
+        admission.admit(Cart.getNewCart());
+        assertFalse(admission.canAdmit());
+
+        CompletableFuture<Void> third = CompletableFuture.runAsync(() -> {
+            try {
+                admission.admit(Cart.getNewCart());
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThrows(TimeoutException.class, () -> third.get(200, TimeUnit.MILLISECONDS));
+
+        admission.departed(a);
+        third.get(5, TimeUnit.SECONDS);
+        assertEquals(2, admission.getInFlight());
+        assertEquals(1, admission.getDeparted());
+
+        // a cart the controller never admitted frees nothing
+        admission.departed(Cart.getNewCart());
+        assertEquals(2, admission.getInFlight());
+        assertEquals(2, admission.getLimit(), "A fixed limit does not adapt");
+    }
+
+    @Test
+    public void testAdaptiveLimitSettlesJustAboveTheCriticalLevel() {
+        // 100 ms travel and a 25 ms departure: at most 40 carts/s, 125 ms
+        // per cart without queueing, so 5 carts in flight saturate the mine
+        AdmissionController admission = simulate(new AdmissionController(stations(4)), 100 * MS, 25 * MS, 400);
+
+        assertEquals(125, admission.getMinCycleMillis(), 1e-9);
+        assertEquals((int) Math.ceil(AdmissionController.GAIN * 5), admission.getLimit());
+        assertEquals(400, admission.getDeparted());
+    }
+
+    @Test
+    public void testCycleTimeQuantiles() {
+        AdmissionController admission = new AdmissionController(stations(4), 9);
+        for (int i = 1; i <= 100; i++) {
+            Cart cart = Cart.getNewCart();
+            admission.admitted(cart, 0);
+            admission.departed(cart, i * MS);
+        }
+        assertEquals(50, admission.getCycleMillis(0.5), 1e-9);
+        assertEquals(99, admission.getCycleMillis(0.99), 1e-9);
+        assertEquals(100, admission.getCycleMillis(1), 1e-9);
+        assertEquals(1, admission.getCycleMillis(0), 1e-9);
+        assertEquals(1000, admission.getCartsPerSecond(), 1e-6, "100 carts in 100 ms");
+    }
+
+    @Test
+    public void testAdaptiveLimitStopsShortOfJamming() {
+        // a departure so quick that only the travel limits the mine
+        AdmissionController admission = simulate(new AdmissionController(stations(4)), 100 * MS, MS / 10, 400);
+
+        assertEquals(AdmissionController.maxInFlight(4), admission.getLimit());
+        assertEquals(9, AdmissionController.maxInFlight(4), "4 stations, 5 engines and the elevator, less one");
+        assertEquals(9, new AdmissionController(stations(4), 100).getLimit());
+    }
+
+    @Test
+    public void testCapCountsEveryShaftAndPooledEngine() {
+        assertEquals(12, AdmissionController.maxInFlight(4, 2, Topology.lineEngines(4, 2)),
+                "4 stations, 7 engines and 2 elevators, less one");
+        assertEquals(6, AdmissionController.maxInFlight(4, 1, 2), "4 stations, 2 pooled engines and the elevator, less one");
+
+        // a departure so quick that only the travel limits the mine
+        AdmissionController pooled = simulate(new AdmissionController(stations(4), 1, 2), 100 * MS, MS / 10, 400);
+        assertEquals(6, pooled.getLimit());
+    }
+
+    @Test
+    public void testFullStationsTakeNoHeadroom() throws InterruptedException {
+        // as in testAdaptiveLimitSettlesJustAboveTheCriticalLevel, but with
+        // every station occupied as carts leave: more carts would only queue,
+        // so the limit never probes above the carts in flight
+        Station[] full = stations(4);
+        for (Station s : full) {
+            s.deliver(Cart.getNewCart());
+        }
+        AdmissionController admission = simulate(new AdmissionController(full), 100 * MS, 25 * MS, 400);
+
+        assertEquals(4, admission.getMeanStationOccupancy(), 1e-9);
+        assertEquals(1, admission.getLimit());
+    }
+
+    @Test
+    public void testCartsFromManyProducersHaveDistinctIds() throws Exception {
+        // Admission is keyed by cart id, and there is a producer per shaft
+        int producers = 4;
+        int each = 10_000;
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < each; i++) {
+                    ids.add(Cart.getNewCart().getId());
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(producers * each, ids.size());
+    }
+
+    // the operation the role is blocked in, once it blocks
+    private static Operation awaitBlocked(StallDetector detector, ThreadToken token) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!detector.isBlocked(token) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        List<StallReport.Entry> entries = detector.blockedRoles().getEntries();
+        return entries.isEmpty() ? null : entries.get(0).getOperation();
+    }
+
+    @Test
+    public void testCartThatNeverArrivesGivesItsPlaceBack() throws Exception {
+        AdmissionController admission = new AdmissionController(stations(4), 1);
+        Elevator elevator = new Elevator();
+        elevator.arrive(Cart.getNewCart());
+        Cart first = Cart.getNewCart();
+        admission.admit(first);
+        ThreadToken token = new ThreadToken(ThreadToken.Role.PRODUCER, 0);
+
+        Producer producer = new Producer(elevator, token, admission);
+        TokenControllerProvider.getRegistry().register(producer, token);
+        StallDetector detector = TokenControllerProvider.getStallDetector();
+        try {
+            producer.setDaemon(true);
+            producer.start();
+
+            // held for a place, as a blocked role
+            assertEquals(Operation.ADMISSION_ADMIT, awaitBlocked(detector, token));
+
+            // admitted, then held by the full elevator
+            admission.departed(first);
+            assertEquals(Operation.ELEVATOR_ARRIVE, awaitBlocked(detector, token));
+            assertEquals(1, admission.getInFlight());
+
+            producer.interrupt();
+            producer.join(5000);
+            assertFalse(producer.isAlive());
+            assertEquals(0, admission.getInFlight(), "The cart that never arrived holds no place");
+            assertTrue(admission.canAdmit());
+        } finally {
+            producer.interrupt();
+            TokenControllerProvider.reset();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package mine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for collecting and delivering carts without blocking.
+ */
+public class AsyncLocationTest {
+
+    @Test
+    public void testCollectCompletesWhenTheGemArrives() throws Exception {
+        Station station = new Station(0);
+        Cart cart = Cart.getNewCart();
+        station.deliverAsync(cart).get(5, TimeUnit.SECONDS);
+
+        CompletableFuture<Cart> collected = station.collectAsync();
+        assertFalse(collected.isDone(), "No gem yet");
+        station.depositGem();
+        assertSame(cart, collected.get(5, TimeUnit.SECONDS));
+        assertEquals(1, cart.getGems());
+        assertTrue(station.canDeliver());
+    }
+
+    @Test
+    public void testPendingDeliveriesAreMadeInOrder() throws Exception {
+        Station station = new Station(0);
+        List<Cart> carts = new ArrayList<>();
+        List<CompletableFuture<Void>> delivered = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Cart c = Cart.getNewCart();
+            carts.add(c);
+            delivered.add(station.deliverAsync(c));
+        }
+        assertTrue(delivered.get(0).isDone(), "The station was free");
+        assertFalse(delivered.get(1).isDone());
+
+        for (int i = 0; i < carts.size(); i++) {
+            delivered.get(i).get(5, TimeUnit.SECONDS);
+            station.depositGem();
+            assertSame(carts.get(i), station.collect(), "Delivered in the order asked");
+        }
+    }
+
+    @Test
+    public void testCancelledDeliveryIsWithdrawn() throws Exception {
+        Station station = new Station(0);
+        station.deliver(Cart.getNewCart());
+        Cart cart = Cart.getNewCart();
+        CompletableFuture<Void> delivered = station.deliverAsync(cart);
+        assertTrue(delivered.cancel(false));
+
+        station.depositGem();
+        station.collect();
+        assertTrue(station.canDeliver(), "The cancelled cart never arrives");
+        assertFalse(delivered.cancel(false));
+
+        CompletableFuture<Cart> collected = station.collectAsync();
+        station.deliver(cart);
+        station.depositGem();
+        assertSame(cart, collected.get(5, TimeUnit.SECONDS));
+        assertFalse(collected.cancel(false), "Too late to withdraw");
+    }
+
+    @Test
+    public void testTimedOutCollectionIsWithdrawn() throws Exception {
+        Station station = new Station(0);
+        CompletableFuture<Cart> timedOut = station.collectAsync().orTimeout(10, TimeUnit.MILLISECONDS);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> timedOut.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+
+        CompletableFuture<Cart> completed = station.collectAsync();
+        assertTrue(completed.complete(null));
+
+        Cart cart = Cart.getNewCart();
+        station.deliver(cart);
+        station.depositGem();
+        assertTrue(station.canCollect(), "Neither future took the cart");
+        assertSame(cart, station.collect());
+    }
+
+    @Test
+    public void testTimedOutDeliveryNoLongerCallsTheElevator() throws Exception {
+        Elevator elevator = new Elevator();
+        CompletableFuture<Void> timedOut = elevator.deliverAsync(Cart.getNewCart()).orTimeout(10, TimeUnit.MILLISECONDS);
+        assertThrows(ExecutionException.class, () -> timedOut.get(5, TimeUnit.SECONDS));
+        assertEquals(0, elevator.getCalls(false), "A withdrawn cart no longer calls");
+
+        elevator.operateEmpty();
+        assertTrue(elevator.canDeliverToBottom(), "The timed out cart never boards");
+    }
+
+    @Test
+    public void testAsyncDeliveryCallsTheElevator() throws Exception {
+        Elevator elevator = new Elevator();
+
+        // the car is at the top, so a cart waits at the bottom and calls it
+        CompletableFuture<Void> withdrawn = elevator.deliverAsync(Cart.getNewCart());
+        assertFalse(withdrawn.isDone());
+        assertEquals(1, elevator.getCalls(false));
+        assertTrue(withdrawn.cancel(false));
+        assertEquals(0, elevator.getCalls(false), "A withdrawn cart no longer calls");
+
+        Cart cart = Cart.getNewCart();
+        CompletableFuture<Void> waiting = elevator.deliverAsync(cart);
+        assertEquals(1, elevator.getCalls(false));
+        elevator.operateEmpty();
+        waiting.get(5, TimeUnit.SECONDS);
+        assertEquals(0, elevator.getCalls(false));
+        assertTrue(elevator.canDepart(), "The car took the cart up");
+    }
+
+    @Test
+    public void testManyCartsWithoutEngineThreads() throws Exception {
+        Station[] stations = {new Station(0), new Station(1), new Station(2)};
+        List<Thread> miners = new ArrayList<>();
+        for (Station s : stations) {
+            // a miner with no pause between gems
+            Thread m = new Thread(() -> {
+                try {
+                    while (true) {
+                        s.depositGem();
+                    }
+                } catch (InterruptedException e) {
+                    // stopped
+                }
+            });
+            m.setDaemon(true);
+            m.start();
+            miners.add(m);
+        }
+
+        // each cart visits the stations in turn, with no thread of its own
+        List<CompletableFuture<Cart>> trips = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Cart cart = Cart.getNewCart();
+            CompletableFuture<Cart> trip = CompletableFuture.completedFuture(cart);
+            for (Station s : stations) {
+                trip = trip.thenCompose(c -> s.deliverAsync(c)).thenCompose(v -> s.collectAsync());
+            }
+            trips.add(trip);
+        }
+        int gems = 0;
+        for (CompletableFuture<Cart> trip : trips) {
+            gems += trip.get(60, TimeUnit.SECONDS).getGems();
+        }
+        for (Thread m : miners) {
+            m.interrupt();
+        }
+        assertEquals(3 * trips.size(), gems, "A gem from every station for every cart");
+    }
+
+    @Test
+    public void testRouterDeliversOnceTheCalledCarIsDown() throws InterruptedException {
+        Elevator a = new Elevator();
+        Elevator b = new Elevator();
+        ShaftRouter router = new ShaftRouter(List.of(a, b));
+        CompletableFuture<Void> delivered = router.deliverAsync(Cart.getNewCart());
+        assertFalse(delivered.isDone(), "Both cars are at the top");
+        assertEquals(1, router.getRouted(0));
+        assertEquals(1, a.getCalls(false), "The cart calls the car it is routed to");
+
+        a.operateEmpty();
+        assertDoesNotThrow(() -> delivered.get(5, TimeUnit.SECONDS));
+        assertTrue(a.hasCart());
+        assertFalse(b.hasCart());
+    }
+}
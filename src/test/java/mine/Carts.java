@@ -0,0 +1,17 @@
+package mine;
+
+/**
+ * Test access to the numbering of carts, which is package-private.
+ */
+public final class Carts {
+
+    // Prevent instantiation
+    private Carts() {}
+
+    /**
+     * Number carts from 1 again. Only call while no role creates carts.
+     */
+    public static void reset() {
+        Cart.reset();
+    }
+}
@@ -0,0 +1,73 @@
+package mine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the Operator's elevator policies on the whole mine.
+ *
+ * Builds the mine as {@link Main} does, runs it for a while under the fixed
+ * rhythm and then under the call-button policy, and reports for each the
+ * Elevator's empty trips and how long carts waited in arrive() or deliver()
+ * to be loaded:
+ * <pre>
+ * java -Dmine.fuzzing=false -cp "target/test-classes:target/classes" \
+ *   mine.ElevatorPolicyBenchmark [seconds]
+ * </pre>
+ * Pauses are random, so compare runs of several seconds. Either policy may
+ * run into the mine's own deadlock (every Station full, a cart in the
+ * Elevator at the bottom) before the time is up, so compare the rates, empty
+ * trips per loaded cart and waits, rather than the totals.
+ */
+public class ElevatorPolicyBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        long runMs = 1000L * (args.length > 0 ? Integer.parseInt(args[0]) : 10);
+        MineLogger.setQuiet(true);
+        System.out.printf("%-12s %8s %8s %10s %12s %12s%n",
+                "policy", "loaded", "empty", "empty/cart", "mean wait", "max wait");
+        for (boolean onCall : new boolean[] {false, true}) {
+            Elevator elevator = run(onCall, runMs);
+            long loaded = elevator.getCartsLoaded();
+            System.out.printf("%-12s %8d %8d %10.2f %9.1f ms %9.1f ms%n", onCall ? "call-button" : "fixed",
+                    loaded, elevator.getEmptyTrips(), loaded == 0 ? 0.0 : (double) elevator.getEmptyTrips() / loaded,
+                    elevator.getMeanCartWaitMillis(), elevator.getMaxCartWaitMillis());
+        }
+    }
+
+    // Run a mine with the given policy; its elevator afterwards
+    static Elevator run(boolean onCall, long runMs) throws InterruptedException {
+        int n = Params.STATIONS;
+        Elevator elevator = new Elevator();
+        Station[] station = new Station[n];
+        for (int i = 0; i < n; i++) {
+            station[i] = new Station(i);
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        threads.add(new Producer(elevator));
+        threads.add(new Consumer(elevator));
+        threads.add(new Operator(elevator, null, onCall));
+        for (int i = 0; i < n; i++) {
+            threads.add(new Miner(station[i]));
+        }
+        for (int i = 0; i < n - 1; i++) {
+            threads.add(new Engine(station[i], station[i + 1]));
+        }
+        threads.add(new Engine(elevator, station[0]));
+        threads.add(new Engine(station[n - 1], elevator));
+
+        for (Thread t : threads) {
+            t.setDaemon(true);
+            t.start();
+        }
+        Thread.sleep(runMs);
+        for (Thread t : threads) {
+            t.interrupt();
+        }
+        for (Thread t : threads) {
+            t.join(1000);
+        }
+        return elevator;
+    }
+}
@@ -0,0 +1,112 @@
+package mine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the Operator's elevator policies and the Elevator's
+ * statistics used to compare them.
+ */
+public class ElevatorPolicyTest {
+
+    private Elevator elevator;
+    private Operator operator;
+
+    @BeforeEach
+    public void setup() {
+        Params.setPauseProvider(new PauseProvider() {
+            public long arrivalPause() { return 0; }
+            public long departurePause() { return 0; }
+            public long operatorPause() { return 0; }
+            public long minerPause() { return 0; }
+        });
+        elevator = new Elevator();
+    }
+
+    @AfterEach
+    public void cleanup() throws InterruptedException {
+        if (operator != null) {
+            operator.interrupt();
+            operator.join(5000);
+        }
+        Params.resetPauseProvider();
+    }
+
+    private void start(boolean onCall) {
+        operator = new Operator(elevator, null, onCall);
+        operator.setDaemon(true);
+        operator.start();
+    }
+
+    private static CompletableFuture<Void> async(Runnable r) {
+        return CompletableFuture.runAsync(r);
+    }
+
+    @Test
+    public void testFixedRhythmTravelsEmpty() throws InterruptedException {
+        start(false);
+        Thread.sleep(20 * Params.ELEVATOR_TIME);
+        assertTrue(elevator.getEmptyTrips() > 2, "The car shuttles with nobody waiting");
+        assertEquals(0, elevator.getCartsLoaded());
+    }
+
+    @Test
+    public void testOnCallStaysWithoutDemand() throws InterruptedException {
+        start(true);
+        assertFalse(operator.canProceed());
+        Thread.sleep(10 * Params.ELEVATOR_TIME);
+        assertEquals(0, elevator.getEmptyTrips());
+        assertTrue(elevator.isAtTop());
+    }
+
+    @Test
+    public void testOnCallAnswersEachEnd() throws Exception {
+        start(true);
+
+        // The car waits at the top: an Engine calls it down
+        CompletableFuture<Void> delivered = async(() -> {
+            try {
+                elevator.deliver(Cart.getNewCart());
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        delivered.get(5, TimeUnit.SECONDS);
+        assertEquals(1, elevator.getEmptyTrips(), "One trip down to answer the call");
+        assertTrue(elevator.isAtTop(), "The loaded car went back up");
+
+        elevator.depart();
+        elevator.arrive(Cart.getNewCart());
+        assertEquals(1, elevator.getEmptyTrips(), "The Producer found the car at the top");
+
+        // The car went down loaded; once emptied, the Producer calls it up
+        elevator.collect();
+        elevator.arrive(Cart.getNewCart());
+        assertEquals(2, elevator.getEmptyTrips());
+
+        assertEquals(3, elevator.getCartsLoaded());
+        assertTrue(elevator.getMaxCartWaitMillis() >= Params.ELEVATOR_TIME, "Calls wait for the car to travel");
+        assertTrue(elevator.getMeanCartWaitMillis() <= elevator.getMaxCartWaitMillis());
+    }
+
+    @Test
+    public void testResetClearsStatistics() throws InterruptedException {
+        elevator.arrive(Cart.getNewCart());
+        elevator.collect();
+        elevator.operateEmpty();
+        assertEquals(1, elevator.getEmptyTrips());
+        assertEquals(1, elevator.getCartsLoaded());
+
+        elevator.reset();
+        assertEquals(0, elevator.getEmptyTrips());
+        assertEquals(0, elevator.getCartsLoaded());
+        assertEquals(0, elevator.getMeanCartWaitMillis());
+        assertFalse(elevator.canOperateOnCall());
+    }
+}
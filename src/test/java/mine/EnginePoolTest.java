@@ -0,0 +1,154 @@
+package mine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for engines shared among the segments of the line.
+ */
+public class EnginePoolTest {
+
+    private final List<Thread> threads = new ArrayList<>();
+
+    @AfterEach
+    public void cleanup() throws InterruptedException {
+        for (Thread t : threads) {
+            t.interrupt();
+        }
+        for (Thread t : threads) {
+            t.join(5000);
+        }
+        Params.resetPauseProvider();
+    }
+
+    private static Station[] stations(int n) {
+        Station[] station = new Station[n];
+        for (int i = 0; i < n; i++) {
+            station[i] = new Station(i);
+        }
+        return station;
+    }
+
+    @Test
+    public void testEngineStealsOnlyWhenItsGroupHasNothingReady() throws InterruptedException {
+        Station[] station = stations(4);
+        List<Segment> segments = List.of(new Segment(station[0], station[1]),
+                new Segment(station[1], station[2]), new Segment(station[2], station[3]));
+        // engine 0 serves the first two segments, engine 1 the last
+        EnginePool pool = new EnginePool(segments, 2);
+        for (Segment s : segments) {
+            pool.offer(s);
+        }
+
+        station[1].deliver(Cart.getNewCart());
+        station[1].depositGem();
+        assertSame(segments.get(1), pool.poll(1), "Nothing ready at home, so steal");
+        assertEquals(1, pool.getSteals());
+        assertNull(pool.poll(0), "Claimed by engine 1");
+
+        pool.release(segments.get(1));
+        assertSame(segments.get(1), pool.poll(0), "Still ready once released");
+        assertEquals(1, pool.getSteals(), "Served at home");
+        pool.release(segments.get(1));
+        assertSame(segments.get(1), pool.poll(0));
+
+        // a change at a station queues the segments through it
+        assertNull(pool.poll(0));
+        station[2].deliver(station[1].collect());
+        station[2].depositGem();
+        assertSame(segments.get(2), pool.poll(1));
+    }
+
+    @Test
+    public void testTwoEnginesServeTheWholeLine() throws InterruptedException {
+        Params.setPauseProvider(new PauseProvider() {
+            public long arrivalPause() { return 0; }
+            public long departurePause() { return 0; }
+            public long operatorPause() { return 0; }
+            public long minerPause() { return 0; }
+        });
+        int n = 4;
+        Elevator elevator = new Elevator();
+        Station[] station = stations(n);
+        AdmissionController admission = new AdmissionController(station, 3);
+        EnginePool pool = new EnginePool(Segment.line(elevator, station), 2);
+
+        threads.add(new Producer(elevator, null, admission));
+        threads.add(new Consumer(elevator, null, admission));
+        threads.add(new Operator(elevator));
+        for (int i = 0; i < n; i++) {
+            threads.add(new Miner(station[i]));
+        }
+        for (Thread t : threads) {
+            t.setDaemon(true);
+            t.start();
+        }
+        threads.addAll(pool.getEngines());
+        pool.start();
+
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (admission.getDeparted() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(admission.getDeparted() >= 3, "Carts should get round with 2 engines for 5 segments");
+        assertEquals(n * admission.getDeparted(), admission.getGems(), "A gem from every station");
+        assertTrue(pool.getTrips() >= 5 * admission.getDeparted());
+    }
+
+    @Test
+    public void testMergingTracksCarryOneCartAtATime() throws InterruptedException {
+        Station[] station = stations(3);
+        // two tracks into station 2
+        List<Segment> segments = List.of(new Segment(station[0], station[2]), new Segment(station[1], station[2]));
+        EnginePool pool = new EnginePool(segments, 2);
+        for (int i = 0; i < 2; i++) {
+            station[i].deliver(Cart.getNewCart());
+            station[i].depositGem();
+        }
+        for (Segment s : segments) {
+            pool.offer(s);
+        }
+
+        Segment first = pool.poll(0);
+        assertNotNull(first);
+        assertNull(pool.poll(1), "Station 2 is claimed by the cart on its way there");
+
+        // delivered: the other track can be served
+        station[2].deliver(first.getOrigin().collect());
+        pool.release(first);
+        assertNull(pool.poll(1), "Station 2 is full now");
+        station[2].depositGem();
+        station[2].collect();
+        Segment second = pool.poll(1);
+        assertNotNull(second);
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void testBranchAndDirectTrackClaimTheSameStation() throws InterruptedException {
+        Station[] station = stations(4);
+        // station 0 branches to stations 2 and 3; station 1 leads straight to station 3
+        Junction junction = new Junction(station[0], List.of(station[2], station[3]), Router.firstFree());
+        List<Segment> segments = List.of(new Segment(station[0], junction), new Segment(station[1], station[3]));
+        EnginePool pool = new EnginePool(segments, 2);
+        for (int i = 0; i < 2; i++) {
+            station[i].deliver(Cart.getNewCart());
+            station[i].depositGem();
+        }
+        for (Segment s : segments) {
+            pool.offer(s);
+        }
+
+        Segment first = pool.poll(0);
+        assertNotNull(first);
+        assertNull(pool.poll(1), "Station 3 is claimed through the junction or the direct track");
+
+        pool.release(first);
+        assertNotNull(pool.poll(1), "Queued again once released");
+    }
+}
@@ -0,0 +1,67 @@
+package mine;
+
+import java.util.function.Function;
+
+/**
+ * Compares strict sequential visiting of the stations with express stations
+ * that let a cart pass through when no gem is ready.
+ *
+ * Runs the mine for a while with each kind of station, with the same fixed
+ * limit on the carts in the mine, first with every face mined alike and then
+ * with one slow face, and reports for each the gems and carts carried out
+ * per second and the carts' round trip times:
+ * <pre>
+ * java -Dmine.fuzzing=false -cp "target/test-classes:target/classes" \
+ *   mine.ExpressBenchmark [seconds]
+ * </pre>
+ * Pauses are random, so compare runs of several seconds.
+ */
+public class ExpressBenchmark {
+
+    // time the slow face takes to mine a gem
+    static final long SLOW_FACE_MS = 2000;
+
+    public static void main(String[] args) throws InterruptedException {
+        long runMs = 1000L * (args.length > 0 ? Integer.parseInt(args[0]) : 10);
+        int n = Params.STATIONS;
+        MineLogger.setQuiet(true);
+        System.out.printf("%-10s %-9s %8s %8s %10s %8s %12s %12s%n",
+                "faces", "stations", "gems/s", "carts/s", "gems/cart", "passed", "p50 trip", "p99 trip");
+        for (boolean slow : new boolean[] {false, true}) {
+            for (boolean express : new boolean[] {false, true}) {
+                Station[] station = new Station[n];
+                for (int i = 0; i < n; i++) {
+                    station[i] = new Station(i, express);
+                }
+                AdmissionController admission = new AdmissionController(station, n);
+                Function<Station, Thread> miner = s -> slow && s.getId() == 1 ? slowFace(s) : new Miner(s);
+                AdmissionBenchmark.run(station, admission, runMs, miner);
+
+                long carts = admission.getDeparted();
+                long passed = 0;
+                for (Station s : station) {
+                    passed += s.getPassed();
+                }
+                System.out.printf("%-10s %-9s %8.2f %8.2f %10.2f %8d %9.0f ms %9.0f ms%n",
+                        slow ? "one slow" : "even", express ? "express" : "strict",
+                        admission.getGemsPerSecond(), admission.getCartsPerSecond(),
+                        carts == 0 ? 0.0 : (double) admission.getGems() / carts,
+                        passed, admission.getCycleMillis(0.5), admission.getCycleMillis(0.99));
+            }
+        }
+    }
+
+    // A miner taking SLOW_FACE_MS for each gem
+    static Thread slowFace(Station station) {
+        return new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(SLOW_FACE_MS);
+                    station.depositGem();
+                }
+            } catch (InterruptedException e) {
+                // stopped
+            }
+        });
+    }
+}
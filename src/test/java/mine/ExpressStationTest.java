@@ -0,0 +1,65 @@
+package mine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for stations that let carts pass through without a gem, and
+ * routing carts to gems.
+ */
+public class ExpressStationTest {
+
+    @Test
+    public void testCartPassesThroughWithoutAGem() throws InterruptedException {
+        Station express = new Station(0, true);
+        express.deliver(Cart.getNewCart());
+        assertTrue(express.canCollect(), "No need to wait for a gem");
+        Cart c = express.collect();
+        assertEquals(0, c.getGems());
+        assertEquals(1, express.getPassed());
+
+        express.depositGem();
+        assertTrue(express.hasGemReady());
+        express.deliver(c);
+        assertFalse(express.hasGemReady(), "The gem is for the cart now there");
+        assertEquals(1, express.collect().getGems(), "A ready gem is still loaded");
+        assertEquals(1, express.getPassed());
+
+        express.reset();
+        assertEquals(0, express.getPassed());
+    }
+
+    @Test
+    public void testStrictStationHoldsTheCart() throws InterruptedException {
+        Station strict = new Station(0, false);
+        strict.deliver(Cart.getNewCart());
+        assertFalse(strict.canCollect());
+        strict.depositGem();
+        assertTrue(strict.canCollect());
+        assertEquals(1, strict.collect().getGems());
+        assertEquals(0, strict.getPassed());
+    }
+
+    @Test
+    public void testGemReadyRouterPrefersAWaitingGem() throws InterruptedException {
+        Station from = new Station(0, true);
+        Station a = new Station(1, true);
+        Station b = new Station(2, true);
+        List<Destination> choices = List.of(a, b);
+        Router router = Router.gemReady();
+
+        b.depositGem();
+        for (int i = 0; i < 4; i++) {
+            assertSame(b, router.next(Cart.getNewCart(), from, choices));
+        }
+
+        // a gem with a cart already there is not ready for another
+        b.deliver(Cart.getNewCart());
+        Cart cart = Cart.getNewCart();
+        assertSame(Router.firstFree().next(cart, from, choices), router.next(cart, from, choices));
+        assertSame(a, router.next(cart, from, choices), "Only a can take a cart");
+    }
+}
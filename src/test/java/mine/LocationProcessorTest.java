@@ -0,0 +1,144 @@
+package mine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for locations as stages of a reactive pipeline.
+ */
+public class LocationProcessorTest {
+
+    // A subscriber keeping the carts sent to it, asking for them by hand
+    static class Sink implements Flow.Subscriber<Cart> {
+        final LinkedBlockingQueue<Cart> carts = new LinkedBlockingQueue<>();
+        final CompletableFuture<Throwable> failure = new CompletableFuture<>();
+        Flow.Subscription subscription;
+
+        public void onSubscribe(Flow.Subscription s) {
+            subscription = s;
+        }
+
+        public void onNext(Cart cart) {
+            carts.add(cart);
+        }
+
+        public void onError(Throwable t) {
+            failure.complete(t);
+        }
+
+        public void onComplete() {
+        }
+    }
+
+    @Test
+    public void testCartsFlowOnlyAsDemanded() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Station a = new Station(0);
+            Station b = new Station(1);
+            LocationProcessor first = new LocationProcessor(a, executor);
+            LocationProcessor second = new LocationProcessor(b, executor);
+            Sink sink = new Sink();
+            first.subscribe(second);
+            second.subscribe(sink);
+
+            Cart cart = Cart.getNewCart();
+            a.deliver(cart);
+            a.depositGem();
+            b.depositGem();
+
+            // the cart travels to b, but waits there until asked for
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!b.hasCart() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(b.hasCart(), "Sent on to b");
+            assertNull(sink.carts.poll(300, TimeUnit.MILLISECONDS), "Not asked for yet");
+
+            sink.subscription.request(1);
+            assertSame(cart, sink.carts.poll(5, TimeUnit.SECONDS));
+            assertEquals(2, cart.getGems());
+            assertEquals(1, second.getReceived());
+            assertEquals(1, second.getSent());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testOneCartOnEachTrack() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Station a = new Station(0, true);
+            Station b = new Station(1, false);
+            LocationProcessor first = new LocationProcessor(a, executor);
+            LocationProcessor second = new LocationProcessor(b, executor);
+            first.subscribe(second);
+            second.subscribe(new Sink());
+
+            // a lets carts through, b holds its cart for a gem
+            for (int i = 0; i < 3; i++) {
+                a.deliverAsync(Cart.getNewCart());
+            }
+            Thread.sleep(3 * Params.ENGINE_TIME);
+            assertTrue(b.hasCart());
+            assertEquals(1, first.getSent() - second.getReceived(), "Only one cart travelling to b");
+            assertEquals(2, first.getSent(), "The third cart waits at a");
+            assertEquals(1, a.getQueueLength());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSecondSubscriberAndBadRequestsFail() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            LocationProcessor processor = new LocationProcessor(new Station(0), executor);
+            Sink sink = new Sink();
+            processor.subscribe(sink);
+            Sink late = new Sink();
+            processor.subscribe(late);
+            assertTrue(late.failure.get(5, TimeUnit.SECONDS) instanceof IllegalStateException);
+
+            sink.subscription.request(0);
+            assertTrue(sink.failure.get(5, TimeUnit.SECONDS) instanceof IllegalArgumentException);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReactiveLineCarriesCartsOut() throws Exception {
+        Station[] station = {new Station(0), new Station(1)};
+        AdmissionController admission = new AdmissionController(station, 3);
+        Shaft shaft = new Shaft(admission);
+        for (Thread t : shaft.getThreads()) {
+            t.setDaemon(true);
+        }
+        ReactiveLine line = new ReactiveLine(shaft.getElevator(), station, 2);
+        line.start();
+        shaft.start();
+        try {
+            long deadline = System.currentTimeMillis() + 30000;
+            while (admission.getDeparted() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertTrue(admission.getDeparted() >= 2, "Carts made it round");
+            assertEquals(2 * admission.getDeparted(), admission.getGems(), "A gem from each station");
+        } finally {
+            line.stop();
+            for (Thread t : shaft.getThreads()) {
+                t.interrupt();
+            }
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package mine;
 
-import mine.fuzzing.MineProgress;
-
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 
@@ -14,17 +12,25 @@ public final class MineLogger {
     private static final DateTimeFormatter TIME_FMT =
             DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
 
+    // Quiet fuzzing prints nothing per operation, see MineFuzzTarget
+    private static volatile boolean quiet =
+            Boolean.parseBoolean(System.getProperty("mine.fuzz.quiet", "false"));
+
     // Prevent instantiation
     private MineLogger() {}
 
+    public static void setQuiet(boolean enabled) {
+        quiet = enabled;
+    }
+
     public static void log(String component, String message) {
+        if (quiet) {
+            return;
+        }
         String time = LocalTime.now().format(TIME_FMT);
         String thread = Thread.currentThread().getName();
 
         // Uniform format：[time][thread][component] message
         System.out.printf("[%s][%s][%s] %s%n", time, thread, component, message);
-
-        // log for mine progresses, for deadlock monitor.
-        MineProgress.report();
     }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package mine;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the threaded line, with a thread for each engine and miner, with
+ * the reactive line on a small pool of threads.
+ *
+ * Builds a single shaft over a long line of stations, runs it for a while in
+ * each mode, and reports for each the carts delivered to stations per
+ * second, the carts in the mine at the end, and the live and peak number of
+ * threads in the JVM:
+ * <pre>
+ * java -Dmine.fuzzing=false -cp "target/test-classes:target/classes" \
+ *   mine.ReactiveBenchmark [seconds] [stations] [threads]
+ * </pre>
+ * A cart takes far longer than a run to get round a line of a thousand
+ * stations, so throughput is counted as station visits, not departures.
+ */
+public class ReactiveBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        long runMs = 1000L * (args.length > 0 ? Integer.parseInt(args[0]) : 10);
+        int n = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        MineLogger.setQuiet(true);
+        ThreadMXBean jvm = ManagementFactory.getThreadMXBean();
+        System.out.printf("%-10s %8s %10s %8s %8s %8s%n",
+                "line", "stations", "visits/s", "carts", "threads", "peak");
+        for (boolean reactive : new boolean[] {false, true}) {
+            Station[] station = AdmissionBenchmark.stations(n);
+            AdmissionController admission = new AdmissionController(station, AdmissionController.maxInFlight(n));
+            Shaft shaft = new Shaft(admission);
+            List<Thread> running = new ArrayList<>(shaft.getThreads());
+            ReactiveLine line = null;
+            if (reactive) {
+                line = new ReactiveLine(shaft.getElevator(), station, threads);
+                line.start();
+            } else {
+                for (Station s : station) {
+                    running.add(new Miner(s));
+                }
+                running.addAll(Topology.line(List.of(shaft.getElevator()), shaft.getElevator(), station)
+                        .createEngines());
+            }
+
+            System.gc();
+            jvm.resetPeakThreadCount();
+            for (Thread t : running) {
+                t.setDaemon(true);
+                t.start();
+            }
+            Thread.sleep(runMs);
+            int live = jvm.getThreadCount();
+            int peak = jvm.getPeakThreadCount();
+
+            if (line != null) {
+                line.stop();
+            }
+            for (Thread t : running) {
+                t.interrupt();
+            }
+            for (Thread t : running) {
+                t.join(1000);
+            }
+            long visits = 0;
+            for (Station s : station) {
+                visits += s.getDeliveries();
+            }
+            System.out.printf("%-10s %8d %10.1f %8d %8d %8d%n", reactive ? "reactive" : "threaded",
+                    n, visits * 1000.0 / runMs, admission.getInFlight(), live, peak);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package mine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for mines with several elevator shafts.
+ */
+public class ShaftRouterTest {
+
+    private final List<Thread> threads = new ArrayList<>();
+
+    @AfterEach
+    public void cleanup() throws InterruptedException {
+        for (Thread t : threads) {
+            t.interrupt();
+        }
+        for (Thread t : threads) {
+            t.join(5000);
+        }
+    }
+
+    private static CompletableFuture<Void> deliver(ShaftRouter router, Cart cart) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                router.deliver(cart);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Test
+    public void testRoutesToTheLeastLoadedShaft() throws Exception {
+        Elevator a = new Elevator();
+        Elevator b = new Elevator();
+        ShaftRouter router = new ShaftRouter(List.of(a, b));
+
+        // a brings a new cart down, b comes down empty
+        a.arrive(Cart.getNewCart());
+        b.operateEmpty();
+        assertTrue(router.canDeliver());
+        router.deliver(Cart.getNewCart());
+        assertEquals(1, router.getRouted(1));
+        assertTrue(b.canDepart(), "b took the cart up");
+
+        a.collect();
+        router.deliver(Cart.getNewCart());
+        assertEquals(1, router.getRouted(0), "a is empty at the bottom");
+        assertFalse(router.canDeliver(), "Both cars are at the top");
+
+        // a cart waiting for a shaft counts toward its load
+        CompletableFuture<Void> first = deliver(router, Cart.getNewCart());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (a.getCalls(false) + b.getCalls(false) == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        CompletableFuture<Void> second = deliver(router, Cart.getNewCart());
+        while (a.getCalls(false) + b.getCalls(false) < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, a.getCalls(false));
+        assertEquals(1, b.getCalls(false));
+        assertEquals(2, router.getRouted(0));
+        assertEquals(2, router.getRouted(1));
+
+        for (Elevator e : List.of(a, b)) {
+            e.depart();
+            e.operateEmpty();
+        }
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testTwoShaftsShareTheStations() throws InterruptedException {
+        int n = 2;
+        Station[] station = new Station[n];
+        for (int i = 0; i < n; i++) {
+            station[i] = new Station(i);
+        }
+        AdmissionController admission = new AdmissionController(station, 3);
+        List<Elevator> elevators = new ArrayList<>();
+        for (int j = 0; j < 2; j++) {
+            Shaft shaft = new Shaft(admission);
+            elevators.add(shaft.getElevator());
+            threads.addAll(shaft.getThreads());
+        }
+        ShaftRouter router = new ShaftRouter(elevators);
+        for (int i = 0; i < n; i++) {
+            threads.add(new Miner(station[i]));
+        }
+        threads.add(new Engine(station[0], station[1]));
+        for (Elevator e : elevators) {
+            threads.add(new Engine(e, station[0]));
+            threads.add(new Engine(station[n - 1], router));
+        }
+        for (Thread t : threads) {
+            t.setDaemon(true);
+            t.start();
+        }
+
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (admission.getDeparted() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(admission.getDeparted() >= 3, "Carts should get round through either shaft");
+        assertEquals(n * admission.getDeparted(), admission.getGems());
+        assertTrue(router.getRouted(0) + router.getRouted(1) >= admission.getDeparted());
+    }
+}
@@ -0,0 +1,48 @@
+package mine;
+
+import java.util.function.Function;
+
+/**
+ * Compares stations with sidings of different sizes.
+ *
+ * Runs the mine for a while with each siding size, with the same fixed limit
+ * on the carts in the mine, first with every face mined alike and then with
+ * one slow face, and reports for each the gems carried out per second, the
+ * carts' round trip times, and the carts found at each station on delivery:
+ * <pre>
+ * java -Dmine.fuzzing=false -cp "target/test-classes:target/classes" \
+ *   mine.SidingBenchmark [seconds]
+ * </pre>
+ * Pauses are random, so compare runs of several seconds.
+ */
+public class SidingBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        long runMs = 1000L * (args.length > 0 ? Integer.parseInt(args[0]) : 10);
+        int n = Params.STATIONS;
+        int limit = AdmissionController.maxInFlight(n);
+        MineLogger.setQuiet(true);
+        System.out.printf("%-9s %6s %8s %12s %12s   %s%n",
+                "faces", "siding", "gems/s", "p50 trip", "p99 trip", "mean/max carts found at each station");
+        for (boolean slow : new boolean[] {false, true}) {
+            for (int siding = 0; siding <= 2; siding++) {
+                Station[] station = new Station[n];
+                for (int i = 0; i < n; i++) {
+                    station[i] = new Station(i, false, siding);
+                }
+                AdmissionController admission = new AdmissionController(station, limit);
+                Function<Station, Thread> miner = s -> slow && s.getId() == 1
+                        ? ExpressBenchmark.slowFace(s) : new Miner(s);
+                AdmissionBenchmark.run(station, admission, runMs, miner);
+
+                StringBuilder queues = new StringBuilder();
+                for (Station s : station) {
+                    queues.append(String.format(" %.2f/%d", s.getMeanQueueSeen(), s.getMaxQueueLength()));
+                }
+                System.out.printf("%-9s %6d %8.2f %9.0f ms %9.0f ms  %s%n", slow ? "one slow" : "even", siding,
+                        admission.getGemsPerSecond(), admission.getCycleMillis(0.5), admission.getCycleMillis(0.99),
+                        queues);
+            }
+        }
+    }
+}
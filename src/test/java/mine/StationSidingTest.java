@@ -0,0 +1,71 @@
+package mine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for carts waiting on a station's siding.
+ */
+public class StationSidingTest {
+
+    @Test
+    public void testCartsWaitOnTheSidingInOrder() throws InterruptedException {
+        Station station = new Station(0, false, 2);
+        Cart[] carts = {Cart.getNewCart(), Cart.getNewCart(), Cart.getNewCart()};
+        for (Cart c : carts) {
+            assertTrue(station.canDeliver());
+            station.deliver(c);
+        }
+        assertFalse(station.canDeliver(), "The siding is full");
+        assertEquals(3, station.getQueueLength());
+
+        for (Cart c : carts) {
+            assertFalse(station.canCollect(), "Each cart waits for its gem");
+            station.depositGem();
+            assertSame(c, station.collect(), "Loaded in the order delivered");
+            assertEquals(1, c.getGems());
+        }
+        assertEquals(0, station.getQueueLength());
+        assertEquals(3, station.getMaxQueueLength());
+        assertEquals(1.0, station.getMeanQueueSeen(), 1e-9, "0, 1 and 2 carts found");
+
+        station.reset();
+        assertEquals(0, station.getMaxQueueLength());
+        assertEquals(0, station.getMeanQueueSeen());
+    }
+
+    @Test
+    public void testFullStationHoldsTheEngine() throws Exception {
+        Station station = new Station(0, false, 1);
+        station.deliver(Cart.getNewCart());
+        station.deliver(Cart.getNewCart());
+
+        CompletableFuture<Void> third = CompletableFuture.runAsync(() -> {
+            try {
+                station.deliver(Cart.getNewCart());
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThrows(TimeoutException.class, () -> third.get(200, TimeUnit.MILLISECONDS));
+
+        station.depositGem();
+        station.collect();
+        third.get(5, TimeUnit.SECONDS);
+        assertEquals(2, station.getQueueLength());
+    }
+
+    @Test
+    public void testNoSidingByDefault() throws InterruptedException {
+        Station station = new Station(0);
+        assertEquals(Params.STATION_SIDING, station.getSidingCapacity());
+        station.deliver(Cart.getNewCart());
+        assertFalse(station.canDeliver());
+        assertThrows(IllegalArgumentException.class, () -> new Station(1, false, -1));
+    }
+}
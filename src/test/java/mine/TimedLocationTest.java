@@ -0,0 +1,135 @@
+package mine;
+
+import mine.fuzzing.StallDetector;
+import mine.fuzzing.ThreadToken;
+import mine.fuzzing.TokenControllerProvider;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for collecting and delivering carts with a timeout.
+ */
+public class TimedLocationTest {
+
+    @Test
+    public void testCollectGivesUpAtTheDeadline() throws InterruptedException {
+        Station station = new Station(0);
+        Cart cart = Cart.getNewCart();
+        station.deliver(cart);
+
+        long start = System.nanoTime();
+        assertNull(station.tryCollect(100, TimeUnit.MILLISECONDS), "No gem in time");
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(100), "Waited the whole timeout: " + elapsed);
+        assertTrue(elapsed < TimeUnit.SECONDS.toNanos(2), "Not much longer: " + elapsed);
+        assertNull(station.tryCollect(0, TimeUnit.MILLISECONDS));
+
+        station.depositGem();
+        assertSame(cart, station.tryCollect(0, TimeUnit.MILLISECONDS), "Ready without waiting");
+        assertEquals(1, cart.getGems());
+    }
+
+    @Test
+    public void testCollectSeesAChangeBeforeTheDeadline() throws Exception {
+        Station station = new Station(0);
+        Cart cart = Cart.getNewCart();
+        station.deliver(cart);
+
+        CompletableFuture<Cart> collected = CompletableFuture.supplyAsync(() -> {
+            try {
+                return station.tryCollect(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        station.depositGem();
+        assertSame(cart, collected.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testDeliverGivesUpWithTheCart() throws InterruptedException {
+        Station station = new Station(0);
+        assertTrue(station.tryDeliver(Cart.getNewCart(), 0, TimeUnit.MILLISECONDS));
+        assertFalse(station.tryDeliver(Cart.getNewCart(), 50, TimeUnit.MILLISECONDS), "The station is full");
+        assertEquals(1, station.getQueueLength());
+
+        Elevator elevator = new Elevator();
+        assertFalse(elevator.tryDeliver(Cart.getNewCart(), 50, TimeUnit.MILLISECONDS), "The car is at the top");
+        assertEquals(0, elevator.getCalls(false), "A cart given up on no longer calls");
+        elevator.operateEmpty();
+        assertTrue(elevator.tryDeliver(Cart.getNewCart(), 50, TimeUnit.MILLISECONDS));
+        assertNull(elevator.tryCollect(50, TimeUnit.MILLISECONDS), "The car took the cart up");
+    }
+
+    @Test
+    public void testTryingAgainReroutesAtAJunction() throws InterruptedException {
+        Station from = new Station(0);
+        Station stuck = new Station(1);
+        Station free = new Station(2);
+        stuck.deliver(Cart.getNewCart());
+
+        // a router that sends carts down each branch in turn
+        AtomicInteger picks = new AtomicInteger();
+        Junction junction = new Junction(from, List.of(stuck, free),
+                (cart, at, choices) -> choices.get(picks.getAndIncrement() % choices.size()));
+
+        Cart cart = Cart.getNewCart();
+        assertFalse(junction.tryDeliver(cart, 50, TimeUnit.MILLISECONDS), "Routed to the stuck station");
+        assertTrue(junction.tryDeliver(cart, 50, TimeUnit.MILLISECONDS), "Routed the other way");
+        free.depositGem();
+        assertSame(cart, free.collect());
+    }
+
+    @Test
+    public void testTryingAgainReroutesAtTheShafts() throws InterruptedException {
+        Elevator a = new Elevator();
+        Elevator b = new Elevator();
+        ShaftRouter router = new ShaftRouter(List.of(a, b));
+
+        Cart cart = Cart.getNewCart();
+        assertFalse(router.tryDeliver(cart, 50, TimeUnit.MILLISECONDS), "Both cars are at the top");
+        assertEquals(1, router.getRouted(0));
+        assertEquals(0, a.getCalls(false), "A cart given up on no longer calls");
+
+        b.operateEmpty();
+        assertTrue(router.tryDeliver(cart, 50, TimeUnit.MILLISECONDS));
+        assertEquals(1, router.getRouted(1), "Sent to the car that came down");
+    }
+
+    @Test
+    public void testTimedWaitIsNotReportedAsBlocked() throws InterruptedException {
+        Station station = new Station(0);
+        station.deliver(Cart.getNewCart());
+        ThreadToken token = new ThreadToken(ThreadToken.Role.ENGINE, 0);
+        Thread engine = new Thread(() -> {
+            try {
+                station.tryDeliver(Cart.getNewCart(), 10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        TokenControllerProvider.getRegistry().register(engine, token);
+        StallDetector detector = TokenControllerProvider.getStallDetector();
+        try {
+            engine.setDaemon(true);
+            engine.start();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (engine.getState() != Thread.State.TIMED_WAITING && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(Thread.State.TIMED_WAITING, engine.getState());
+            assertFalse(detector.isBlocked(token), "It gives up at the deadline");
+            assertEquals(0, detector.getBlockedCount());
+        } finally {
+            engine.interrupt();
+            TokenControllerProvider.reset();
+        }
+    }
+}
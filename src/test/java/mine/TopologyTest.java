@@ -0,0 +1,128 @@
+package mine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for layouts of track with branches and merges.
+ */
+public class TopologyTest {
+
+    private final List<Thread> threads = new ArrayList<>();
+
+    @AfterEach
+    public void cleanup() throws InterruptedException {
+        for (Thread t : threads) {
+            t.interrupt();
+        }
+        for (Thread t : threads) {
+            t.join(5000);
+        }
+    }
+
+    private static Station[] stations(int n) {
+        Station[] station = new Station[n];
+        for (int i = 0; i < n; i++) {
+            station[i] = new Station(i);
+        }
+        return station;
+    }
+
+    // elevator -> 0 -> (1 | 2) -> 3 -> elevator
+    private static Topology diamond(Elevator elevator, Station[] s) {
+        return Topology.builder()
+                .track(elevator, s[0])
+                .track(s[0], s[1]).track(s[0], s[2])
+                .track(s[1], s[3]).track(s[2], s[3])
+                .track(s[3], elevator)
+                .build();
+    }
+
+    @Test
+    public void testLineHasAnEngineForEachTrack() {
+        Elevator elevator = new Elevator();
+        Station[] s = stations(3);
+        Topology line = Topology.line(List.of(elevator), elevator, s);
+
+        assertEquals(List.of(s[0]), line.successors(elevator));
+        assertSame(elevator, line.exit(s[2]));
+        List<Engine> engines = line.createEngines();
+        assertEquals(4, engines.size(), "n + 1 engines, as Main always had");
+        assertSame(elevator, engines.get(0).getOrigin());
+        assertEquals(4, line.segments().size());
+        assertEquals(4, Topology.lineEngines(3, 1));
+
+        List<Elevator> shafts = List.of(new Elevator(), new Elevator());
+        Topology twoShafts = Topology.line(shafts, new ShaftRouter(shafts), s);
+        assertEquals(Topology.lineEngines(3, 2), twoShafts.createEngines().size());
+    }
+
+    @Test
+    public void testBranchesMeetAtAJunction() throws InterruptedException {
+        Elevator elevator = new Elevator();
+        Station[] s = stations(4);
+        Topology diamond = diamond(elevator, s);
+
+        Junction junction = assertInstanceOf(Junction.class, diamond.exit(s[0]));
+        assertEquals(List.of(s[1], s[2]), junction.getChoices());
+        assertSame(s[3], diamond.exit(s[1]));
+        assertSame(s[3], diamond.exit(s[2]), "Tracks merge at station 3");
+        assertEquals(5, diamond.createEngines().size());
+
+        // whichever branch a cart prefers, one that is taken is passed over
+        for (int i = 1; i <= 2; i++) {
+            Station busy = s[i];
+            Station free = s[3 - i];
+            busy.deliver(Cart.getNewCart());
+            assertTrue(junction.canDeliver());
+            junction.deliver(Cart.getNewCart());
+            assertTrue(free.hasCart());
+            busy.reset();
+            free.reset();
+        }
+    }
+
+    @Test
+    public void testBuildRejectsStrandedStations() {
+        Elevator elevator = new Elevator();
+        Station[] s = stations(3);
+        assertThrows(IllegalArgumentException.class,
+                () -> Topology.builder().track(elevator, s[0]).track(s[0], s[1]).build(), "Dead end");
+        assertThrows(IllegalArgumentException.class,
+                () -> Topology.builder().track(s[2], elevator).build(), "Never reached");
+        assertThrows(IllegalArgumentException.class,
+                () -> Topology.builder().track(elevator, s[0]).track(elevator, s[0]));
+        assertThrows(IllegalArgumentException.class,
+                () -> Topology.builder().track(elevator, s[0]).track(s[0], elevator).engines(s[1], 2).build());
+    }
+
+    @Test
+    public void testCartsVisitOneBranch() throws InterruptedException {
+        Elevator elevator = new Elevator();
+        Station[] s = stations(4);
+        AdmissionController admission = new AdmissionController(s, 3);
+        threads.add(new Producer(elevator, null, admission));
+        threads.add(new Consumer(elevator, null, admission));
+        threads.add(new Operator(elevator));
+        for (Station station : s) {
+            threads.add(new Miner(station));
+        }
+        threads.addAll(diamond(elevator, s).createEngines());
+        for (Thread t : threads) {
+            t.setDaemon(true);
+            t.start();
+        }
+
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (admission.getDeparted() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(admission.getDeparted() >= 3, "Carts should get round the diamond");
+        assertEquals(3 * admission.getDeparted(), admission.getGems(), "Three of the four stations per trip");
+    }
+}
@@ -0,0 +1,271 @@
+package mine.fuzzing;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Regression check of saved fuzz inputs in seconds.
+ *
+ * Jazzer's regression mode runs each input through the real target, one
+ * after another, with real threads and up to {@code MAX_RUN_MS} of watchdog
+ * per stall. Here each input is decoded into a {@link FuzzSchedule} and
+ * replayed on a {@link VirtualMine} instead, on a virtual clock: every grant
+ * advances it by the target's step timeout, the longest the target waits for
+ * one operation, and nothing sleeps.
+ * Inputs are replayed in parallel, one per core.
+ *
+ * Each input gets the verdict the target would give it:
+ * <ul>
+ *   <li>{@code PASS}: the input runs out without a global stall;</li>
+ *   <li>{@code STALL}: the target reports a logical deadlock;</li>
+ *   <li>{@code TIMEOUT}: the virtual clock passes the timeout first;</li>
+ *   <li>{@code SKIPPED}: the target ignores the input as too short.</li>
+ * </ul>
+ *
+ * <pre>
+ * java -cp "target/test-classes:target/classes" mine.fuzzing.CorpusReplay \
+ *   [-timeout 50] [-j threads] [file-or-dir ...]
+ * </pre>
+ * Defaults to {@code test-artifacts/corpus}, {@code test-artifacts/crashes}
+ * and {@code test-artifacts/timeouts}, and to Jazzer's {@code -timeout=50}
+ * from the fuzzing guide. Exits with status 1 if any input stalls or times out.
+ *
+ * Failing inputs are bucketed by the {@link StallSignature} of the stall they
+ * reach, so that each distinct stall is listed once, with its smallest input.
+ */
+public class CorpusReplay implements AutoCloseable {
+
+    static final long DEFAULT_TIMEOUT_MS = 50_000;
+
+    public enum Verdict { PASS, STALL, TIMEOUT, SKIPPED }
+
+    /**
+     * Outcome of one input.
+     */
+    public static final class Result {
+        private final String name;
+        private final int bytes;
+        private final Verdict verdict;
+        private final int operations;
+        private final long virtualMs;
+        private final MineSnapshot state;
+        private final StallSignature signature;
+
+        Result(String name, int bytes, Verdict verdict, int operations, long virtualMs, MineSnapshot state,
+                StallSignature signature) {
+            this.name = name;
+            this.bytes = bytes;
+            this.verdict = verdict;
+            this.operations = operations;
+            this.virtualMs = virtualMs;
+            this.state = state;
+            this.signature = signature;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Verdict getVerdict() {
+            return verdict;
+        }
+
+        /**
+         * @return Operations performed before the verdict
+         */
+        public int getOperations() {
+            return operations;
+        }
+
+        /**
+         * @return Virtual time at the verdict
+         */
+        public long getVirtualMs() {
+            return virtualMs;
+        }
+
+        /**
+         * @return The mine state at the verdict, or null if skipped
+         */
+        public MineSnapshot getState() {
+            return state;
+        }
+
+        /**
+         * @return The signature of the stall the input reaches, even past
+         *         the timeout, or null if it reaches none
+         */
+        public StallSignature getSignature() {
+            return signature;
+        }
+
+        public boolean failed() {
+            return verdict == Verdict.STALL || verdict == Verdict.TIMEOUT;
+        }
+
+        @Override
+        public String toString() {
+            if (verdict == Verdict.SKIPPED) {
+                return String.format("%-8s %s (%d bytes)", verdict, name, bytes);
+            }
+            return String.format("%-8s %s (%d bytes): %d ops, %.1f s, %s%s",
+                    verdict, name, bytes, operations, virtualMs / 1000.0, state,
+                    signature != null ? ", stall " + signature.getId() : "");
+        }
+    }
+
+    private final ExecutorService pool;
+    private final long timeoutMs;
+
+    public CorpusReplay(int threads, long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "corpus-replay");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Replay one raw input on the virtual clock.
+     *
+     * @param name Name to report the input under
+     * @param input The raw input
+     * @param timeoutMs Virtual time after which the run counts as timed out
+     */
+    public static Result replay(String name, byte[] input, long timeoutMs) {
+        FuzzSchedule schedule = FuzzSchedule.decode(input);
+        if (schedule == null) {
+            return new Result(name, input.length, Verdict.SKIPPED, 0, 0, null, null);
+        }
+        int[] steps = schedule.getSteps();
+        StallSignature signature = null;
+        if (schedule.stalls()) {
+            VirtualMine stalled = FuzzSchedule.replay(steps);
+            signature = StallSignature.of(stalled.stallReport(), stalled.snapshot());
+        }
+
+        // Operations the target grants before the timeout fires
+        long budget = timeoutMs / MineFuzzTarget.STEP_TIMEOUT_MS;
+        if (steps.length > budget) {
+            int[] prefix = Arrays.copyOf(steps, (int) budget);
+            return new Result(name, input.length, Verdict.TIMEOUT, prefix.length,
+                    timeoutMs, FuzzSchedule.replay(prefix).snapshot(), signature);
+        }
+        Verdict verdict = schedule.stalls() ? Verdict.STALL : Verdict.PASS;
+        return new Result(name, input.length, verdict, steps.length,
+                steps.length * MineFuzzTarget.STEP_TIMEOUT_MS, FuzzSchedule.replay(steps).snapshot(), signature);
+    }
+
+    /**
+     * Bucket results by the stall they reach.
+     *
+     * @return Per signature, its results, smallest input first; in order of each
+     *         signature's first result
+     */
+    public static Map<StallSignature, List<Result>> buckets(List<Result> results) {
+        Map<StallSignature, List<Result>> buckets = new LinkedHashMap<>();
+        for (Result r : results) {
+            if (r.getSignature() != null) {
+                buckets.computeIfAbsent(r.getSignature(), s -> new ArrayList<>()).add(r);
+            }
+        }
+        for (List<Result> bucket : buckets.values()) {
+            bucket.sort(Comparator.comparingInt(r -> r.bytes));
+        }
+        return buckets;
+    }
+
+    /**
+     * Replay the files in parallel.
+     *
+     * @return One result per file, in the given order
+     */
+    public List<Result> replayAll(List<File> files) throws InterruptedException {
+        List<Callable<Result>> tasks = new ArrayList<>(files.size());
+        for (File f : files) {
+            tasks.add(() -> replay(f.getPath(), read(f), timeoutMs));
+        }
+        List<Result> results = new ArrayList<>(files.size());
+        for (Future<Result> r : pool.invokeAll(tasks)) {
+            try {
+                results.add(r.get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Replay failed", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    private static byte[] read(File f) {
+        try {
+            return Files.readAllBytes(f.toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long timeoutMs = DEFAULT_TIMEOUT_MS;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<File> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-timeout".equals(args[i]) && i + 1 < args.length) {
+                timeoutMs = Long.parseLong(args[++i]) * 1000;
+            } else if ("-j".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                ScheduleMinimizer.collect(new File(args[i]), inputs);
+            }
+        }
+        if (inputs.isEmpty()) {
+            ScheduleMinimizer.collect(new File("test-artifacts/corpus"), inputs);
+            ScheduleMinimizer.collect(new File("test-artifacts/crashes"), inputs);
+            ScheduleMinimizer.collect(new File("test-artifacts/timeouts"), inputs);
+        }
+
+        long start = System.nanoTime();
+        List<Result> results;
+        try (CorpusReplay replay = new CorpusReplay(threads, timeoutMs)) {
+            results = replay.replayAll(inputs);
+        }
+        long ms = (System.nanoTime() - start) / 1_000_000;
+
+        int[] counts = new int[Verdict.values().length];
+        for (Result r : results) {
+            System.out.println(r);
+            counts[r.getVerdict().ordinal()]++;
+        }
+        System.out.printf("%d inputs: %d pass, %d stall, %d timeout, %d skipped in %d ms on %d threads%n",
+                results.size(), counts[Verdict.PASS.ordinal()], counts[Verdict.STALL.ordinal()],
+                counts[Verdict.TIMEOUT.ordinal()], counts[Verdict.SKIPPED.ordinal()], ms, threads);
+
+        Map<StallSignature, List<Result>> buckets = buckets(results);
+        System.out.println("Stalls reached, by signature (" + buckets.size() + "):");
+        for (Map.Entry<StallSignature, List<Result>> b : buckets.entrySet()) {
+            System.out.println("  " + b.getKey() + ": " + b.getValue().size() + " inputs, smallest "
+                    + b.getValue().get(0).getName());
+        }
+        if (results.stream().anyMatch(Result::failed)) {
+            System.exit(1);
+        }
+    }
+}
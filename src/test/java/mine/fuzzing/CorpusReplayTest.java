@@ -0,0 +1,112 @@
+package mine.fuzzing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the virtual-clock regression replay of fuzz inputs.
+ */
+public class CorpusReplayTest {
+
+    // Random operations up to the first global stall
+    private static int[] stallingSchedule(long seed) {
+        Random random = new Random(seed);
+        VirtualMine mine = new VirtualMine();
+        List<Integer> steps = new ArrayList<>();
+        while (!mine.isStalled()) {
+            int role = random.nextInt(mine.roleCount());
+            if (mine.step(role)) {
+                steps.add(role);
+            }
+        }
+        return steps.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static byte[] stallingInput(long seed) throws InterruptedException {
+        int[] minimal;
+        try (ScheduleMinimizer minimizer = new ScheduleMinimizer(1)) {
+            minimal = minimizer.minimize(stallingSchedule(seed));
+        }
+        return new FuzzSchedule(new long[4][1], 0, new long[6][10], minimal).encode();
+    }
+
+    // A random input that runs out before reaching a stall
+    private static byte[] passingInput() {
+        Random random = new Random(0);
+        for (int i = 0; ; i++) {
+            byte[] input = new byte[FuzzSchedule.MIN_INPUT + 40];
+            random.nextBytes(input);
+            FuzzSchedule schedule = FuzzSchedule.decode(input);
+            if (!schedule.stalls()) {
+                return input;
+            }
+        }
+    }
+
+    @Test
+    public void testVerdicts() throws InterruptedException {
+        byte[] stall = stallingInput(7);
+        int ops = FuzzSchedule.decode(stall).getSteps().length;
+        long needed = ops * MineFuzzTarget.STEP_TIMEOUT_MS;
+
+        CorpusReplay.Result stalled = CorpusReplay.replay("stall", stall, needed);
+        assertEquals(CorpusReplay.Verdict.STALL, stalled.getVerdict());
+        assertEquals(ops, stalled.getOperations());
+        assertEquals(needed, stalled.getVirtualMs());
+        assertEquals(FuzzSchedule.replay(FuzzSchedule.decode(stall).getSteps()).snapshot(), stalled.getState());
+
+        CorpusReplay.Result late = CorpusReplay.replay("stall", stall, needed - 1);
+        assertEquals(CorpusReplay.Verdict.TIMEOUT, late.getVerdict(), "The timeout fires before the stall");
+        assertEquals(ops - 1, late.getOperations());
+
+        assertEquals(CorpusReplay.Verdict.PASS,
+                CorpusReplay.replay("pass", passingInput(), CorpusReplay.DEFAULT_TIMEOUT_MS).getVerdict());
+        assertEquals(CorpusReplay.Verdict.SKIPPED,
+                CorpusReplay.replay("short", new byte[FuzzSchedule.MIN_INPUT - 1], CorpusReplay.DEFAULT_TIMEOUT_MS).getVerdict());
+    }
+
+    @Test
+    public void testParallelReplayKeepsInputOrder() throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("corpus");
+        try {
+            Random random = new Random(42);
+            List<File> files = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                byte[] input = new byte[random.nextInt(2 * FuzzSchedule.MIN_INPUT)];
+                random.nextBytes(input);
+                files.add(Files.write(dir.resolve(String.format("input-%02d", i)), input).toFile());
+            }
+            files.add(Files.write(dir.resolve("stall"), stallingInput(11)).toFile());
+
+            // Long enough for the stall: filling the mine takes over 50 grants
+            long timeoutMs = 600_000;
+            List<CorpusReplay.Result> parallel;
+            try (CorpusReplay replay = new CorpusReplay(4, timeoutMs)) {
+                parallel = replay.replayAll(files);
+            }
+
+            assertEquals(files.size(), parallel.size());
+            for (int i = 0; i < files.size(); i++) {
+                File f = files.get(i);
+                CorpusReplay.Result sequential = CorpusReplay.replay(f.getPath(),
+                        Files.readAllBytes(f.toPath()), timeoutMs);
+                assertEquals(sequential.toString(), parallel.get(i).toString());
+            }
+            assertEquals(CorpusReplay.Verdict.STALL, parallel.get(files.size() - 1).getVerdict());
+        } finally {
+            for (File f : dir.toFile().listFiles()) {
+                f.delete();
+            }
+            Files.delete(dir);
+        }
+    }
+}
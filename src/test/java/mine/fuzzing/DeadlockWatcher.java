@@ -2,20 +2,48 @@ package mine.fuzzing;
 
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
+/**
+ * Liveness watchdog for a running simulation.
+ *
+ * Logical deadlocks are reported by the {@link StallDetector} the moment the
+ * last role enters a wait, so the watcher blocks on it between checks instead
+ * of sleeping. Monitor deadlocks are still found through ThreadMXBean. The
+ * per-role {@link Heartbeats} remain as a fallback for stalls the detector
+ * cannot see (e.g. a role that died), and, if the {@link HeartbeatWatchdog}
+ * has starvation limits, report roles starved while the rest progress.
+ *
+ * Liveness failures are thrown as {@link StallFinding}s, fingerprinted by the
+ * roles blocked at the time and the mine's occupancy, so that Jazzer reports
+ * each distinct stall once.
+ */
 public class DeadlockWatcher {
 
-    private final long maxRunMs;
+    private final HeartbeatWatchdog watchdog;
 
+    /**
+     * Watch for global stalls only; no role is reported as starved.
+     */
     public DeadlockWatcher(long maxRunMs) {
-        this.maxRunMs = maxRunMs;
+        this(new HeartbeatWatchdog(Math.max(maxRunMs / 2, 5000)));
+    }
+
+    /**
+     * @param watchdog Global and per-role limits on silent roles
+     */
+    public DeadlockWatcher(HeartbeatWatchdog watchdog) {
+        this.watchdog = watchdog;
     }
 
     public void watch() {
         ThreadMXBean bean = ManagementFactory.getThreadMXBean();
-        long start = System.currentTimeMillis();
-        long lastProgress = MineProgress.snapshot();
-        long lastProgressTime = start;
+        StallDetector detector = TokenControllerProvider.getStallDetector();
+        Heartbeats heartbeats = TokenControllerProvider.getHeartbeats();
+        watchdog.check(heartbeats, System.currentTimeMillis());
 
         while (true) {
             long[] deadlocked = bean.findDeadlockedThreads();
@@ -23,23 +51,37 @@ public class DeadlockWatcher {
                 throw new AssertionError("Monitor deadlock detected");
             }
 
-            long now = System.currentTimeMillis();
-            long curProgress = MineProgress.snapshot();
-            if (curProgress != lastProgress) {
-                lastProgress = curProgress;
-                lastProgressTime = now;
-            }
-
-            // If no progress for a long time, treat as liveness failure
-            long noProgressLimit = Math.max(maxRunMs / 2, 5000);
-            if (now - lastProgressTime > noProgressLimit) {
-                throw new AssertionError("No progress for too long (possible logical deadlock)");
+            // If a role, or every role, made no progress for a long time,
+            // treat as liveness failure
+            HeartbeatWatchdog.Starvation starvation = watchdog.check(heartbeats, System.currentTimeMillis());
+            if (starvation != null) {
+                String message = starvation.isGlobal()
+                        ? "No progress for too long (possible logical deadlock)"
+                        : starvation.toString();
+                throw StallFinding.of(message, blockedAmong(detector, starvation.getStarved()),
+                        TokenControllerProvider.getStateBoard());
             }
 
             try {
-                Thread.sleep(10);
+                StallReport report = detector.awaitStall(10);
+                if (report != null) {
+                    throw StallFinding.of("Logical deadlock detected", report,
+                            TokenControllerProvider.getStateBoard());
+                }
             } catch (InterruptedException ignored) {
             }
         }
     }
+
+    // The given roles that wait inside a Location right now
+    private static StallReport blockedAmong(StallDetector detector, List<ThreadToken> roles) {
+        Set<ThreadToken> wanted = new HashSet<>(roles);
+        List<StallReport.Entry> entries = new ArrayList<>();
+        for (StallReport.Entry e : detector.blockedRoles().getEntries()) {
+            if (wanted.contains(e.getToken())) {
+                entries.add(e);
+            }
+        }
+        return new StallReport(entries);
+    }
 }
@@ -0,0 +1,95 @@
+package mine.fuzzing;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Reads and writes raw fuzz inputs the way Jazzer's FuzzedDataProvider
+ * consumes them, so saved artifacts can be decoded and re-encoded offline.
+ *
+ * Integral values are taken from the end of the input, most significant byte
+ * first, using only as many bytes as the requested range needs, and reduced
+ * modulo the range (libFuzzer's ConsumeIntegralInRange).
+ */
+public final class FuzzBytes {
+
+    private final byte[] data;
+    private int remaining;
+
+    public FuzzBytes(byte[] data) {
+        this.data = data;
+        this.remaining = data.length;
+    }
+
+    public int remainingBytes() {
+        return remaining;
+    }
+
+    public int consumeInt(int min, int max) {
+        return (int) consumeLong(min, max);
+    }
+
+    public long consumeLong(long min, long max) {
+        if (min > max) {
+            throw new IllegalArgumentException("min > max: " + min + " > " + max);
+        }
+        long range = max - min;
+        long result = 0;
+        int offset = 0;
+        while (offset < 64 && (range >>> offset) > 0 && remaining != 0) {
+            --remaining;
+            result = (result << 8) | (data[remaining] & 0xff);
+            offset += 8;
+        }
+        if (range != -1L) {
+            result = Long.remainderUnsigned(result, range + 1);
+        }
+        return min + result;
+    }
+
+    /**
+     * Builds an input that a {@link FuzzBytes} reader (or Jazzer) decodes to
+     * the values put into it, in the same order.
+     */
+    public static final class Builder {
+
+        // Bytes in consumption order; reversed when built
+        private final ByteArrayOutputStream consumed = new ByteArrayOutputStream();
+
+        public Builder putInt(int min, int max, int value) {
+            return putLong(min, max, value);
+        }
+
+        public Builder putLong(long min, long max, long value) {
+            if (value < min || value > max) {
+                throw new IllegalArgumentException(value + " not in [" + min + ", " + max + "]");
+            }
+            long range = max - min;
+            int bytes = 0;
+            while (bytes < 8 && (range >>> (8 * bytes)) > 0) {
+                bytes++;
+            }
+            long v = value - min;
+            for (int i = bytes - 1; i >= 0; i--) {
+                consumed.write((int) (v >>> (8 * i)) & 0xff);
+            }
+            return this;
+        }
+
+        /**
+         * @param padding Unread bytes to place in front of the encoded values
+         * @return The input, with the first value put at its very end
+         */
+        public byte[] build(int padding) {
+            byte[] order = consumed.toByteArray();
+            byte[] out = new byte[padding + order.length];
+            for (int i = 0; i < order.length; i++) {
+                out[out.length - 1 - i] = order[i];
+            }
+            return out;
+        }
+
+        public int size() {
+            return consumed.size();
+        }
+    }
+}
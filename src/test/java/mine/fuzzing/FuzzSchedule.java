@@ -0,0 +1,237 @@
+package mine.fuzzing;
+
+import mine.Params;
+
+import java.util.Arrays;
+
+/**
+ * A fuzz input decoded the way {@link MineFuzzTarget} consumes it: the
+ * {@link SequencePauseProvider} sequences, the {@link FuzzingTokenController}
+ * delays, and the order in which the gated driver let roles perform their
+ * Location operations.
+ *
+ * The driver part is decoded against a {@link VirtualMine}, because each
+ * byte indexes into the roles that can proceed at that point. Keep
+ * {@link #decode} in step with the target when either changes.
+ */
+public final class FuzzSchedule {
+
+    // Inputs shorter than this are skipped by the target
+    static final int MIN_INPUT = 200;
+
+    private final long[][] pauses;
+    private final long defaultDelay;
+    private final long[][] roleDelays;
+    private final int[] steps;
+
+    // The driver stopped at a global stall, rather than out of input
+    private final boolean stalls;
+
+    public FuzzSchedule(long[][] pauses, long defaultDelay, long[][] roleDelays, int[] steps) {
+        this(pauses, defaultDelay, roleDelays, steps, replay(steps).isStalled());
+    }
+
+    private FuzzSchedule(long[][] pauses, long defaultDelay, long[][] roleDelays, int[] steps, boolean stalls) {
+        this.pauses = pauses;
+        this.defaultDelay = defaultDelay;
+        this.roleDelays = roleDelays;
+        this.steps = steps;
+        this.stalls = stalls;
+    }
+
+    /**
+     * Decode a raw input.
+     *
+     * @return The schedule, or null if the target would skip the input
+     */
+    public static FuzzSchedule decode(byte[] input) {
+        if (input.length < MIN_INPUT) {
+            return null;
+        }
+        FuzzBytes data = new FuzzBytes(input);
+
+        // SequencePauseProvider(data)
+        int len = data.consumeInt(1, 64);
+        long[][] pauses = {
+            consumeArray(data, len, Params.MAX_ARRIVAL_PAUSE),
+            consumeArray(data, len, Params.MAX_DEPARTURE_PAUSE),
+            consumeArray(data, len, Params.MAX_ELEVATOR_PAUSE),
+            consumeArray(data, len, Params.MAX_MINER_PAUSE),
+        };
+
+        // FuzzingTokenController(data, registry, true)
+        long defaultDelay = data.remainingBytes() > 4 ? data.consumeLong(0, 50) : 0;
+        int sequenceLength = data.remainingBytes() > 8 ? data.consumeInt(10, 50) : 10;
+        long[][] roleDelays = new long[ThreadToken.Role.values().length][sequenceLength];
+        for (long[] delays : roleDelays) {
+            for (int i = 0; i < sequenceLength && data.remainingBytes() > 4; i++) {
+                delays[i] = data.consumeLong(0, 100);
+            }
+        }
+
+        // The gated driver loop
+        VirtualMine mine = new VirtualMine();
+        IntList performed = new IntList();
+        mine.onStep(performed::add);
+
+        boolean stalls = false;
+        while (data.remainingBytes() > 1) {
+            long ready = mine.readyBits();
+            if (ready == 0) {
+                // The target reports the stall and stops here
+                stalls = true;
+                break;
+            }
+            int n = data.consumeInt(0, Long.bitCount(ready) - 1);
+            mine.step(ReadySet.nthSetBit(ready, n));
+        }
+        return new FuzzSchedule(pauses, defaultDelay, roleDelays, performed.toArray(), stalls);
+    }
+
+    private static long[] consumeArray(FuzzBytes data, int len, int max) {
+        long[] res = new long[len];
+        for (int i = 0; i < len; i++) {
+            res[i] = data.consumeLong(0, max);
+        }
+        return res;
+    }
+
+    /**
+     * Encode a schedule that stalls into an input the target replays to the
+     * same stall, where it stops and reports it.
+     *
+     * @throws IllegalStateException if the schedule does not stall
+     */
+    public byte[] encode() {
+        VirtualMine mine = replay(steps);
+        if (!mine.isStalled()) {
+            throw new IllegalStateException("Only stalling schedules can be encoded");
+        }
+        FuzzBytes.Builder out = new FuzzBytes.Builder();
+
+        int len = pauses[0].length;
+        out.putInt(1, 64, len);
+        putArray(out, pauses[0], Params.MAX_ARRIVAL_PAUSE);
+        putArray(out, pauses[1], Params.MAX_DEPARTURE_PAUSE);
+        putArray(out, pauses[2], Params.MAX_ELEVATOR_PAUSE);
+        putArray(out, pauses[3], Params.MAX_MINER_PAUSE);
+
+        out.putLong(0, 50, defaultDelay);
+        int sequenceLength = roleDelays[0].length;
+        out.putInt(10, 50, sequenceLength);
+        for (long[] delays : roleDelays) {
+            for (long d : delays) {
+                out.putLong(0, 100, d);
+            }
+        }
+
+        VirtualMine driver = new VirtualMine();
+        for (int role : steps) {
+            long ready = driver.readyBits();
+            if ((ready & (1L << role)) == 0) {
+                // Skipped by replay(), so nothing for the driver to pick
+                continue;
+            }
+            out.putInt(0, Long.bitCount(ready) - 1, Long.bitCount(ready & ((1L << role) - 1)));
+            driver.step(role);
+        }
+
+        // One unread byte keeps the driver loop running through the last pick
+        return out.build(Math.max(1, MIN_INPUT - out.size()));
+    }
+
+    private static void putArray(FuzzBytes.Builder out, long[] values, int max) {
+        for (long v : values) {
+            out.putLong(0, max, v);
+        }
+    }
+
+    /**
+     * Replay operations in order on a fresh VirtualMine. Operations that
+     * would block are skipped.
+     */
+    public static VirtualMine replay(int[] steps) {
+        VirtualMine mine = new VirtualMine();
+        for (int role : steps) {
+            mine.step(role);
+        }
+        return mine;
+    }
+
+    /**
+     * @return The same schedule with other operations
+     */
+    public FuzzSchedule withSteps(int[] newSteps) {
+        return new FuzzSchedule(pauses, defaultDelay, roleDelays, newSteps);
+    }
+
+    /**
+     * @param newPauses Arrival, departure, operator and miner pauses, all
+     *        of the same length
+     * @return The same schedule with other pauses
+     */
+    public FuzzSchedule withPauses(long[][] newPauses) {
+        return new FuzzSchedule(newPauses, defaultDelay, roleDelays, steps, stalls);
+    }
+
+    /**
+     * Controller delays only stretch wall-clock time under gating, where each
+     * operation completes before the next grant: drop them. Pauses are kept;
+     * they run inside the roles' operations.
+     */
+    public FuzzSchedule withoutDelays() {
+        long[][] zeroDelays = new long[roleDelays.length][10];
+        return new FuzzSchedule(pauses, 0, zeroDelays, steps, stalls);
+    }
+
+    /**
+     * @return True if the target stops this run at a global stall and
+     *         reports it; false if the input runs out first
+     */
+    public boolean stalls() {
+        return stalls;
+    }
+
+    /**
+     * @return Role indices (see {@link VirtualMine}) in the order they operated
+     */
+    public int[] getSteps() {
+        return steps.clone();
+    }
+
+    public long[][] getPauses() {
+        return pauses;
+    }
+
+    @Override
+    public String toString() {
+        VirtualMine mine = new VirtualMine();
+        StringBuilder sb = new StringBuilder("FuzzSchedule{\n  pauses=");
+        for (long[] p : pauses) {
+            sb.append(Arrays.toString(p));
+        }
+        sb.append("\n  defaultDelay=").append(defaultDelay);
+        sb.append("\n  steps(").append(steps.length).append(")=");
+        for (int i = 0; i < steps.length; i++) {
+            sb.append(i == 0 ? "" : " ").append(mine.token(steps[i]));
+        }
+        return sb.append("\n}").toString();
+    }
+
+    // Growable int array, to record operations without boxing
+    private static final class IntList {
+        private int[] values = new int[64];
+        private int size = 0;
+
+        void add(int v) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = v;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package mine.fuzzing;
+
+/**
+ * Test version of the fuzzing switch: hooks are ON by default.
+ *
+ * Overrides src/main/java/mine/fuzzing/FuzzingMode.java on the test classpath,
+ * exactly like the test MineLogger. Pass {@code -Dmine.fuzzing=false} to
+ * measure the production path (see {@link HookOverheadBenchmark}).
+ */
+public final class FuzzingMode {
+
+    public static final boolean ENABLED =
+            Boolean.parseBoolean(System.getProperty("mine.fuzzing", "true"));
+
+    // Prevent instantiation
+    private FuzzingMode() {}
+}
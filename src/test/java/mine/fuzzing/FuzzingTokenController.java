@@ -2,99 +2,107 @@ package mine.fuzzing;
 
 import com.code_intelligence.jazzer.api.FuzzedDataProvider;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * Fuzzing-driven implementation of TokenController that enables fine-grained
- * control of thread loop iterations. Each thread can be gated at the start of
- * its loop iteration, allowing reproducible exploration of thread interleavings
- * and deadlock scenarios.
+ * control of thread scheduling. Each thread can be gated before every Location
+ * operation it performs (so an Engine's collect and deliver are separate
+ * steps), allowing reproducible exploration of thread interleavings and
+ * deadlock scenarios. Loop iterations are counted and delayed, not gated.
  */
 public class FuzzingTokenController implements TokenController {
 
-    private static final int MAX_INSTANCE_ID = 20;
-    
-    private final Map<String, long[]> delaySequences = new ConcurrentHashMap<>();
-    private final Map<String, AtomicInteger> iterationCounters = new ConcurrentHashMap<>();
-    private final Map<String, Semaphore> iterationGates = new ConcurrentHashMap<>();
-    private final Map<ThreadToken.Role, java.util.List<String>> roleToKeys = new ConcurrentHashMap<>();
+    // Per role instance, indexed by the registry's dense token index as of
+    // construction; roles registered later are not controlled
+    private final ThreadTokenRegistry registry;
+    private final ThreadToken[] tokens;
+    private final long[][] delaySequences;
+    private final AtomicIntegerArray iterationCounters;
+    // Gates every operation when gating, otherwise null
+    private final StepSequencer sequencer;
     private final long defaultDelay;
     private final int maxIterationsPerThread;
     private final boolean useGating;
+    private final boolean verbose;
+    private volatile InterleavingCoverage coverage = null;
 
     /**
      * Create a fuzzing controller with fine-grained loop control.
      *
      * @param data Fuzz input provider
      * @param tokenRegistry Registry to know which tokens exist
-     * @param useGating If true, threads wait for explicit permission to proceed each iteration
+     * @param useGating If true, threads wait for explicit permission before each Location operation
      */
     public FuzzingTokenController(FuzzedDataProvider data, ThreadTokenRegistry tokenRegistry, boolean useGating) {
+        this(data, tokenRegistry, useGating, true);
+    }
+
+    /**
+     * Create a fuzzing controller with fine-grained loop control.
+     *
+     * @param data Fuzz input provider
+     * @param tokenRegistry Registry to know which tokens exist
+     * @param useGating If true, threads wait for explicit permission before each Location operation
+     * @param verbose If false, nothing is printed: not the input, nor any grant
+     */
+    public FuzzingTokenController(FuzzedDataProvider data, ThreadTokenRegistry tokenRegistry, boolean useGating,
+            boolean verbose) {
         this.useGating = useGating;
+        this.verbose = verbose;
         this.defaultDelay = data.remainingBytes() > 4 ? data.consumeLong(0, 50) : 0;
         // Set to Integer.MAX_VALUE to allow continuous operation without iteration limit
         // Previously limited to 5-20 iterations, causing threads to exit prematurely
         this.maxIterationsPerThread = Integer.MAX_VALUE;
-        System.out.println("fuzz data: " + data);
-        System.out.println("size: " + data.remainingBytes());
+        if (verbose) {
+            System.out.println("fuzz data: " + data);
+            System.out.println("size: " + data.remainingBytes());
+        }
         // Generate delay sequences for each registered thread instance
         int sequenceLength = data.remainingBytes() > 8 ? data.consumeInt(10, 50) : 10;
         
-        // Initialize for each role type to maintain some backwards compatibility
-        // but we'll use uniqueId as the actual key for instance-specific control
+        // One delay sequence per role type, consumed whether or not the role
+        // has instances, so the input layout does not depend on the mine
+        long[][] roleDelays = new long[ThreadToken.Role.values().length][];
         for (ThreadToken.Role role : ThreadToken.Role.values()) {
-            // Generate delays for this role type - will be used as template for instances
             long[] delays = new long[sequenceLength];
             for (int i = 0; i < sequenceLength && data.remainingBytes() > 4; i++) {
                 delays[i] = data.consumeLong(0, 100);
             }
-            
-            // Track keys for this role for efficient role-based operations
-            java.util.List<String> keysForRole = new java.util.ArrayList<>();
-            
-            // For each role, we need to find all registered instances and initialize them
-            // We'll iterate through all possible instance IDs (a reasonable upper bound)
-            for (int instanceId = 0; instanceId < MAX_INSTANCE_ID; instanceId++) {
-                ThreadToken token = new ThreadToken(role, instanceId);
-                Thread thread = tokenRegistry.getThread(token);
-                
-                // Only initialize if this instance actually exists in the registry
-                if (thread != null) {
-                    String uniqueKey = token.getUniqueId();
-                    delaySequences.put(uniqueKey, delays.clone());
-                    iterationCounters.put(uniqueKey, new AtomicInteger(0));
-                    keysForRole.add(uniqueKey);
-                    
-                    // Initialize gating semaphores (start with 0 permits - threads must wait)
-                    if (useGating) {
-                        iterationGates.put(uniqueKey, new Semaphore(0));
-                    }
-                }
-            }
-            
-            // Store the mapping for efficient role-based operations
-            if (!keysForRole.isEmpty()) {
-                roleToKeys.put(role, keysForRole);
-            }
+            roleDelays[role.ordinal()] = delays;
         }
+
+        // Every registered instance shares its role's sequence and gets its
+        // own counter and gate (starting with no grants - threads must wait)
+        this.registry = tokenRegistry;
+        int n = tokenRegistry.getTokenCount();
+        this.tokens = new ThreadToken[n];
+        this.delaySequences = new long[n][];
+        this.iterationCounters = new AtomicIntegerArray(n);
+        this.sequencer = useGating ? new StepSequencer(n) : null;
+        for (int i = 0; i < n; i++) {
+            tokens[i] = tokenRegistry.getTokenAt(i);
+            delaySequences[i] = roleDelays[tokens[i].getRole().ordinal()];
+        }
+    }
+
+    // Index of a controlled role instance, or -1
+    private int indexOf(ThreadToken token) {
+        int i = registry.indexOf(token);
+        return i < tokens.length ? i : -1;
     }
 
     @Override
     public void onLoopIteration(ThreadToken token) {
         if (token == null) return;
 
-        // Use uniqueId to ensure each instance has its own gate/counter/delays
-        String uniqueKey = token.getUniqueId();
+        // Each instance has its own gate/counter/delays, at its token's index
+        int index = indexOf(token);
 
         // Track iteration count and get current iteration number atomically
-        AtomicInteger counter = iterationCounters.get(uniqueKey);
         int currentIteration = -1;
-        if (counter != null) {
-            currentIteration = counter.getAndIncrement();
+        if (index >= 0) {
+            currentIteration = iterationCounters.getAndIncrement(index);
 
             // Check against max iterations (set to Integer.MAX_VALUE for continuous operation)
             // Note: With Integer.MAX_VALUE, this check will effectively never trigger, allowing
@@ -105,23 +113,8 @@ public class FuzzingTokenController implements TokenController {
             }
         }
 
-        // If gating is enabled, wait for permission to proceed
-        if (useGating) {
-            Semaphore gate = iterationGates.get(uniqueKey);
-            if (gate != null) {
-                try {
-                    // Block indefinitely waiting for permission - TRUE serialization
-                    // Each thread MUST wait for its token before proceeding
-                    gate.acquire();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    return;
-                }
-            }
-        }
-
         // Apply fuzz-driven delay using the captured iteration number
-        long delay = getDelayForIteration(uniqueKey, currentIteration);
+        long delay = getDelayForIteration(index, currentIteration);
         if (delay > 0) {
             try {
                 Thread.sleep(delay);
@@ -133,20 +126,42 @@ public class FuzzingTokenController implements TokenController {
     }
 
     /**
-     * Release a specific thread instance for one more loop iteration (when gating is enabled).
+     * Release a specific thread instance for one more gated operation (when gating is enabled).
      *
      * @param token The token identifying the thread instance to release
      */
     public void releaseIteration(ThreadToken token) {
         if (useGating) {
-            Semaphore gate = iterationGates.get(token.getUniqueId());
-            if (gate != null) {
-                System.out.println("Granting token to: " + token.getUniqueId());
-                gate.release();
+            int index = indexOf(token);
+            if (index >= 0) {
+                if (verbose) {
+                    System.out.println("Granting token to: " + token.getUniqueId());
+                }
+                sequencer.grant(index, 1);
             }
         }
     }
 
+    /**
+     * Grant a thread instance one gated operation and wait until it has
+     * performed it (when gating is enabled). The instance hands control back
+     * as soon as the operation completes; no fixed interval is slept.
+     *
+     * @param token The token identifying the thread instance to release
+     * @param timeoutMs Longest to wait for the operation
+     * @return true if the operation completed; false if the instance is not
+     *         controlled, blocked inside a Location, or the timeout passed
+     * @throws InterruptedException if the calling thread was interrupted
+     */
+    public boolean step(ThreadToken token, long timeoutMs) throws InterruptedException {
+        int index = indexOf(token);
+        if (!useGating || index < 0) {
+            return false;
+        }
+        StallDetector detector = TokenControllerProvider.getStallDetector();
+        return sequencer.step(index, timeoutMs, () -> detector.isBlocked(token));
+    }
+
     /**
      * Release multiple iterations for a specific thread instance.
      *
@@ -155,9 +170,9 @@ public class FuzzingTokenController implements TokenController {
      */
     public void releaseIterations(ThreadToken token, int count) {
         if (useGating) {
-            Semaphore gate = iterationGates.get(token.getUniqueId());
-            if (gate != null) {
-                gate.release(count);
+            int index = indexOf(token);
+            if (index >= 0) {
+                sequencer.grant(index, count);
             }
         }
     }
@@ -169,17 +184,7 @@ public class FuzzingTokenController implements TokenController {
      * @param role The role to release
      */
     public void releaseIteration(ThreadToken.Role role) {
-        if (useGating) {
-            java.util.List<String> keys = roleToKeys.get(role);
-            if (keys != null) {
-                for (String key : keys) {
-                    Semaphore gate = iterationGates.get(key);
-                    if (gate != null) {
-                        gate.release();
-                    }
-                }
-            }
-        }
+        releaseIterations(role, 1);
     }
 
     /**
@@ -191,13 +196,9 @@ public class FuzzingTokenController implements TokenController {
      */
     public void releaseIterations(ThreadToken.Role role, int count) {
         if (useGating) {
-            java.util.List<String> keys = roleToKeys.get(role);
-            if (keys != null) {
-                for (String key : keys) {
-                    Semaphore gate = iterationGates.get(key);
-                    if (gate != null) {
-                        gate.release(count);
-                    }
+            for (int i = 0; i < tokens.length; i++) {
+                if (tokens[i].getRole() == role) {
+                    sequencer.grant(i, count);
                 }
             }
         }
@@ -210,27 +211,65 @@ public class FuzzingTokenController implements TokenController {
      */
     public void releaseAllGates() {
         if (useGating) {
-            System.out.println("Releasing all gates - threads will now run freely");
-            for (Semaphore gate : iterationGates.values()) {
-                // Release many permits so threads can proceed indefinitely
-                gate.release(Integer.MAX_VALUE / 2);
+            if (verbose) {
+                System.out.println("Releasing all gates - threads will now run freely");
             }
+            sequencer.openAll();
+        }
+    }
+
+    /**
+     * If gating is enabled, wait for permission before the operation. Called
+     * outside the Location's monitor, so a gated thread holds no lock.
+     */
+    @Override
+    public void beforeOperation(ThreadToken token, Operation operation) {
+        if (!useGating || token == null) return;
+
+        int index = indexOf(token);
+        if (index >= 0) {
+            // Block indefinitely waiting for permission - TRUE serialization
+            // Each thread MUST wait for its token before proceeding. An
+            // interrupt is left pending: TokenHooks throws it before the operation
+            sequencer.await(index);
         }
     }
 
     @Override
-    public void beforeOperation(ThreadToken token, String operation) {
-        // Hook available for future fine-grained control
+    public void afterOperation(ThreadToken token, Operation operation) {
+        InterleavingCoverage c = coverage;
+        if (c != null) {
+            c.onOperationDone();
+        }
+        // Acknowledge the step, once its state is visible to the driver
+        if (useGating && token != null) {
+            int index = indexOf(token);
+            if (index >= 0) {
+                sequencer.done(index);
+            }
+        }
     }
 
     @Override
-    public void afterOperation(ThreadToken token, String operation) {
-        // Hook available for future fine-grained control
+    public boolean onInterrupted(ThreadToken token) {
+        return false;
     }
 
-    private long getDelayForIteration(String roleKey, int iteration) {
-        long[] delays = delaySequences.get(roleKey);
-        if (delays == null || delays.length == 0 || iteration < 0) {
+    /**
+     * Report the global state after every operation to the given coverage.
+     *
+     * @param coverage Interleaving coverage, or null to stop reporting
+     */
+    public void setCoverage(InterleavingCoverage coverage) {
+        this.coverage = coverage;
+    }
+
+    private long getDelayForIteration(int index, int iteration) {
+        if (index < 0 || iteration < 0) {
+            return defaultDelay;
+        }
+        long[] delays = delaySequences[index];
+        if (delays.length == 0) {
             return defaultDelay;
         }
 
@@ -248,8 +287,8 @@ public class FuzzingTokenController implements TokenController {
      * @return The iteration count for this specific instance
      */
     public int getIterationCount(ThreadToken token) {
-        AtomicInteger counter = iterationCounters.get(token.getUniqueId());
-        return counter != null ? counter.get() : 0;
+        int index = indexOf(token);
+        return index >= 0 ? iterationCounters.get(index) : 0;
     }
     
     /**
@@ -261,13 +300,9 @@ public class FuzzingTokenController implements TokenController {
      */
     public int getIterationCount(ThreadToken.Role role) {
         int total = 0;
-        java.util.List<String> keys = roleToKeys.get(role);
-        if (keys != null) {
-            for (String key : keys) {
-                AtomicInteger counter = iterationCounters.get(key);
-                if (counter != null) {
-                    total += counter.get();
-                }
+        for (int i = 0; i < tokens.length; i++) {
+            if (tokens[i].getRole() == role) {
+                total += iterationCounters.get(i);
             }
         }
         return total;
@@ -0,0 +1,49 @@
+package mine.fuzzing;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller that gates every operation and counts the completed ones, for
+ * driving a {@link PersistentMine} one operation at a time.
+ */
+class Gates extends NoOpTokenController {
+
+    // Longest a granted role that can proceed gets to complete its operation
+    private static final long STEP_TIMEOUT_MS = 5000;
+
+    private final Map<ThreadToken, Semaphore> gates = new ConcurrentHashMap<>();
+    private final Semaphore done = new Semaphore(0);
+
+    @Override
+    public void beforeOperation(ThreadToken token, Operation operation) {
+        try {
+            gates.computeIfAbsent(token, t -> new Semaphore(0)).acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void afterOperation(ThreadToken token, Operation operation) {
+        done.release();
+    }
+
+    void grant(ThreadToken token) {
+        gates.computeIfAbsent(token, t -> new Semaphore(0)).release();
+    }
+
+    /**
+     * Grant a role that can proceed and wait for its operation.
+     *
+     * @throws IllegalStateException if the operation does not complete
+     */
+    void step(ThreadToken token) throws InterruptedException {
+        grant(token);
+        if (!done.tryAcquire(STEP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException(token + " did not complete its operation");
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package mine.fuzzing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Liveness check over the per-role {@link Heartbeats}.
+ *
+ * A role is silent while its heartbeat does not change. The watchdog reports:
+ * <ul>
+ *   <li>a global stall, once every role has been silent for the global
+ *       limit;</li>
+ *   <li>partial starvation, once some role has been silent for its own
+ *       starvation limit while others still progress, e.g. one miner starved
+ *       while the rest of the mine runs.</li>
+ * </ul>
+ * Starvation limits are off unless configured: per role instance, else per
+ * role, else a default for all roles. Under gating a role that is never
+ * granted is starved on purpose, so only set them for free-running mines.
+ *
+ * Not thread-safe: meant to be polled by one watcher thread.
+ */
+public class HeartbeatWatchdog {
+
+    /**
+     * A starvation limit that never fires.
+     */
+    public static final long NEVER = Long.MAX_VALUE;
+
+    /**
+     * Roles found silent for longer than allowed.
+     */
+    public static final class Starvation {
+        private final List<ThreadToken> starved;
+        private final boolean global;
+        private final long silentMs;
+        private final int roles;
+
+        Starvation(List<ThreadToken> starved, boolean global, long silentMs, int roles) {
+            this.starved = Collections.unmodifiableList(starved);
+            this.global = global;
+            this.silentMs = silentMs;
+            this.roles = roles;
+        }
+
+        /**
+         * @return The silent roles; every role for a global stall
+         */
+        public List<ThreadToken> getStarved() {
+            return starved;
+        }
+
+        /**
+         * @return True if no role progressed at all
+         */
+        public boolean isGlobal() {
+            return global;
+        }
+
+        /**
+         * @return How long the longest silent of the roles has been silent
+         */
+        public long getSilentMs() {
+            return silentMs;
+        }
+
+        @Override
+        public String toString() {
+            if (global) {
+                return "No role progressed for " + silentMs + " ms";
+            }
+            return "Partial starvation: " + starved + " silent for up to " + silentMs + " ms while "
+                    + (roles - starved.size()) + " roles progress";
+        }
+    }
+
+    private final long globalLimitMs;
+    private long defaultLimitMs = NEVER;
+    private final Map<ThreadToken.Role, Long> roleLimits = new EnumMap<>(ThreadToken.Role.class);
+    private final Map<ThreadToken, Long> instanceLimits = new HashMap<>();
+
+    // Per slot of the watched heartbeats: beats last seen, and when they changed
+    private Heartbeats watched = null;
+    private long[] lastBeats = new long[0];
+    private long[] lastChange = new long[0];
+
+    /**
+     * @param globalLimitMs How long every role may be silent before it is a
+     *        global stall
+     */
+    public HeartbeatWatchdog(long globalLimitMs) {
+        this.globalLimitMs = globalLimitMs;
+    }
+
+    /**
+     * Starvation limit for every role without a more specific one.
+     */
+    public HeartbeatWatchdog starvationLimit(long ms) {
+        this.defaultLimitMs = ms;
+        return this;
+    }
+
+    /**
+     * Starvation limit for every instance of a role.
+     */
+    public HeartbeatWatchdog starvationLimit(ThreadToken.Role role, long ms) {
+        roleLimits.put(role, ms);
+        return this;
+    }
+
+    /**
+     * Starvation limit for one role instance.
+     */
+    public HeartbeatWatchdog starvationLimit(ThreadToken token, long ms) {
+        instanceLimits.put(token, ms);
+        return this;
+    }
+
+    long limitOf(ThreadToken token) {
+        Long ms = instanceLimits.get(token);
+        if (ms == null) {
+            ms = roleLimits.get(token.getRole());
+        }
+        return ms != null ? ms : defaultLimitMs;
+    }
+
+    /**
+     * Read every heartbeat and report roles silent for too long. The first
+     * check of a set of heartbeats only starts the clocks.
+     *
+     * @param beats The heartbeats to watch
+     * @param nowMs The current time
+     * @return The silent roles, or null if every role is within its limits
+     */
+    public Starvation check(Heartbeats beats, long nowMs) {
+        int n = beats.size();
+        if (beats != watched || lastBeats.length != n) {
+            watched = beats;
+            lastBeats = new long[n];
+            lastChange = new long[n];
+            for (int i = 0; i < n; i++) {
+                lastBeats[i] = beats.get(i);
+                lastChange[i] = nowMs;
+            }
+            return null;
+        }
+        if (n == 0) {
+            return null;
+        }
+
+        long latest = Long.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            long b = beats.get(i);
+            if (b != lastBeats[i]) {
+                lastBeats[i] = b;
+                lastChange[i] = nowMs;
+            }
+            latest = Math.max(latest, lastChange[i]);
+        }
+
+        List<ThreadToken> starved = new ArrayList<>();
+        if (nowMs - latest > globalLimitMs) {
+            for (int i = 0; i < n; i++) {
+                starved.add(beats.getToken(i));
+            }
+            return new Starvation(starved, true, nowMs - latest, n);
+        }
+
+        long longest = 0;
+        for (int i = 0; i < n; i++) {
+            long silent = nowMs - lastChange[i];
+            if (silent > limitOf(beats.getToken(i))) {
+                starved.add(beats.getToken(i));
+                longest = Math.max(longest, silent);
+            }
+        }
+        return starved.isEmpty() ? null : new Starvation(starved, false, longest, n);
+    }
+}
@@ -0,0 +1,112 @@
+package mine.fuzzing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for per-role heartbeats and the watchdog reading them.
+ */
+public class HeartbeatWatchdogTest {
+
+    private static final ThreadToken PRODUCER = new ThreadToken(ThreadToken.Role.PRODUCER, 0);
+    private static final ThreadToken MINER_0 = new ThreadToken(ThreadToken.Role.MINER, 0);
+    private static final ThreadToken MINER_1 = new ThreadToken(ThreadToken.Role.MINER, 1);
+    private static final ThreadToken ENGINE_0 = new ThreadToken(ThreadToken.Role.ENGINE, 0);
+
+    private static Heartbeats armed() {
+        Heartbeats beats = new Heartbeats();
+        beats.arm(List.of(PRODUCER, MINER_0, MINER_1, ENGINE_0));
+        return beats;
+    }
+
+    // Every role but the silent ones beats once per second, up to the given time
+    private static HeartbeatWatchdog.Starvation run(HeartbeatWatchdog watchdog, Heartbeats beats,
+            long untilMs, ThreadToken... silent) {
+        List<ThreadToken> quiet = List.of(silent);
+        HeartbeatWatchdog.Starvation result = watchdog.check(beats, 0);
+        for (long now = 1000; now <= untilMs && result == null; now += 1000) {
+            for (int i = 0; i < beats.size(); i++) {
+                if (!quiet.contains(beats.getToken(i))) {
+                    beats.beat(beats.getToken(i));
+                }
+            }
+            result = watchdog.check(beats, now);
+        }
+        return result;
+    }
+
+    @Test
+    public void testEachRoleBeatsItsOwnSlot() {
+        Heartbeats beats = armed();
+        beats.beat(MINER_1);
+        beats.beat(MINER_1);
+        beats.beat(ENGINE_0);
+        beats.beat(new ThreadToken(ThreadToken.Role.MINER, 7));
+        beats.beat(null);
+
+        assertEquals(4, beats.size());
+        assertEquals(0, beats.get(0));
+        assertEquals(0, beats.get(1));
+        assertEquals(2, beats.get(2));
+        assertEquals(1, beats.get(3));
+        assertEquals(3, beats.total(), "Roles that are not armed do not count");
+        assertEquals(MINER_1, beats.getToken(2));
+    }
+
+    @Test
+    public void testReportsOneStarvedRoleWhileOthersProgress() {
+        Heartbeats beats = armed();
+        HeartbeatWatchdog watchdog = new HeartbeatWatchdog(10_000)
+                .starvationLimit(ThreadToken.Role.MINER, 3000);
+
+        HeartbeatWatchdog.Starvation starvation = run(watchdog, beats, 20_000, MINER_1);
+        assertNotNull(starvation, "MINER_1 should be reported");
+        assertFalse(starvation.isGlobal());
+        assertEquals(List.of(MINER_1), starvation.getStarved());
+        assertEquals(4000, starvation.getSilentMs(), "Reported at the first check past its limit");
+        assertTrue(starvation.toString().contains("3 roles progress"));
+    }
+
+    @Test
+    public void testStarvationLimitsAreOffByDefault() {
+        Heartbeats beats = armed();
+        HeartbeatWatchdog watchdog = new HeartbeatWatchdog(5000);
+        assertNull(run(watchdog, beats, 60_000, MINER_1, ENGINE_0),
+                "Without starvation limits only a global stall is reported");
+    }
+
+    @Test
+    public void testInstanceLimitOverridesRoleAndDefault() {
+        HeartbeatWatchdog watchdog = new HeartbeatWatchdog(5000)
+                .starvationLimit(2000)
+                .starvationLimit(ThreadToken.Role.MINER, 1000)
+                .starvationLimit(MINER_0, HeartbeatWatchdog.NEVER);
+        assertEquals(HeartbeatWatchdog.NEVER, watchdog.limitOf(MINER_0));
+        assertEquals(1000, watchdog.limitOf(MINER_1));
+        assertEquals(2000, watchdog.limitOf(ENGINE_0));
+
+        Heartbeats beats = armed();
+        HeartbeatWatchdog.Starvation starvation = run(watchdog, beats, 20_000, MINER_0, MINER_1);
+        assertEquals(List.of(MINER_1), starvation.getStarved());
+    }
+
+    @Test
+    public void testReportsGlobalStallWhenNoRoleBeats() {
+        Heartbeats beats = armed();
+        HeartbeatWatchdog watchdog = new HeartbeatWatchdog(5000).starvationLimit(ThreadToken.Role.MINER, 3000);
+
+        HeartbeatWatchdog.Starvation starvation = run(watchdog, beats, 20_000,
+                PRODUCER, MINER_0, MINER_1, ENGINE_0);
+        assertNotNull(starvation);
+        // The miners' limit passes first, while the others are still within theirs
+        assertFalse(starvation.isGlobal());
+
+        starvation = run(new HeartbeatWatchdog(5000), beats, 20_000, PRODUCER, MINER_0, MINER_1, ENGINE_0);
+        assertTrue(starvation.isGlobal());
+        assertEquals(4, starvation.getStarved().size());
+        assertEquals(6000, starvation.getSilentMs());
+    }
+}
@@ -0,0 +1,131 @@
+package mine.fuzzing;
+
+import java.util.Arrays;
+
+/**
+ * Micro-benchmark for the per-iteration cost of the fuzzing hooks.
+ *
+ * Compares three versions of the same loop body:
+ *   - bare:   no hook at all (what the loop would cost without fuzzing support)
+ *   - hooked: {@link TokenHooks#onLoopIteration} with the token bound to the role,
+ *             plus the before/after operation hooks every Location operation runs
+ *   - legacy: registry lookup by {@code Thread.currentThread()} followed by a
+ *             virtual {@code onLoopIteration} call (the previous hook)
+ *
+ * To measure the production path, run with fuzzing off:
+ * <pre>
+ * java -Dmine.fuzzing=false -cp "target/test-classes:target/classes" \
+ *   mine.fuzzing.HookOverheadBenchmark
+ * </pre>
+ * With fuzzing off, "hooked" must be indistinguishable from "bare"; the
+ * benchmark exits with status 1 if its median round is more than 5% slower.
+ * Rounds of the three loops are interleaved, so that drift in the machine's
+ * speed affects all three alike.
+ */
+public class HookOverheadBenchmark {
+
+    private static final int ITERATIONS = 20_000_000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    private static final double TOLERANCE = 1.05;
+
+    // Written at the end of every round so the loops cannot be eliminated
+    static volatile long sink;
+
+    public static void main(String[] args) {
+        System.out.println("FuzzingMode.ENABLED = " + FuzzingMode.ENABLED);
+        if (FuzzingMode.ENABLED) {
+            System.out.println("WARNING: hooks are enabled, this measures the fuzzing path."
+                    + " Re-run with -Dmine.fuzzing=false for production numbers.");
+        }
+
+        ThreadToken token = new ThreadToken(ThreadToken.Role.MINER, 0);
+        ThreadTokenRegistry registry = new ThreadTokenRegistry();
+        registry.register(Thread.currentThread(), token);
+        TokenControllerProvider.setRegistry(registry);
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            bare(token);
+            hooked(token);
+            legacy();
+        }
+
+        double[] bareRounds = new double[ROUNDS];
+        double[] hookedRounds = new double[ROUNDS];
+        double[] legacyRounds = new double[ROUNDS];
+        for (int r = 0; r < ROUNDS; r++) {
+            bareRounds[r] = time(() -> bare(token));
+            hookedRounds[r] = time(() -> hooked(token));
+            legacyRounds[r] = time(HookOverheadBenchmark::legacy);
+        }
+        double bare = median(bareRounds);
+        double hooked = median(hookedRounds);
+        double legacy = median(legacyRounds);
+
+        System.out.printf("bare   : %6.3f ns/iteration%n", bare);
+        System.out.printf("hooked : %6.3f ns/iteration%n", hooked);
+        System.out.printf("legacy : %6.3f ns/iteration%n", legacy);
+
+        TokenControllerProvider.reset();
+
+        if (!FuzzingMode.ENABLED && hooked > bare * TOLERANCE) {
+            System.out.println("FAIL: disabled hook adds measurable overhead");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    private static long bare(ThreadToken token) {
+        long acc = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            acc += work(i, token);
+        }
+        sink = acc;
+        return acc;
+    }
+
+    private static long hooked(ThreadToken token) {
+        long acc = 0;
+        try {
+            for (int i = 0; i < ITERATIONS; i++) {
+                TokenHooks.onLoopIteration(token);
+                TokenHooks.beforeOperation(Operation.STATION_COLLECT);
+                acc += work(i, token);
+                TokenHooks.afterOperation(Operation.STATION_COLLECT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sink = acc;
+        return acc;
+    }
+
+    private static long legacy() {
+        long acc = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            ThreadToken token = TokenControllerProvider.getRegistry().getCurrentThreadToken();
+            TokenControllerProvider.getController().onLoopIteration(token);
+            acc += work(i, token);
+        }
+        sink = acc;
+        return acc;
+    }
+
+    // Stand-in for the role's own work in one iteration
+    private static long work(int i, ThreadToken token) {
+        return (i ^ token.getInstanceId()) & 0xff;
+    }
+
+    private static double median(double[] samples) {
+        double[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    // ns per iteration for one round
+    private static double time(Runnable round) {
+        long start = System.nanoTime();
+        round.run();
+        return (System.nanoTime() - start) / (double) ITERATIONS;
+    }
+}
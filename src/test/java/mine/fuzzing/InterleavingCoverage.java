@@ -0,0 +1,90 @@
+package mine.fuzzing;
+
+import com.code_intelligence.jazzer.api.Jazzer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Interleaving-level coverage for Jazzer.
+ *
+ * Edge coverage of the mine saturates after a handful of runs: every
+ * Location method is covered long before interesting interleavings are. This
+ * feeds Jazzer two extra kinds of features, so that inputs reaching a new
+ * interleaving or a new global state are kept in the corpus:
+ * <ul>
+ *   <li>pairs of consecutive transitions, each transition being (role,
+ *       operation, Location slot, Location state after it) as reported by
+ *       the {@link StateBoard}, under the Location's monitor;</li>
+ *   <li>the global mine state after each operation, as the Zobrist hash the
+ *       {@link StateBoard} keeps, read once the operation has completed.</li>
+ * </ul>
+ * Each 64-bit feature hash lights up one {@link Jazzer#exploreState} hint:
+ * its low byte is the state, the next bits pick the hint id within the
+ * feature's own id range.
+ */
+public class InterleavingCoverage implements StateBoard.TransitionListener {
+
+    /**
+     * Receives coverage hints; Jazzer's by default.
+     */
+    public interface Sink {
+        void exploreState(byte state, int id);
+    }
+
+    // Hint ids per kind of feature, kept apart from each other
+    static final int PAIR_IDS = 1 << 12;
+    static final int PAIR_BASE = 0x4d490000;
+    static final int STATE_BASE = PAIR_BASE + PAIR_IDS;
+    static final int STATE_IDS = 1 << 12;
+
+    private final StateBoard board;
+    private final Sink sink;
+    private final AtomicLong previous = new AtomicLong();
+
+    public InterleavingCoverage(StateBoard board) {
+        this(board, Jazzer::exploreState);
+    }
+
+    public InterleavingCoverage(StateBoard board, Sink sink) {
+        this.board = board;
+        this.sink = sink;
+    }
+
+    /**
+     * Start receiving transitions from the board.
+     */
+    public void install() {
+        board.addListener(this);
+    }
+
+    @Override
+    public void onTransition(ThreadToken token, Operation operation, Object location, int locationState) {
+        long transition = mix(mix(mix(
+                token != null ? token.getUniqueId().hashCode() : 0,
+                operation.ordinal()),
+                board.slotOf(location)),
+                locationState);
+        long pair = mix(previous.getAndSet(transition), transition);
+        emit(PAIR_BASE, PAIR_IDS, pair);
+    }
+
+    /**
+     * Record the global state reached by an operation. Call once it has
+     * completed, outside the Location's monitor.
+     */
+    public void onOperationDone() {
+        emit(STATE_BASE, STATE_IDS, board.fingerprint());
+    }
+
+    private void emit(int base, int ids, long hash) {
+        sink.exploreState((byte) hash, base + (int) ((hash >>> 8) & (ids - 1)));
+    }
+
+    // splitmix64 finalizer over the combined values
+    static long mix(long a, long b) {
+        long z = a * 0x9E3779B97F4A7C15L + b;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
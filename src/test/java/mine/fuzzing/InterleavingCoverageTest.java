@@ -0,0 +1,95 @@
+package mine.fuzzing;
+
+import mine.Cart;
+import mine.Elevator;
+import mine.Station;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the interleaving coverage fed back to Jazzer.
+ */
+public class InterleavingCoverageTest {
+
+    @AfterEach
+    public void cleanup() {
+        TokenControllerProvider.reset();
+    }
+
+    private interface Ops {
+        void run(Station station) throws InterruptedException;
+    }
+
+    // Run the operations on a fresh mine; return the hints, in order
+    private static List<Long> hints(Ops ops) throws InterruptedException {
+        TokenControllerProvider.reset();
+        Station station = new Station(0);
+        StateBoard board = TokenControllerProvider.getStateBoard();
+        board.attach(new Station[] { station }, new Elevator(), 1);
+        TokenControllerProvider.getRegistry().register(Thread.currentThread(),
+                new ThreadToken(ThreadToken.Role.MINER, 0));
+
+        List<Long> hints = new ArrayList<>();
+        InterleavingCoverage coverage = new InterleavingCoverage(board,
+                (state, id) -> hints.add(((long) id << 8) | (state & 0xff)));
+        coverage.install();
+        TokenControllerProvider.setController(new NoOpTokenController() {
+            @Override
+            public void afterOperation(ThreadToken token, Operation operation) {
+                coverage.onOperationDone();
+            }
+        });
+
+        ops.run(station);
+        return hints;
+    }
+
+    private static boolean isPair(long hint) {
+        int id = (int) (hint >>> 8);
+        return id >= InterleavingCoverage.PAIR_BASE
+                && id < InterleavingCoverage.PAIR_BASE + InterleavingCoverage.PAIR_IDS;
+    }
+
+    @Test
+    public void testEachOperationEmitsPairAndState() throws InterruptedException {
+        List<Long> hints = hints(s -> {
+            s.deliver(Cart.getNewCart());
+            s.depositGem();
+        });
+        assertEquals(4, hints.size());
+        assertTrue(isPair(hints.get(0)), "Transition pair is reported under the monitor first");
+        assertFalse(isPair(hints.get(1)), "Global state follows once the operation is done");
+    }
+
+    @Test
+    public void testSameRunGivesSameHints() throws InterruptedException {
+        Ops ops = s -> {
+            s.deliver(Cart.getNewCart());
+            s.depositGem();
+            s.collect();
+        };
+        assertEquals(hints(ops), hints(ops));
+    }
+
+    @Test
+    public void testOtherOrderGivesNewPairs() throws InterruptedException {
+        List<Long> deliverFirst = hints(s -> {
+            s.deliver(Cart.getNewCart());
+            s.depositGem();
+        });
+        List<Long> gemFirst = hints(s -> {
+            s.depositGem();
+            s.deliver(Cart.getNewCart());
+        });
+
+        // Both end in the same global state, but through other interleavings
+        assertEquals(deliverFirst.get(3), gemFirst.get(3));
+        assertNotEquals(deliverFirst.get(2), gemFirst.get(2));
+        assertNotEquals(deliverFirst.get(1), gemFirst.get(1), "Intermediate states differ");
+    }
+}
@@ -1,14 +1,27 @@
 package mine.fuzzing;
 
 import com.code_intelligence.jazzer.api.FuzzedDataProvider;
+import mine.MineLogger;
 import mine.Params;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 public class MineFuzzTarget {
 
     /**
      * Fuzz entry point.
      */
     private static final long MAX_RUN_MS = 15000;
+
+    /**
+     * Longest the gated driver waits for a granted operation to complete.
+     * A step normally ends as soon as the role hands control back.
+     */
+    static final long STEP_TIMEOUT_MS = 1000;
     
     /**
      * Control whether to release all gates when fuzzer data is exhausted.
@@ -17,6 +30,45 @@ public class MineFuzzTarget {
      */
     private static boolean releaseGatesOnDataExhaustion = false;
 
+    /**
+     * Quiet mode: print nothing per step, only record it in {@link #trace},
+     * which is written to {@link #traceDir} when a finding is reported.
+     * Meant for real fuzzing speeds, where console output would dominate.
+     * Set with {@code -Dmine.fuzz.quiet=true}.
+     */
+    private static boolean quiet = Boolean.parseBoolean(System.getProperty("mine.fuzz.quiet", "false"));
+
+    /**
+     * Newest steps of the current input, recorded whether quiet or not.
+     */
+    private static final StepTrace trace = new StepTrace();
+
+    /**
+     * Where the step trace of each finding is written, named after its
+     * stall signature.
+     */
+    private static final File traceDir = new File(System.getProperty("mine.fuzz.traceDir", "target/step-traces"));
+
+    /**
+     * Cut an input off once this many operations in a row have only led to
+     * states that earlier inputs already reached; 0 never cuts off.
+     * Off by default: whether an input is cut off then depends on the inputs
+     * run before it, so a cut-off run cannot be replayed on its own.
+     */
+    private static int knownStateCutoff = 0;
+
+    /**
+     * Fingerprints of the global states reached by recent inputs, recorded
+     * only while knownStateCutoff is on.
+     */
+    private static final StateSet visitedStates = new StateSet(1 << 18);
+
+    /**
+     * Simulation shared by consecutive inputs, its role threads parked in
+     * between. Rebuilt when a reset finds it unfit for reuse.
+     */
+    private static PersistentMine persistentMine = null;
+
 //    public static void fuzzerTestOneInput(FuzzedDataProvider data) {
 //
 //        if (data.remainingBytes() < 8) {
@@ -58,7 +110,9 @@ public class MineFuzzTarget {
     public static void fuzzerTestOneInput(FuzzedDataProvider data) {
 
         int initialBytes = data.remainingBytes();
-        System.err.println("Input size: " + initialBytes + " bytes");
+        if (!quiet) {
+            System.err.println("Input size: " + initialBytes + " bytes");
+        }
 
         if (data.remainingBytes() < 200) {
             return;
@@ -68,51 +122,37 @@ public class MineFuzzTarget {
         SequencePauseProvider provider = new SequencePauseProvider(data);
         Params.setPauseProvider(provider);
 
-        MineProgress.reset();
-
-        // 2. Build the simulation (threads are constructed but not started)
-        MineSimulation sim = new MineSimulation();
-
-        // 3. Initialize token-based fuzzing infrastructure
-        ThreadTokenRegistry registry = new ThreadTokenRegistry();
-        sim.registerThreadTokens(registry);
-        TokenControllerProvider.setRegistry(registry);
+        // 2. Reuse the simulation of earlier inputs: its threads are already
+        //    running, parked at the start of their loop in the initial state
+        PersistentMine mine;
+        try {
+            mine = persistentMine();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        MineSimulation sim = mine.getSimulation();
+        ThreadTokenRegistry registry = mine.getRegistry();
 
-        // 4. Decide fuzzing mode: gated iteration control or free-running with delays
+        // 3. Decide fuzzing mode: gated iteration control or free-running with delays
         boolean useGating = true;
-        FuzzingTokenController controller = new FuzzingTokenController(data, registry, useGating);
-        TokenControllerProvider.setController(controller);
+        FuzzingTokenController controller = new FuzzingTokenController(data, registry, useGating, !quiet);
+
+        // 4. Fresh token-based fuzzing infrastructure; the roles start running
+        //    but, gated, cannot perform any operation before they are granted
+        mine.begin(controller);
 
-        // 5. Start threads - all or subset based on fuzz input
-        boolean startAll = true;
+        // Reward new interleavings and global states, not just new edges
+        InterleavingCoverage coverage = new InterleavingCoverage(TokenControllerProvider.getStateBoard());
+        coverage.install();
+        controller.setCoverage(coverage);
+        trace.begin(sim.getTokens(), TokenControllerProvider.getStateBoard().snapshot());
 
-        // 6. Watch for deadlock / stall
+        // 5. Watch for deadlock / stall
         AsyncDeadlockWatcher watcher = new AsyncDeadlockWatcher(MAX_RUN_MS, Thread.currentThread());
         watcher.start();
+        boolean traced = false;
         try {
-            if (startAll) {
-                sim.startAll();
-            } else {
-                // Start subset of threads based on token selection
-                int numStarts = data.consumeInt(1, sim.threadCount());
-                for (int i = 0; i < numStarts && data.remainingBytes() > 1; i++) {
-                    int roleIdx = data.consumeInt(0, ThreadToken.Role.values().length - 1);
-                    ThreadToken.Role role = ThreadToken.Role.values()[roleIdx];
-                    int instanceId = data.consumeInt(0, 3);
-                    ThreadToken token = new ThreadToken(role, instanceId);
-                    Thread t = registry.getThread(token);
-                    if (t != null) {
-                        Thread[] allThreads = sim.getAllThreads();
-                        for (int j = 0; j < allThreads.length; j++) {
-                            if (allThreads[j] == t) {
-                                sim.startThread(j);
-                                break;
-                            }
-                        }
-                    }
-                }
-                sim.startAllRemaining();
-            }
 
 //            int[] trace_token = new int[]{
 //                0, 10, 10, 3, 7, 7, 2, 8, 8, 5, 9, 9, 4, 11, 6,
@@ -132,87 +172,84 @@ public class MineFuzzTarget {
 
             int index = 0;
 
-            // 7. If using gated control, release iterations based on fuzz input
+            // 6. If using gated control, release iterations based on fuzz input
             if (useGating) {
-                // Get all registered tokens for precise control
-                java.util.List<ThreadToken> allTokens = new java.util.ArrayList<>(registry.getAllTokens());
+                // All tokens in the simulation's stable thread order, so a byte
+                // picks the same role in every run (and in FuzzSchedule.decode)
+                java.util.List<ThreadToken> allTokens = sim.getTokens();
+
+                // Roles that can proceed, updated on every Location transition
+                ReadySet readySet = sim.getReadySet();
 
                 // Only proceed if there are registered tokens
                 if (!allTokens.isEmpty()) {
-                    int consecutiveBlocked = 0;
-                    final int MAX_CONSECUTIVE_BLOCKED = 100; // Try 100 tokens before forcing one
-
                     boolean firstsetup = true;
-                    int iter = 9;
+                    StateBoard board = TokenControllerProvider.getStateBoard();
+                    if (knownStateCutoff > 0) {
+                        visitedStates.add(board.fingerprint());
+                    }
+                    int known = 0;
                     while (data.remainingBytes() > 1) {
                         // Pick a unique token to release (instance-specific control)
-                        int tokenIdx = 0;
+                        ThreadToken token;
                         if (index < trace_token.length) {
-                            tokenIdx = trace_token[index];
+                            token = allTokens.get(trace_token[index]);
                             index ++;
+                            if (!sim.canThreadProceed(token)) {
+                                System.out.println("WARNING: trace token blocked, skipped: " + token);
+                                continue;
+                            }
                         }else{
-                            if (firstsetup) {
+                            // A replayed trace ends the run once it is done
+                            if (firstsetup && trace_token.length > 0) {
                                 System.out.println("===============Finished Setup===============");
                                 firstsetup = false;
                                 return;
                             }
-                            tokenIdx = data.consumeInt(0, allTokens.size() - 1);
-                        }
-                        ThreadToken token = allTokens.get(tokenIdx);
-
-                        // Check if this thread can actually make progress (not blocked on a wait condition)
-                        boolean canProceed = sim.canThreadProceed(token);
-                        boolean tokenGranted = false;
 
+                            // Index only into the ready roles, so every byte
+                            // makes a real scheduling decision
+                            long[] ready = readySet.bits();
+                            int count = ReadySet.count(ready);
+                            if (count == 0) {
+                                reportGlobalStall(sim, controller);
+                            }
+                            if (knownStateCutoff > 0 && known >= knownStateCutoff) {
+                                System.out.println("Only known states for " + known + " operations; input cut off.");
+                                return;
+                            }
+                            token = readySet.select(ready, data.consumeInt(0, count - 1));
+                        }
 
-                        if (canProceed) {
-                            // Release exactly 1 iteration for serialized execution
-                            // Only one thread works at a time, completing its task before the next token is granted
+                        // Release exactly 1 operation for serialized execution
+                        // Only one thread works at a time, completing its task before the next token is granted
+                        if (!quiet) {
                             System.out.println("Token granted to: " + token);
-                            controller.releaseIteration(token);
-                            consecutiveBlocked = 0; // Reset counter on successful grant
-                            tokenGranted = true;
-                        } else {
-                            consecutiveBlocked++;
-
-                            // If too many consecutive tokens are blocked, force grant one to prevent livelock
-                            // This handles cases where conditional logic is too conservative
-                            if (consecutiveBlocked >= MAX_CONSECUTIVE_BLOCKED) {
-                                System.out.println("WARNING: " + MAX_CONSECUTIVE_BLOCKED + " consecutive tokens blocked. Force-granting token to: " + token.getUniqueId());
-                                controller.releaseIteration(token);
-                                consecutiveBlocked = 0;
-                                tokenGranted = true;
-                            } else {
-                                // Thread is blocked, don't grant token
-                                // Consume some bytes to avoid infinite loop
-                                final int DUMMY_CONSUME_LIMIT = 100;
-                                if (data.remainingBytes() > 1) {
-                                    data.consumeInt(0, DUMMY_CONSUME_LIMIT);
-                                }
-                            }
                         }
 
-                        System.out.println("Remaining bytes: " + data.remainingBytes());
-                        printThreadStatusTable(sim, registry);
-
-                        // Only sleep if we actually granted a token
-                        // Long delay to ensure the thread completes its work before next token grant
-                        // This provides serialized execution - one thread works at a time
-                        // Delay must be long enough for:
-                        // - Thread to acquire the permit
-                        // - Execute its business logic (collect/deliver/etc with blocking waits)
-                        // - Complete and loop back to waiting state
-                        //
-                        // Note: This is a pragmatic timeout-based approach. A more sophisticated solution
-                        // would use completion callbacks, but that would require modifying all thread classes.
-                        // For fuzzing purposes, this 5-second delay is acceptable and provides reliable
-                        // serialization. Adjust if thread operations take longer than expected.
-                        if (tokenGranted) {
-                            try {
-                                Thread.sleep(1000);
-                            } catch (InterruptedException e) {
-                                break;
+                        // Hand control to the role and wait for it to hand it back: the
+                        // role acknowledges its operation from afterOperation, so the
+                        // step takes as long as the operation itself. A role that
+                        // blocks inside a Location instead, or overruns the timeout,
+                        // is left to complete on its own
+                        boolean done;
+                        try {
+                            done = controller.step(token, STEP_TIMEOUT_MS);
+                        } catch (InterruptedException e) {
+                            break;
+                        }
+                        trace.record(allTokens.indexOf(token), done, data.remainingBytes(),
+                                readySet.bits(), board.snapshot());
+
+                        if (!quiet) {
+                            if (!done) {
+                                System.out.println("WARNING: " + token + " did not complete its operation");
                             }
+                            System.out.println("Remaining bytes: " + data.remainingBytes());
+                            printThreadStatusTable(sim, registry);
+                        }
+                        if (knownStateCutoff > 0) {
+                            known = visitedStates.add(board.fingerprint()) ? 0 : known + 1;
                         }
                     }
 
@@ -223,8 +260,10 @@ public class MineFuzzTarget {
                         System.out.println("Fuzzer data exhausted. Releasing all gates for free execution...");
                         controller.releaseAllGates();
                     } else {
-                        System.out.println("Fuzzer data exhausted. Fuzzing test completed successfully.");
-                        printThreadStatusTable(sim, registry);
+                        if (!quiet) {
+                            System.out.println("Fuzzer data exhausted. Fuzzing test completed successfully.");
+                            printThreadStatusTable(sim, registry);
+                        }
                         // Gracefully terminate - threads remain gated, fuzzing test is complete
                         // DeadlockWatcher will not detect this as a deadlock since we're intentionally stopping
                         return;
@@ -241,18 +280,75 @@ public class MineFuzzTarget {
                     System.out.println("  " + role + ": " + controller.getIterationCount(role));
                 }
             }
+            writeTrace(e);
+            traced = true;
             throw e;
         } finally {
             watcher.stop();
-            watcher.throwIfDetected();
             try {
-                sim.stopAll();
-            } catch (InterruptedException ignored) {}
-            Params.resetPauseProvider();
-            TokenControllerProvider.reset();
+                watcher.throwIfDetected();
+            } catch (AssertionError e) {
+                // The watcher may see the stall the driver already reported
+                if (!traced) {
+                    writeTrace(e);
+                }
+                throw e;
+            } finally {
+                recycle(mine);
+                Params.resetPauseProvider();
+            }
+        }
+    }
+
+    private static PersistentMine persistentMine() throws InterruptedException {
+        if (persistentMine == null) {
+            persistentMine = new PersistentMine();
+        }
+        return persistentMine;
+    }
+
+    /**
+     * Rewind the mine for the next input. A mine that fails its reset (a
+     * role died, or state leaked) is discarded and the next input builds a
+     * fresh one.
+     */
+    private static void recycle(PersistentMine mine) {
+        // A watcher's interrupt only ends this input
+        Thread.interrupted();
+        try {
+            mine.reset();
+        } catch (IllegalStateException | InterruptedException e) {
+            System.out.println("Discarding persistent mine: " + e.getMessage());
+            persistentMine = null;
+            mine.close();
         }
     }
     
+    /**
+     * No role can proceed: grant every role once so that all of them wait
+     * inside a Location, and report the stall the StallDetector sees, by
+     * its signature.
+     */
+    private static void reportGlobalStall(MineSimulation sim, FuzzingTokenController controller) {
+        System.out.println("No role can proceed: " + sim.snapshot());
+        for (ThreadToken token : sim.getTokens()) {
+            controller.releaseIteration(token);
+        }
+        StallReport report;
+        try {
+            report = TokenControllerProvider.getStallDetector().awaitStall(MAX_RUN_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            report = null;
+        }
+        if (report == null) {
+            // Not every role reached its wait: fingerprint those that did
+            throw StallFinding.of("Logical deadlock detected, no role can proceed",
+                    TokenControllerProvider.getStallDetector().blockedRoles(), TokenControllerProvider.getStateBoard());
+        }
+        throw StallFinding.of("Logical deadlock detected", report, TokenControllerProvider.getStateBoard());
+    }
+
     /**
      * Print a thread status table showing which threads can proceed.
      * This method does not produce any output from the system itself, only displays
@@ -262,35 +358,40 @@ public class MineFuzzTarget {
      * @param registry The token registry mapping threads to tokens
      */
     private static void printThreadStatusTable(MineSimulation sim, ThreadTokenRegistry registry) {
-        System.out.println("\n╔════════════════════════════════════════════════════╗");
-        System.out.println("║         Thread Status Table (Current Tick)         ║");
-        System.out.println("╠════════════════════════════════╦═══════════════════╣");
-        System.out.println("║ Thread                         ║ Can Proceed?      ║");
-        System.out.println("╠════════════════════════════════╬═══════════════════╣");
-        
-        // Get all registered tokens and sort them for consistent output
-        java.util.List<ThreadToken> allTokens = new java.util.ArrayList<>(registry.getAllTokens());
-        allTokens.sort((t1, t2) -> {
-            int roleCompare = t1.getRole().compareTo(t2.getRole());
-            if (roleCompare != 0) return roleCompare;
-            return Integer.compare(t1.getInstanceId(), t2.getInstanceId());
-        });
-        
-        // Print status for each thread
-        for (ThreadToken token : allTokens) {
+        // Judge every live thread against one consistent snapshot
+        MineSnapshot snapshot = sim.snapshot();
+        List<ThreadToken> live = new ArrayList<>();
+        Collection<ThreadToken> all = registry.getAllTokens();
+        long[] canProceed = new long[ReadySet.words(all.size())];
+        for (ThreadToken token : all) {
             Thread thread = registry.getThread(token);
             if (thread != null && thread.isAlive()) {
-                boolean canProceed = sim.canThreadProceed(token);
-                String status = canProceed ? "✅ Yes" : "❌ No";
-                String threadName = String.format("%-30s", token.getUniqueId());
-                System.out.printf("║ %s ║ %-16s ║%n", threadName, status);
+                if (sim.canThreadProceed(snapshot, token)) {
+                    canProceed[live.size() >>> 6] |= 1L << live.size();
+                }
+                live.add(token);
             }
         }
-        
-        System.out.println("╚════════════════════════════════╩═══════════════════╝");
-        System.out.println();
+        StepTrace.printTable(System.out, live, canProceed, snapshot);
     }
-    
+
+    /**
+     * Write the steps leading to a finding, to be rendered with
+     * {@link StepTrace#main}.
+     */
+    private static void writeTrace(AssertionError finding) {
+        String name = finding instanceof StallFinding stall
+                ? stall.getSignature().getId()
+                : String.format("%08x", String.valueOf(finding.getMessage()).hashCode());
+        File file = new File(traceDir, name + ".trace");
+        try {
+            trace.write(file);
+            System.out.println("Last " + trace.size() + " of " + trace.getSteps() + " steps written to " + file);
+        } catch (IOException e) {
+            System.out.println("Could not write step trace " + file + ": " + e.getMessage());
+        }
+    }
+
     /**
      * Set whether to release all gates when fuzzer data is exhausted.
      * This is a public setter to allow tests to configure the behavior.
@@ -301,4 +402,14 @@ public class MineFuzzTarget {
     public static void setReleaseGatesOnDataExhaustion(boolean release) {
         releaseGatesOnDataExhaustion = release;
     }
+
+    /**
+     * Set quiet mode: no per-step output, the steps are only traced.
+     *
+     * @param enabled If true, per-step telemetry only goes to the step trace
+     */
+    public static void setQuiet(boolean enabled) {
+        quiet = enabled;
+        MineLogger.setQuiet(enabled);
+    }
 }
@@ -0,0 +1,90 @@
+package mine.fuzzing;
+
+import mine.Params;
+
+import java.util.List;
+
+/**
+ * Replays operation schedules on the real Locations and role threads of a
+ * {@link PersistentMine}, with the schedule's pauses, so that what a
+ * {@link VirtualMine} predicts can be checked against the code it models.
+ *
+ * Roles are gated one operation at a time, as the fuzz target gates them,
+ * and operations that would block are skipped, as {@link FuzzSchedule#replay}
+ * skips them. The roles sleep their pauses for real; the mining, elevator and
+ * engine durations, which are not part of an input, are stubbed to zero.
+ * Replays are sequential: the fuzzing infrastructure is global.
+ */
+public class MineReplay implements AutoCloseable {
+
+    // Longest the stalled roles get to reach their waits
+    private static final long STALL_TIMEOUT_MS = 5000;
+
+    private final PersistentMine mine;
+    private long replays = 0;
+
+    /**
+     * @throws IllegalStateException if fuzzing is off, so the hooks that
+     *         gate the roles are compiled away
+     */
+    public MineReplay() throws InterruptedException {
+        if (!FuzzingMode.ENABLED) {
+            throw new IllegalStateException("Replaying on the real mine needs the fuzzing hooks (-Dmine.fuzzing=true)");
+        }
+        this.mine = new PersistentMine();
+    }
+
+    /**
+     * Replay operations with the given pauses.
+     *
+     * @param pauses Arrival, departure, operator and miner pauses, as in
+     *        {@link FuzzSchedule#getPauses()}
+     * @param steps Role indices (see {@link VirtualMine}) in order
+     * @return Signature of the global stall the mine reaches, or null if
+     *         some role can still proceed afterwards
+     */
+    public StallSignature stall(long[][] pauses, int[] steps) throws InterruptedException {
+        replays++;
+        Params.setPauseProvider(new SequencePauseProvider(pauses[0], pauses[1], pauses[2], pauses[3]) {
+            public long miningTime() { return 0; }
+            public long elevatorTime() { return 0; }
+            public long engineTime() { return 0; }
+        });
+        Gates gates = new Gates();
+        mine.begin(gates);
+        try {
+            MineSimulation sim = mine.getSimulation();
+            List<ThreadToken> tokens = sim.getTokens();
+            ReadySet ready = sim.getReadySet();
+            for (int role : steps) {
+                if (ready.isReady(role)) {
+                    gates.step(tokens.get(role));
+                }
+            }
+            if (ready.size() != 0) {
+                return null;
+            }
+            for (ThreadToken token : tokens) {
+                gates.grant(token);
+            }
+            StallReport report = TokenControllerProvider.getStallDetector().awaitStall(STALL_TIMEOUT_MS);
+            return report == null ? null
+                    : StallSignature.of(report, TokenControllerProvider.getStateBoard().snapshot());
+        } finally {
+            mine.reset();
+            Params.resetPauseProvider();
+        }
+    }
+
+    /**
+     * @return Number of replays run so far
+     */
+    public long getReplays() {
+        return replays;
+    }
+
+    @Override
+    public void close() {
+        mine.close();
+    }
+}
@@ -3,7 +3,10 @@ package mine.fuzzing;
 import mine.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class MineSimulation {
 
@@ -14,12 +17,16 @@ public class MineSimulation {
     private final Engine[] engines;
     private final Engine firstEngine;
     private final Engine lastEngine;
+    private final Elevator elevator;
+    private final Station[] stations;
 
     // flat view for fuzzing / scheduling
     private final Thread[] threads;
     private final boolean[] started;
+    private final List<ThreadToken> tokens;
 
     private ThreadTokenRegistry registry = null;
+    private ReadySet readySet = null;
 
 //    public MineSimulation() {
 //        int n = Params.STATIONS;
@@ -54,25 +61,35 @@ public class MineSimulation {
         Elevator elevator = new Elevator();
         Station[] station = new Station[n];
         for (int i = 0; i < n; i++) {
-            station[i] = new Station(i);
+            // strict and without a siding whatever Params says, as the
+            // snapshots and VirtualMine model them
+            station[i] = new Station(i, false, 0);
         }
+        this.elevator = elevator;
+        this.stations = station;
 
-        producer = new Producer(elevator);
-        consumer = new Consumer(elevator);
-        operator = new Operator(elevator);
+        // Tokens are bound to each role at construction, so the loop hooks
+        // never have to look them up by thread
+        producer = new Producer(elevator, new ThreadToken(ThreadToken.Role.PRODUCER, 0));
+        consumer = new Consumer(elevator, new ThreadToken(ThreadToken.Role.CONSUMER, 0));
+        // Fixed rhythm whatever Params says: pending calls are not part of a
+        // MineSnapshot, so the ready set and the VirtualMine assume it
+        operator = new Operator(elevator, new ThreadToken(ThreadToken.Role.OPERATOR, 0), false);
 
         miners = new Miner[n];
         for (int i = 0; i < n; i++) {
-            miners[i] = new Miner(station[i]);
+            miners[i] = new Miner(station[i], new ThreadToken(ThreadToken.Role.MINER, i));
         }
 
+        int engineId = 0;
         engines = new Engine[n - 1];
         for (int i = 0; i < n - 1; i++) {
-            engines[i] = new Engine(station[i], station[i + 1]);
+            engines[i] = new Engine(station[i], station[i + 1],
+                    new ThreadToken(ThreadToken.Role.ENGINE, engineId++));
         }
 
-        firstEngine = new Engine(elevator, station[0]);
-        lastEngine = new Engine(station[n - 1], elevator);
+        firstEngine = new Engine(elevator, station[0], new ThreadToken(ThreadToken.Role.ENGINE, engineId++));
+        lastEngine = new Engine(station[n - 1], elevator, new ThreadToken(ThreadToken.Role.ENGINE, engineId++));
 
         // Flatten all worker threads into a single array
         int total = 3 /* producer, consumer, operator */
@@ -91,35 +108,73 @@ public class MineSimulation {
         threads[idx++] = lastEngine;
 
         started = new boolean[total];
+
+        List<ThreadToken> list = new ArrayList<>(total);
+        for (Thread t : threads) {
+            list.add(((TokenHolder) t).getToken());
+        }
+        tokens = Collections.unmodifiableList(list);
     }
     
     /**
      * Register thread tokens with the provided registry.
      * Tokens enable fuzz-driven control without affecting normal simulation.
+     * Each role already carries its token; this only makes it discoverable
+     * by thread or by token for the fuzzing driver.
      * 
      * @param registry The token registry to use
      */
     public void registerThreadTokens(ThreadTokenRegistry registry) {
-        // Register producer, consumer, operator
-        registry.register(producer, new ThreadToken(ThreadToken.Role.PRODUCER, 0));
-        registry.register(consumer, new ThreadToken(ThreadToken.Role.CONSUMER, 0));
-        registry.register(operator, new ThreadToken(ThreadToken.Role.OPERATOR, 0));
-
-        // Register miners
-        for (int i = 0; i < miners.length; i++) {
-            registry.register(miners[i], new ThreadToken(ThreadToken.Role.MINER, i));
+        for (Thread t : threads) {
+            registry.register(t, ((TokenHolder) t).getToken());
         }
 
-        // Register engines
-        int engineId = 0;
-        for (Engine e : engines) {
-            registry.register(e, new ThreadToken(ThreadToken.Role.ENGINE, engineId++));
-        }
-        registry.register(firstEngine, new ThreadToken(ThreadToken.Role.ENGINE, engineId++));
-        registry.register(lastEngine, new ThreadToken(ThreadToken.Role.ENGINE, engineId++));
+        // A global stall is every one of our roles waiting inside a Location
+        TokenControllerProvider.getStallDetector().arm(threads.length);
+        // One heartbeat slot per role, in token order
+        TokenControllerProvider.getHeartbeats().arm(tokens);
+        // Engine tokens are numbered 0..n, matching the board's engine slots
+        StateBoard board = TokenControllerProvider.getStateBoard();
+        board.attach(stations, elevator, engines.length + 2);
+
+        // Proceedable roles, maintained from Location transitions
+        readySet = new ReadySet(board, tokens.toArray(new ThreadToken[0]), dependents(),
+                this::canThreadProceed);
+        readySet.install();
 
         this.registry = registry;
     }
+
+    // For each Location, the roles (as bits in token order) whose next
+    // operation reads it
+    private Map<Object, long[]> dependents() {
+        Map<Object, long[]> masks = new IdentityHashMap<>();
+        int words = ReadySet.words(threads.length);
+        for (int i = 0; i < threads.length; i++) {
+            Thread t = threads[i];
+            List<Destination> read = new ArrayList<>();
+            if (t instanceof Producer || t instanceof Consumer || t instanceof Operator) {
+                read.add(elevator);
+            } else if (t instanceof Miner m) {
+                read.add(m.getStation());
+            } else if (t instanceof Engine e) {
+                read.add(e.getOrigin());
+                read.add(e.getDestination());
+            }
+            for (Destination loc : read) {
+                masks.computeIfAbsent(loc, l -> new long[words])[i >>> 6] |= 1L << i;
+            }
+        }
+        return masks;
+    }
+
+    /**
+     * Roles that can proceed, kept up to date from Location transitions.
+     * Available once {@link #registerThreadTokens} has been called.
+     */
+    public ReadySet getReadySet() {
+        return readySet;
+    }
     
     /**
      * Get thread by token from the registry.
@@ -129,6 +184,14 @@ public class MineSimulation {
         return registry.getThread(token);
     }
     
+    public Elevator getElevator() {
+        return elevator;
+    }
+
+    public Station[] getStations() {
+        return stations.clone();
+    }
+
     /**
      * Get all threads in the simulation.
      */
@@ -136,6 +199,14 @@ public class MineSimulation {
         return threads;
     }
 
+    /**
+     * Tokens of all threads, in thread order. This order is stable across
+     * runs, unlike the registry's, so fuzz inputs pick the same roles.
+     */
+    public List<ThreadToken> getTokens() {
+        return tokens;
+    }
+
     public int threadCount() {
         return threads.length;
     }
@@ -199,6 +270,14 @@ public class MineSimulation {
         t.join(2000);
     }
 
+    /**
+     * Capture a consistent snapshot of every Location and Engine.
+     * Requires {@link #registerThreadTokens} to have attached the state board.
+     */
+    public MineSnapshot snapshot() {
+        return TokenControllerProvider.getStateBoard().snapshot();
+    }
+
     /**
      * Check if a thread with the given token can make progress.
      * This checks if the thread's next operation would block on a wait condition.
@@ -207,6 +286,20 @@ public class MineSimulation {
      * @return true if the thread can proceed without blocking, false otherwise
      */
     public boolean canThreadProceed(ThreadToken token) {
+        return canThreadProceed(snapshot(), token);
+    }
+
+    /**
+     * Check if a thread with the given token could make progress in the
+     * given snapshot. Evaluating several tokens against one snapshot gives
+     * a view of the mine that really existed, unlike asking each Location
+     * in turn.
+     * 
+     * @param snapshot The mine state to evaluate against
+     * @param token The token identifying the thread to check
+     * @return true if the thread can proceed without blocking, false otherwise
+     */
+    public boolean canThreadProceed(MineSnapshot snapshot, ThreadToken token) {
         if (token == null) return false;
 
         ThreadToken.Role role = token.getRole();
@@ -214,32 +307,32 @@ public class MineSimulation {
 
         switch (role) {
             case PRODUCER:
-                return producer.canProceed();
+                return snapshot.canArrive();
             
             case CONSUMER:
-                return consumer.canProceed();
+                return snapshot.canDepart();
             
             case OPERATOR:
-                return operator.canProceed();
+                return snapshot.canOperateEmpty();
             
             case MINER:
                 if (instanceId >= 0 && instanceId < miners.length) {
-                    return miners[instanceId].canProceed();
+                    return snapshot.canDepositGem(miners[instanceId].getStation().getId());
                 }
                 break;
             
             case ENGINE:
                 // Check inter-station engines
                 if (instanceId >= 0 && instanceId < engines.length) {
-                    return engines[instanceId].canProceed();
+                    return canEngineProceed(snapshot, engines[instanceId], instanceId);
                 }
                 // Check first engine (elevator to station[0])
                 else if (instanceId == engines.length) {
-                    return firstEngine.canProceed();
+                    return canEngineProceed(snapshot, firstEngine, instanceId);
                 }
                 // Check last engine (station[n-1] to elevator)
                 else if (instanceId == engines.length + 1) {
-                    return lastEngine.canProceed();
+                    return canEngineProceed(snapshot, lastEngine, instanceId);
                 }
                 break;
             
@@ -256,17 +349,29 @@ public class MineSimulation {
         return false;
     }
 
+    // Same decision as Engine.canProceed(), against the snapshot
+    private static boolean canEngineProceed(MineSnapshot snapshot, Engine engine, int slot) {
+        if (!snapshot.engineInMid(slot)) {
+            Location origin = engine.getOrigin();
+            return origin instanceof Station s ? snapshot.canCollect(s.getId()) : snapshot.canCollectFromBottom();
+        }
+        Destination destination = engine.getDestination();
+        return destination instanceof Station s ? snapshot.canDeliver(s.getId()) : snapshot.canDeliverToBottom();
+    }
+
 
     /**
-     * Returns all tokens that can currently make progress.
+     * Returns all tokens that can currently make progress, in token order.
+     * Prefer {@link #getReadySet()} in loops; this builds a list.
      */
     public List<ThreadToken> getProceedableTokens() {
-        List<ThreadToken> ready = new ArrayList<>();
-        for (ThreadToken token : this.registry.getAllTokens()) {
-            if (canThreadProceed(token)) {
-                ready.add(token);
+        long[] ready = readySet.bits();
+        List<ThreadToken> list = new ArrayList<>(ReadySet.count(ready));
+        for (int w = 0; w < ready.length; w++) {
+            for (long m = ready[w]; m != 0; m &= m - 1) {
+                list.add(tokens.get(w * Long.SIZE + Long.numberOfTrailingZeros(m)));
             }
         }
-        return ready;
+        return list;
     }
 }
@@ -0,0 +1,332 @@
+package mine.fuzzing;
+
+import mine.Carts;
+import mine.Station;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One {@link MineSimulation} reused across fuzz inputs.
+ *
+ * Building a simulation per input starts eleven platform threads and joins
+ * them again, which costs far more than the input itself. Here the role
+ * threads are started once and parked at the start of their loop between
+ * inputs; the Stations, Elevator and cart numbering are reset in place.
+ *
+ * While an input runs this is the installed controller and forwards every
+ * hook to that input's controller. To end an input, {@link #reset()} makes
+ * every role give up its iteration and park, holding no cart and no lock:
+ * <ul>
+ *   <li>a role reaching a hook parks (loop start) or gives up the operation
+ *       (before an operation), so no new operation starts;</li>
+ *   <li>once the operations already granted have completed or blocked, roles
+ *       held by the input's controller or waiting inside a Location are
+ *       interrupted. Nothing can wake them any more, so the interrupt always
+ *       lands in the blocking call, and the roles' interrupt hook asks this
+ *       controller, which rewinds them instead of stopping them.</li>
+ * </ul>
+ * A role is never interrupted while it runs: an interrupt landing after its
+ * last blocking call would end its loop for good.
+ *
+ * Nothing may leak from one input into the next: after each reset every role
+ * must have parked and the mine must be in the exact state it started in,
+ * otherwise {@link #reset()} fails and the mine must be discarded.
+ */
+public class PersistentMine implements TokenController, AutoCloseable {
+
+    // How long granted operations get to finish, and roles to park
+    private static final long SETTLE_TIMEOUT_MS = 5000;
+
+    // Where each role is, as far as the hooks can tell
+    private static final int RUNNING = 0;    // between hooks, or sleeping
+    private static final int GATED = 1;      // held by the input's controller
+    private static final int OPERATING = 2;  // performing, or blocked in, an operation
+    private static final int PARKED = 3;
+
+    private final MineSimulation sim = new MineSimulation();
+    private final ThreadTokenRegistry registry = new ThreadTokenRegistry();
+    private final MineSnapshot initial;
+
+    private volatile TokenController delegate = new NoOpTokenController();
+
+    // Guarded by this
+    private final int[] phase;
+    private boolean parking = true;
+    private boolean closed = false;
+    private long epoch = 0;
+    private int parked = 0;
+    private long inputs = 0;
+
+    /**
+     * Start the role threads and wait for all of them to park.
+     *
+     * @throws IllegalStateException if a role does not park
+     */
+    public PersistentMine() throws InterruptedException {
+        // Indexed by the registry's token index
+        phase = new int[sim.getTokens().size()];
+        for (Thread t : sim.getAllThreads()) {
+            // Parked roles must not keep the fuzzer's JVM alive
+            t.setDaemon(true);
+        }
+        install();
+        sim.startAllRemaining();
+        awaitParked();
+        TokenControllerProvider.reset();
+        Carts.reset();
+        initial = freshSnapshot();
+    }
+
+    public MineSimulation getSimulation() {
+        return sim;
+    }
+
+    /**
+     * The registry of the role threads; the same for every input.
+     */
+    public ThreadTokenRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @return Number of inputs run so far
+     */
+    public synchronized long getInputs() {
+        return inputs;
+    }
+
+    /**
+     * Install fresh fuzzing infrastructure and let the parked roles run.
+     *
+     * @param controller The input's controller, which receives every hook.
+     *        If it blocks a role, it must leave the role's interrupt pending.
+     */
+    public void begin(TokenController controller) {
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Persistent mine is closed");
+            }
+            if (!parking) {
+                throw new IllegalStateException("Input already running; reset() first");
+            }
+        }
+        delegate = controller;
+        install();
+
+        synchronized (this) {
+            inputs++;
+            epoch++;
+            parking = false;
+            notifyAll();
+            // Roles still leaving their park would count towards the next reset
+            while (parked > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // A new board, stall detector and ready set, with this as the controller
+    private void install() {
+        TokenControllerProvider.reset();
+        TokenControllerProvider.setRegistry(registry);
+        sim.registerThreadTokens(registry);
+        TokenControllerProvider.setController(this);
+    }
+
+    /**
+     * End the current input: rewind every role to a parked state, reset the
+     * Locations in place and check that no state leaked.
+     *
+     * @throws IllegalStateException if a role died or did not park, or the
+     *         mine is not in its initial state afterwards
+     */
+    public void reset() throws InterruptedException {
+        synchronized (this) {
+            parking = true;
+            awaitSettled();
+            for (Thread t : sim.getAllThreads()) {
+                int p = phase[slot(((TokenHolder) t).getToken())];
+                if (p == GATED || p == OPERATING) {
+                    t.interrupt();
+                }
+            }
+            awaitParked();
+        }
+
+        // No role runs now: everything below is invisible to them
+        delegate = new NoOpTokenController();
+        TokenControllerProvider.reset();
+        for (Station s : sim.getStations()) {
+            s.reset();
+        }
+        sim.getElevator().reset();
+        Carts.reset();
+
+        List<String> leaks = new ArrayList<>();
+        MineSnapshot state = freshSnapshot();
+        if (!state.equals(initial)) {
+            leaks.add("mine is " + state + ", expected " + initial);
+        }
+        if (!"top".equals(sim.getElevator().getPosition())) {
+            leaks.add("elevator position is " + sim.getElevator().getPosition());
+        }
+        for (Thread t : sim.getAllThreads()) {
+            if (t.isInterrupted()) {
+                leaks.add(((TokenHolder) t).getToken() + " is still interrupted");
+            }
+        }
+        if (!leaks.isEmpty()) {
+            throw new IllegalStateException("State leaked across inputs: " + String.join("; ", leaks));
+        }
+    }
+
+    // Wait until no operation is in flight: every operating role is blocked
+    // in a Location, where only another operation could wake it
+    private synchronized void awaitSettled() throws InterruptedException {
+        StallDetector detector = TokenControllerProvider.getStallDetector();
+        long deadline = System.currentTimeMillis() + SETTLE_TIMEOUT_MS;
+        while (true) {
+            ThreadToken busy = null;
+            for (int i = 0; i < phase.length; i++) {
+                if (phase[i] == OPERATING && !detector.isBlocked(registry.getTokenAt(i))) {
+                    busy = registry.getTokenAt(i);
+                }
+            }
+            if (busy == null) {
+                return;
+            }
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                throw new IllegalStateException(busy + " did not finish its operation");
+            }
+            // Blocking in a Location does not go through the hooks; poll
+            wait(Math.min(left, 10));
+        }
+    }
+
+    private synchronized void awaitParked() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + SETTLE_TIMEOUT_MS;
+        while (parked < phase.length) {
+            for (Thread t : sim.getAllThreads()) {
+                if (!t.isAlive()) {
+                    throw new IllegalStateException(((TokenHolder) t).getToken() + " stopped instead of parking");
+                }
+            }
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                throw new IllegalStateException("Only " + parked + " of " + phase.length + " roles parked");
+            }
+            wait(Math.min(left, 100));
+        }
+    }
+
+    // Read the Locations through a board of our own, not the provider's
+    private MineSnapshot freshSnapshot() {
+        Station[] stations = sim.getStations();
+        StateBoard board = new StateBoard();
+        board.attach(stations, sim.getElevator(), phase.length - 3 - stations.length);
+        return board.snapshot();
+    }
+
+    private int slot(ThreadToken token) {
+        int i = registry.indexOf(token);
+        if (i < 0 || i >= phase.length) {
+            throw new IllegalArgumentException("Not a role of this mine: " + token);
+        }
+        return i;
+    }
+
+    /**
+     * Stop the role threads for good. If interrupted while waiting for them
+     * to stop, returns with the interrupt status set.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        delegate = new NoOpTokenController();
+        try {
+            sim.stopAll();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            TokenControllerProvider.reset();
+        }
+    }
+
+    @Override
+    public void onLoopIteration(ThreadToken token) {
+        int i = slot(token);
+        synchronized (this) {
+            if (parking && !closed) {
+                phase[i] = PARKED;
+                parked++;
+                notifyAll();
+                long e = epoch;
+                while (epoch == e && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ignored) {
+                        // Interrupted by close(), checked below
+                    }
+                }
+                parked--;
+                notifyAll();
+            }
+            phase[i] = RUNNING;
+            if (closed) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        delegate.onLoopIteration(token);
+    }
+
+    @Override
+    public void beforeOperation(ThreadToken token, Operation operation) {
+        int i = slot(token);
+        synchronized (this) {
+            if (parking || closed) {
+                // Give the operation up: TokenHooks throws the interrupt
+                Thread.currentThread().interrupt();
+                return;
+            }
+            phase[i] = GATED;
+        }
+        try {
+            delegate.beforeOperation(token, operation);
+        } finally {
+            synchronized (this) {
+                if (parking || closed) {
+                    Thread.currentThread().interrupt();
+                }
+                phase[i] = Thread.currentThread().isInterrupted() ? RUNNING : OPERATING;
+            }
+        }
+    }
+
+    @Override
+    public void afterOperation(ThreadToken token, Operation operation) {
+        delegate.afterOperation(token, operation);
+        int i = slot(token);
+        synchronized (this) {
+            phase[i] = RUNNING;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public synchronized boolean onInterrupted(ThreadToken token) {
+        phase[slot(token)] = RUNNING;
+        // Interrupted by reset(): start over and park; otherwise stop
+        return parking && !closed;
+    }
+}
@@ -0,0 +1,117 @@
+package mine.fuzzing;
+
+import mine.Cart;
+import mine.Params;
+import mine.PauseProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for reusing one simulation, and its threads, across fuzz inputs.
+ */
+public class PersistentMineTest {
+
+    private PersistentMine mine;
+
+    @BeforeEach
+    public void setup() throws InterruptedException {
+        Params.setPauseProvider(new PauseProvider() {
+            public long arrivalPause() { return 0; }
+            public long departurePause() { return 0; }
+            public long operatorPause() { return 0; }
+            public long minerPause() { return 0; }
+            public long miningTime() { return 0; }
+            public long elevatorTime() { return 0; }
+            public long engineTime() { return 0; }
+        });
+        mine = new PersistentMine();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        mine.close();
+        Params.resetPauseProvider();
+        TokenControllerProvider.reset();
+    }
+
+    // Random ready roles; the state after each operation
+    private List<MineSnapshot> run(long seed, int steps) throws InterruptedException {
+        Gates gates = new Gates();
+        mine.begin(gates);
+        MineSimulation sim = mine.getSimulation();
+        Random random = new Random(seed);
+        List<MineSnapshot> states = new ArrayList<>();
+        for (int i = 0; i < steps; i++) {
+            long[] ready = sim.getReadySet().bits();
+            gates.step(sim.getReadySet().select(ready, random.nextInt(ReadySet.count(ready))));
+            states.add(sim.snapshot());
+        }
+        return states;
+    }
+
+    @Test
+    public void testSameInputGivesSameRunAfterReset() throws InterruptedException {
+        Thread[] threads = mine.getSimulation().getAllThreads().clone();
+
+        List<MineSnapshot> first = run(3, 20);
+        mine.reset();
+        run(5, 15);
+        mine.reset();
+        List<MineSnapshot> again = run(3, 20);
+        mine.reset();
+
+        assertEquals(first, again, "An earlier input leaked into a later one");
+        assertEquals(1, Cart.getNewCart().getId(), "Carts are numbered afresh for each input");
+        assertEquals(3, mine.getInputs());
+        for (int i = 0; i < threads.length; i++) {
+            assertSame(threads[i], mine.getSimulation().getAllThreads()[i]);
+            assertTrue(threads[i].isAlive(), threads[i] + " should still be running");
+        }
+    }
+
+    @Test
+    public void testResetRewindsCarryingAndWaitingRoles() throws InterruptedException {
+        Gates gates = new Gates();
+        mine.begin(gates);
+        MineSimulation sim = mine.getSimulation();
+        List<ThreadToken> tokens = sim.getTokens();
+        ThreadToken producer = tokens.get(0);
+        ThreadToken consumer = tokens.get(1);
+        ThreadToken firstEngine = tokens.get(tokens.size() - 2);
+
+        gates.step(producer);
+        gates.step(firstEngine);
+        // Nothing to depart: the consumer waits inside the elevator
+        gates.grant(consumer);
+        assertTrue(sim.snapshot().engineInMid(Params.STATIONS - 1));
+
+        mine.reset();
+
+        // Back to the start: the first engine collects again, not delivers
+        Gates next = new Gates();
+        mine.begin(next);
+        assertFalse(sim.snapshot().engineInMid(Params.STATIONS - 1));
+        assertEquals(0b101, sim.getReadySet().bits()[0] & 0b111, "Only the producer and operator can start");
+        next.step(producer);
+        next.step(firstEngine);
+        assertTrue(sim.snapshot().engineInMid(Params.STATIONS - 1));
+        assertFalse(sim.snapshot().canArrive());
+    }
+
+    @Test
+    public void testCloseStopsRoles() throws InterruptedException {
+        run(1, 5);
+        mine.close();
+        for (Thread t : mine.getSimulation().getAllThreads()) {
+            assertFalse(t.isAlive(), t + " should have stopped");
+        }
+        assertThrows(IllegalStateException.class, () -> mine.begin(new Gates()));
+    }
+}
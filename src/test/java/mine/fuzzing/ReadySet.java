@@ -0,0 +1,162 @@
+package mine.fuzzing;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+/**
+ * Bitset of the roles that can currently proceed, kept up to date from
+ * Location transitions instead of being recomputed by polling every role.
+ *
+ * Each Location knows the roles whose next operation reads it (the elevator's
+ * producer, consumer and operator and the engines ending there; a station's
+ * miner and the engines ending there). After a transition only those roles
+ * are re-evaluated, against a fresh {@link MineSnapshot}. Refreshes are
+ * serialized, so the bits always come from the newest snapshot taken.
+ *
+ * Bit i stands for the i-th token in {@link MineSimulation#getTokens()}, bit
+ * {@code i % 64} of word {@code i / 64}, so a mine may have any number of
+ * roles.
+ */
+public class ReadySet implements StateBoard.TransitionListener {
+
+    private final StateBoard board;
+    private final ThreadToken[] tokens;
+    private final Map<Object, long[]> dependents;
+    private final BiPredicate<MineSnapshot, ThreadToken> canProceed;
+
+    // replaced on each refresh, never modified once published
+    private volatile long[] bits;
+
+    /**
+     * @param board Source of snapshots and transitions
+     * @param tokens The roles, in bit order
+     * @param dependents For each Location, the mask of roles reading it, in
+     *        {@link #words(int)} words
+     * @param canProceed Whether a role can proceed in a snapshot
+     */
+    public ReadySet(StateBoard board, ThreadToken[] tokens, Map<Object, long[]> dependents,
+                    BiPredicate<MineSnapshot, ThreadToken> canProceed) {
+        this.board = board;
+        this.tokens = tokens.clone();
+        this.dependents = new IdentityHashMap<>(dependents);
+        this.canProceed = canProceed;
+        this.bits = new long[words(tokens.length)];
+        long[] all = new long[bits.length];
+        for (int i = 0; i < tokens.length; i++) {
+            all[i >>> 6] |= 1L << i;
+        }
+        refresh(all);
+    }
+
+    /**
+     * @return Number of words in a set of the given number of roles
+     */
+    public static int words(int roles) {
+        return Math.max(1, (roles + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    /**
+     * Start following the board's transitions.
+     */
+    public void install() {
+        board.addListener(this);
+    }
+
+    @Override
+    public void onTransition(ThreadToken token, Operation operation, Object location, int locationState) {
+        long[] mask = dependents.get(location);
+        if (mask != null) {
+            refresh(mask);
+        }
+    }
+
+    // Re-evaluate the masked roles against a snapshot taken now
+    private synchronized void refresh(long[] mask) {
+        MineSnapshot snapshot = board.snapshot();
+        long[] updated = bits.clone();
+        for (int w = 0; w < mask.length; w++) {
+            updated[w] &= ~mask[w];
+            for (long m = mask[w]; m != 0; m &= m - 1) {
+                int i = w * Long.SIZE + Long.numberOfTrailingZeros(m);
+                if (canProceed.test(snapshot, tokens[i])) {
+                    updated[w] |= 1L << i;
+                }
+            }
+        }
+        bits = updated;
+    }
+
+    /**
+     * @return Bit i of word i / 64 set if the i-th role can proceed; a
+     *         snapshot, never modified, that callers must not modify either
+     */
+    public long[] bits() {
+        return bits;
+    }
+
+    /**
+     * @return Whether the i-th role can proceed
+     */
+    public boolean isReady(int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * @return Number of roles that can proceed
+     */
+    public int size() {
+        return count(bits);
+    }
+
+    /**
+     * @return Number of set bits in the words
+     */
+    public static int count(long[] words) {
+        int n = 0;
+        for (long w : words) {
+            n += Long.bitCount(w);
+        }
+        return n;
+    }
+
+    /**
+     * Select among the roles that can proceed.
+     *
+     * @param ready A value of {@link #bits()}
+     * @param n Index among its set bits, from 0 to {@code count(ready) - 1}
+     * @return The n-th ready role's token
+     */
+    public ThreadToken select(long[] ready, int n) {
+        return tokens[nthSetBit(ready, n)];
+    }
+
+    /**
+     * @return Position of the n-th (from 0) set bit of the words, skipping
+     *         whole words by their bit count
+     */
+    public static int nthSetBit(long[] words, int n) {
+        int left = n;
+        for (int w = 0; w < words.length; w++) {
+            int c = Long.bitCount(words[w]);
+            if (left < c) {
+                return w * Long.SIZE + nthSetBit(words[w], left);
+            }
+            left -= c;
+        }
+        throw new IndexOutOfBoundsException("No set bit " + n);
+    }
+
+    /**
+     * @return Position of the n-th (from 0) set bit of {@code bits}
+     */
+    public static int nthSetBit(long bits, int n) {
+        for (int i = 0; i < n; i++) {
+            bits &= bits - 1;
+        }
+        if (bits == 0) {
+            throw new IndexOutOfBoundsException("No set bit " + n);
+        }
+        return Long.numberOfTrailingZeros(bits);
+    }
+}
@@ -0,0 +1,159 @@
+package mine.fuzzing;
+
+import mine.Cart;
+import mine.Elevator;
+import mine.Location;
+import mine.Station;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the incrementally maintained set of proceedable roles.
+ */
+public class ReadySetTest {
+
+    @AfterEach
+    public void cleanup() {
+        TokenControllerProvider.reset();
+    }
+
+    @Test
+    public void testNthSetBit() {
+        long bits = 0b1010_0110L;
+        assertEquals(1, ReadySet.nthSetBit(bits, 0));
+        assertEquals(2, ReadySet.nthSetBit(bits, 1));
+        assertEquals(5, ReadySet.nthSetBit(bits, 2));
+        assertEquals(7, ReadySet.nthSetBit(bits, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> ReadySet.nthSetBit(bits, 4));
+
+        long[] words = {0b10L, 0, 1L << 63 | 1L};
+        assertEquals(1, ReadySet.nthSetBit(words, 0));
+        assertEquals(128, ReadySet.nthSetBit(words, 1));
+        assertEquals(191, ReadySet.nthSetBit(words, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> ReadySet.nthSetBit(words, 3));
+    }
+
+    @Test
+    public void testMoreThan64Roles() {
+        StateBoard board = new StateBoard();
+        board.attach(new Station[] {new Station(0)}, new Elevator(), 2);
+        ThreadToken[] tokens = new ThreadToken[100];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = new ThreadToken(ThreadToken.Role.MINER, i);
+        }
+        boolean[] can = new boolean[tokens.length];
+        can[3] = can[70] = can[99] = true;
+        Object location = new Object();
+        long[] everyRole = {-1L, (1L << 36) - 1};
+        ReadySet set = new ReadySet(board, tokens, Map.of(location, everyRole),
+                (snapshot, token) -> can[token.getInstanceId()]);
+
+        assertEquals(3, set.size());
+        assertSame(tokens[3], set.select(set.bits(), 0));
+        assertSame(tokens[70], set.select(set.bits(), 1));
+        assertSame(tokens[99], set.select(set.bits(), 2));
+
+        long[] before = set.bits();
+        can[70] = false;
+        set.onTransition(null, Operation.STATION_COLLECT, location, 0);
+        assertFalse(set.isReady(70));
+        assertEquals(2, set.size());
+        assertEquals(3, ReadySet.count(before), "A value of bits() is never modified");
+    }
+
+    @Test
+    public void testInitialReadyRoles() {
+        MineSimulation sim = new MineSimulation();
+        sim.registerThreadTokens(new ThreadTokenRegistry());
+
+        // Empty mine: producer, operator and every miner can go
+        assertEquals(sim.getProceedableTokens().size(), sim.getReadySet().size());
+        for (ThreadToken token : sim.getProceedableTokens()) {
+            assertTrue(sim.canThreadProceed(token), token + " is not ready");
+        }
+        assertTrue(sim.getProceedableTokens().contains(new ThreadToken(ThreadToken.Role.PRODUCER, 0)));
+        assertFalse(sim.getProceedableTokens().contains(new ThreadToken(ThreadToken.Role.CONSUMER, 0)));
+    }
+
+    @Test
+    public void testBitsFollowTransitions() throws InterruptedException {
+        MineSimulation sim = new MineSimulation();
+        ThreadTokenRegistry registry = new ThreadTokenRegistry();
+        sim.registerThreadTokens(registry);
+        TokenControllerProvider.setRegistry(registry);
+        Station[] stations = sim.getStations();
+        Elevator elevator = sim.getElevator();
+        int n = stations.length;
+
+        // The test thread performs each role's operation in turn
+        VirtualMine mine = new VirtualMine(n);
+        Cart[] held = new Cart[n + 1];
+        Random random = new Random(3);
+        for (int i = 0; i < 500; i++) {
+            assertArrayEquals(new long[] {mine.readyBits()}, sim.getReadySet().bits(), "Ready set diverged at step " + i);
+            if (mine.isStalled()) {
+                break;
+            }
+            int role = ReadySet.nthSetBit(mine.readyBits(), random.nextInt(Long.bitCount(mine.readyBits())));
+            mine.step(role);
+
+            ThreadToken token = mine.token(role);
+            registry.register(Thread.currentThread(), token);
+            switch (token.getRole()) {
+                case PRODUCER -> elevator.arrive(Cart.getNewCart());
+                case CONSUMER -> elevator.depart();
+                case OPERATOR -> elevator.operateEmpty();
+                case MINER -> stations[token.getInstanceId()].depositGem();
+                default -> {
+                    int e = token.getInstanceId();
+                    Location origin = e < n - 1 ? stations[e] : e == n - 1 ? elevator : stations[n - 1];
+                    Location destination = e < n - 1 ? stations[e + 1] : e == n - 1 ? stations[0] : elevator;
+                    if (held[e] == null) {
+                        held[e] = origin.collect();
+                    } else {
+                        destination.deliver(held[e]);
+                        held[e] = null;
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOperationCompletedInsideAnotherIsFollowed() throws InterruptedException {
+        MineSimulation sim = new MineSimulation();
+        sim.registerThreadTokens(new ThreadTokenRegistry());
+        Elevator elevator = sim.getElevator();
+        List<ThreadToken> tokens = sim.getTokens();
+        int consumer = tokens.indexOf(new ThreadToken(ThreadToken.Role.CONSUMER, 0));
+
+        // A delivery waiting for the car at the bottom, made while the
+        // operator brings it down, and sending it back up
+        CompletableFuture<Void> delivered = elevator.deliverAsync(Cart.getNewCart());
+        assertFalse(delivered.isDone());
+        Thread operator = new Thread(() -> {
+            try {
+                elevator.operateEmpty();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        operator.setDaemon(true);
+        operator.start();
+        operator.join(5000);
+        assertFalse(operator.isAlive(), "Refreshing inside the operator's transition never returned");
+
+        // completed asynchronously, once performed
+        assertDoesNotThrow(() -> delivered.get(5, TimeUnit.SECONDS));
+        assertTrue(sim.getReadySet().isReady(consumer), "The consumer can take the cart");
+        assertEquals(sim.getProceedableTokens().size(), sim.getReadySet().size());
+    }
+}
@@ -0,0 +1,304 @@
+package mine.fuzzing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shrinks saved fuzz artifacts to the shortest operation schedule that
+ * still stalls the mine.
+ *
+ * Each input is decoded into a {@link FuzzSchedule} and replayed on a
+ * {@link VirtualMine}, so a reproduction takes microseconds instead of the
+ * target's real threads, fuzzed pauses and {@code MAX_RUN_MS}. The schedule is
+ * cut at its first global stall and then delta-debugged (ddmin); all
+ * candidate subsets of one round are replayed in parallel.
+ *
+ * The VirtualMine is only a model, so the minimized operations are then
+ * replayed on the real Locations through a {@link MineReplay}, and an input
+ * is written only if they reach the stall the model predicts. The pauses are
+ * delta-debugged there too, a position of all four sequences at a time,
+ * keeping only those the stall still needs. Controller delays cannot change
+ * the order of operations under gating, so they are dropped.
+ *
+ * <pre>
+ * java -cp "target/test-classes:target/classes" mine.fuzzing.ScheduleMinimizer \
+ *   [-o target/minimized] [file-or-dir ...]
+ * </pre>
+ * Defaults to {@code test-artifacts/crashes} and {@code test-artifacts/timeouts}.
+ * Each stalling input is written, minimized, to the output directory as a
+ * Jazzer input that reproduces the same stall.
+ */
+public class ScheduleMinimizer implements AutoCloseable {
+
+    private final ExecutorService pool;
+    private final int threads;
+    private final AtomicLong replays = new AtomicLong();
+
+    public ScheduleMinimizer(int threads) {
+        this.threads = threads;
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "minimizer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * @return True if replaying the operations leaves no role able to proceed
+     */
+    public boolean stalls(int[] steps) {
+        replays.incrementAndGet();
+        return FuzzSchedule.replay(steps).isStalled();
+    }
+
+    /**
+     * @return Number of replays run so far
+     */
+    public long getReplays() {
+        return replays.get();
+    }
+
+    /**
+     * @return Length of the shortest prefix that stalls, or -1 if none does
+     */
+    public static int stallPoint(int[] steps) {
+        VirtualMine mine = new VirtualMine();
+        if (mine.isStalled()) {
+            return 0;
+        }
+        for (int i = 0; i < steps.length; i++) {
+            if (mine.step(steps[i]) && mine.isStalled()) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Minimize a stalling schedule: the result stalls, and removing any one
+     * of its operations makes it stop stalling.
+     *
+     * @param steps Operations that reach a global stall
+     * @return A 1-minimal stalling subsequence
+     */
+    public int[] minimize(int[] steps) throws InterruptedException {
+        int point = stallPoint(steps);
+        if (point < 0) {
+            throw new IllegalArgumentException("Schedule does not stall");
+        }
+        return ddmin(Arrays.copyOf(steps, point), this::firstStalling);
+    }
+
+    /**
+     * Minimize the pauses a schedule stalls with on the real mine: the
+     * result reaches the same stall, and removing any one position of the
+     * pause sequences makes it stop doing so.
+     *
+     * @param replay Mine to replay on
+     * @param pauses Arrival, departure, operator and miner pauses, all of the
+     *        same length
+     * @param steps Operations that reach a global stall
+     * @param stall Signature of that stall on the real mine
+     * @return 1-minimal pauses, at least one position long
+     */
+    public static long[][] minimizePauses(MineReplay replay, long[][] pauses, int[] steps,
+                                          StallSignature stall) throws InterruptedException {
+        int[] positions = new int[pauses[0].length];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = i;
+        }
+        // One replay at a time: the real mine is global
+        int[] kept = ddmin(positions, candidates -> {
+            for (int i = 0; i < candidates.length; i++) {
+                if (stall.equals(replay.stall(select(pauses, candidates[i]), steps))) {
+                    return i;
+                }
+            }
+            return -1;
+        });
+        return select(pauses, kept);
+    }
+
+    // The given positions of each pause sequence
+    private static long[][] select(long[][] pauses, int[] positions) {
+        long[][] out = new long[pauses.length][positions.length];
+        for (int s = 0; s < pauses.length; s++) {
+            for (int i = 0; i < positions.length; i++) {
+                out[s][i] = pauses[s][positions[i]];
+            }
+        }
+        return out;
+    }
+
+    // Finds the first candidate that still fails, or -1
+    private interface Search {
+        int first(int[][] candidates) throws InterruptedException;
+    }
+
+    // Delta debugging, keeping at least one element
+    private static int[] ddmin(int[] current, Search search) throws InterruptedException {
+        int n = 2;
+        while (current.length >= 2) {
+            int[][] candidates = candidates(current, n);
+            int found = search.first(candidates);
+            if (found >= 0) {
+                current = candidates[found];
+                // Reduced to a subset: restart; to a complement: keep granularity
+                n = found < n ? 2 : Math.max(n - 1, 2);
+                continue;
+            }
+            if (n >= current.length) {
+                break;
+            }
+            n = Math.min(current.length, 2 * n);
+        }
+        return current;
+    }
+
+    // The n chunks, then (for n > 2) their n complements
+    private static int[][] candidates(int[] steps, int n) {
+        int[][] out = new int[n > 2 ? 2 * n : n][];
+        for (int i = 0; i < n; i++) {
+            int from = i * steps.length / n;
+            int to = (i + 1) * steps.length / n;
+            out[i] = Arrays.copyOfRange(steps, from, to);
+            if (n > 2) {
+                int[] rest = new int[steps.length - (to - from)];
+                System.arraycopy(steps, 0, rest, 0, from);
+                System.arraycopy(steps, to, rest, from, steps.length - to);
+                out[n + i] = rest;
+            }
+        }
+        return out;
+    }
+
+    // Replays all candidates in parallel; lowest index wins, for determinism
+    private int firstStalling(int[][] candidates) throws InterruptedException {
+        List<Callable<Boolean>> tasks = new ArrayList<>(candidates.length);
+        for (int[] c : candidates) {
+            tasks.add(() -> stalls(c));
+        }
+        List<Future<Boolean>> results = pool.invokeAll(tasks);
+        for (int i = 0; i < results.size(); i++) {
+            try {
+                if (results.get(i).get()) {
+                    return i;
+                }
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Replay failed", e.getCause());
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path outDir = Path.of("target", "minimized");
+        List<File> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-o".equals(args[i]) && i + 1 < args.length) {
+                outDir = Path.of(args[++i]);
+            } else {
+                collect(new File(args[i]), inputs);
+            }
+        }
+        if (args.length == 0 || inputs.isEmpty()) {
+            collect(new File("test-artifacts/crashes"), inputs);
+            collect(new File("test-artifacts/timeouts"), inputs);
+        }
+        Files.createDirectories(outDir);
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        try (ScheduleMinimizer minimizer = new ScheduleMinimizer(threads);
+             MineReplay replay = new MineReplay()) {
+            for (File f : inputs) {
+                minimizeFile(minimizer, replay, f, outDir);
+            }
+        }
+    }
+
+    private static void minimizeFile(ScheduleMinimizer minimizer, MineReplay replay, File f, Path outDir)
+            throws IOException, InterruptedException {
+        byte[] input = Files.readAllBytes(f.toPath());
+        System.out.println("== " + f + " (" + input.length + " bytes)");
+
+        FuzzSchedule schedule = FuzzSchedule.decode(input);
+        if (schedule == null) {
+            System.out.println("   skipped by the target (shorter than " + FuzzSchedule.MIN_INPUT + " bytes)");
+            return;
+        }
+        int[] steps = schedule.getSteps();
+        int point = stallPoint(steps);
+        System.out.println("   decoded " + steps.length + " operations");
+        if (point < 0) {
+            System.out.println("   no global stall: " + FuzzSchedule.replay(steps).snapshot());
+            return;
+        }
+        System.out.println("   stalls after " + point + " operations");
+
+        long start = System.nanoTime();
+        long before = minimizer.getReplays();
+        int[] minimal = minimizer.minimize(steps);
+        long ms = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("   minimized to " + minimal.length + " operations in " + ms + " ms ("
+                + (minimizer.getReplays() - before) + " replays on " + minimizer.threads + " threads)");
+        VirtualMine model = FuzzSchedule.replay(minimal);
+        System.out.println("   stalled state: " + model.snapshot());
+
+        // The model's stall has to be the real mine's before anything is written
+        StallSignature predicted = StallSignature.of(model.stallReport(), model.snapshot());
+        long[][] pauses = schedule.getPauses();
+        StallSignature real = replay.stall(pauses, minimal);
+        if (!predicted.equals(real)) {
+            System.out.println("   the real mine disagrees with the model: " + (real == null
+                    ? "no global stall" : real) + " instead of " + predicted + "; not written");
+            return;
+        }
+
+        start = System.nanoTime();
+        before = replay.getReplays();
+        long[][] kept = minimizePauses(replay, pauses, minimal, real);
+        ms = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("   pauses minimized from " + pauses[0].length + " to " + kept[0].length
+                + " positions in " + ms + " ms (" + (replay.getReplays() - before) + " replays on the real mine)");
+
+        FuzzSchedule reduced = schedule.withSteps(minimal).withPauses(kept).withoutDelays();
+        System.out.println(reduced);
+
+        Path out = outDir.resolve(f.getName() + ".min");
+        Files.write(out, reduced.encode());
+        System.out.println("   written " + out);
+    }
+
+    static void collect(File f, List<File> out) {
+        if (f.isDirectory()) {
+            File[] children = f.listFiles();
+            if (children != null) {
+                Arrays.sort(children);
+                for (File c : children) {
+                    if (c.isFile()) {
+                        out.add(c);
+                    }
+                }
+            }
+        } else if (f.isFile()) {
+            out.add(f);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package mine.fuzzing;
+
+import mine.Cart;
+import mine.Elevator;
+import mine.Location;
+import mine.Params;
+import mine.Station;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for offline decoding, virtual replay and minimization of fuzz inputs.
+ */
+public class ScheduleMinimizerTest {
+
+    @AfterEach
+    public void cleanup() {
+        TokenControllerProvider.reset();
+    }
+
+    // Random operations, stopping at the first global stall
+    private static int[] randomSchedule(long seed, int max) {
+        Random random = new Random(seed);
+        VirtualMine mine = new VirtualMine();
+        int[] steps = new int[max];
+        int n = 0;
+        while (n < max && !mine.isStalled()) {
+            int role = random.nextInt(mine.roleCount());
+            if (mine.step(role)) {
+                steps[n++] = role;
+            }
+        }
+        return Arrays.copyOf(steps, n);
+    }
+
+    @Test
+    public void testFuzzBytesRoundTrip() {
+        byte[] input = new FuzzBytes.Builder()
+                .putInt(1, 64, 17)
+                .putLong(0, 800, 555)
+                .putInt(0, 11, 11)
+                .putLong(0, 100, 0)
+                .build(3);
+        assertEquals(3 + 1 + 2 + 1 + 1, input.length);
+
+        FuzzBytes data = new FuzzBytes(input);
+        assertEquals(17, data.consumeInt(1, 64));
+        assertEquals(555, data.consumeLong(0, 800));
+        assertEquals(11, data.consumeInt(0, 11));
+        assertEquals(0, data.consumeLong(0, 100));
+        assertEquals(3, data.remainingBytes());
+    }
+
+    @Test
+    public void testVirtualMineMatchesLocations() throws InterruptedException {
+        int n = Params.STATIONS;
+        Station[] stations = new Station[n];
+        for (int i = 0; i < n; i++) {
+            stations[i] = new Station(i);
+        }
+        Elevator elevator = new Elevator();
+        TokenControllerProvider.getStateBoard().attach(stations, elevator, n + 1);
+
+        VirtualMine mine = new VirtualMine();
+        Cart[] held = new Cart[n + 1];
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            int role = random.nextInt(mine.roleCount());
+            if (!mine.step(role)) {
+                continue;
+            }
+            ThreadToken token = mine.token(role);
+            TokenControllerProvider.getRegistry().register(Thread.currentThread(), token);
+            switch (token.getRole()) {
+                case PRODUCER -> elevator.arrive(Cart.getNewCart());
+                case CONSUMER -> elevator.depart();
+                case OPERATOR -> elevator.operateEmpty();
+                case MINER -> stations[token.getInstanceId()].depositGem();
+                default -> {
+                    int e = token.getInstanceId();
+                    Location origin = e < n - 1 ? stations[e] : e == n - 1 ? elevator : stations[n - 1];
+                    Location destination = e < n - 1 ? stations[e + 1] : e == n - 1 ? stations[0] : elevator;
+                    if (held[e] == null) {
+                        held[e] = origin.collect();
+                    } else {
+                        destination.deliver(held[e]);
+                        held[e] = null;
+                    }
+                }
+            }
+            assertEquals(mine.snapshot(), TokenControllerProvider.getStateBoard().snapshot(),
+                    "Model diverged after " + token);
+            assertEquals(mine.snapshot().fingerprint(), TokenControllerProvider.getStateBoard().fingerprint());
+        }
+    }
+
+    @Test
+    public void testMinimizedScheduleStillStallsAndIsMinimal() throws InterruptedException {
+        int[] steps = randomSchedule(7, 10_000);
+        assertTrue(ScheduleMinimizer.stallPoint(steps) > 0, "Random schedule should reach a stall");
+
+        try (ScheduleMinimizer minimizer = new ScheduleMinimizer(4)) {
+            int[] minimal = minimizer.minimize(steps);
+            assertTrue(minimizer.stalls(minimal));
+            assertTrue(minimal.length <= steps.length);
+            for (int i = 0; i < minimal.length; i++) {
+                int[] without = new int[minimal.length - 1];
+                System.arraycopy(minimal, 0, without, 0, i);
+                System.arraycopy(minimal, i + 1, without, i, minimal.length - i - 1);
+                assertFalse(minimizer.stalls(without), "Operation " + i + " is redundant");
+            }
+        }
+    }
+
+    @Test
+    public void testEncodedScheduleDecodesToSameStall() throws InterruptedException {
+        int[] steps = randomSchedule(11, 10_000);
+        int[] minimal;
+        try (ScheduleMinimizer minimizer = new ScheduleMinimizer(2)) {
+            minimal = minimizer.minimize(steps);
+        }
+        FuzzSchedule schedule = new FuzzSchedule(new long[4][1], 0, new long[6][10], minimal);
+
+        FuzzSchedule decoded = FuzzSchedule.decode(schedule.encode());
+        assertNotNull(decoded);
+        assertArrayEquals(minimal, decoded.getSteps(),
+                "After the stall the forced grants must not perform anything");
+
+        // Every role ends up waiting, which is what the StallDetector reports
+        VirtualMine mine = FuzzSchedule.replay(minimal);
+        for (int role = 0; role < mine.roleCount(); role++) {
+            mine.forceGrant(role);
+        }
+        for (int role = 0; role < mine.roleCount(); role++) {
+            assertTrue(mine.isWaiting(role), mine.token(role) + " should be waiting");
+        }
+    }
+
+    @Test
+    public void testMinimizedScheduleStallsTheRealMine() throws InterruptedException {
+        int[] minimal;
+        try (ScheduleMinimizer minimizer = new ScheduleMinimizer(2)) {
+            minimal = minimizer.minimize(randomSchedule(3, 10_000));
+        }
+        VirtualMine model = FuzzSchedule.replay(minimal);
+        StallSignature predicted = StallSignature.of(model.stallReport(), model.snapshot());
+        long[][] pauses = {
+            {1, 0, 2, 0, 1, 3},
+            {0, 2, 1, 1, 0, 2},
+            {2, 1, 0, 3, 1, 0},
+            {1, 1, 2, 0, 0, 1},
+        };
+
+        try (MineReplay replay = new MineReplay()) {
+            assertEquals(predicted, replay.stall(pauses, minimal), "The real mine reaches the modelled stall");
+
+            long[][] kept = ScheduleMinimizer.minimizePauses(replay, pauses, minimal, predicted);
+            assertEquals(1, kept[0].length, "Pauses do not change the order of gated operations");
+            for (long[] sequence : kept) {
+                assertEquals(kept[0].length, sequence.length);
+            }
+            assertEquals(predicted, replay.stall(kept, minimal));
+
+            FuzzSchedule reduced = new FuzzSchedule(pauses, 0, new long[6][10], minimal).withPauses(kept);
+            FuzzSchedule decoded = FuzzSchedule.decode(reduced.encode());
+            assertNotNull(decoded);
+            assertArrayEquals(kept[3], decoded.getPauses()[3]);
+            assertArrayEquals(minimal, decoded.getSteps());
+        }
+    }
+}
@@ -32,6 +32,16 @@ public class SequencePauseProvider implements PauseProvider {
         minerSeq = consumeArray(data, len, 0, Params.MAX_MINER_PAUSE);
     }
 
+    /**
+     * Pauses taken from the given sequences, each holding at least one pause.
+     */
+    public SequencePauseProvider(long[] arrivalSeq, long[] departureSeq, long[] operatorSeq, long[] minerSeq) {
+        this.arrivalSeq = arrivalSeq.clone();
+        this.departureSeq = departureSeq.clone();
+        this.operatorSeq = operatorSeq.clone();
+        this.minerSeq = minerSeq.clone();
+    }
+
     private long[] consumeArray(FuzzedDataProvider data, int len, int min, int max) {
         long[] res = new long[len];
         for (int i = 0; i < len; i++) {
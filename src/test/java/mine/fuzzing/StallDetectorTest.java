@@ -0,0 +1,96 @@
+package mine.fuzzing;
+
+import mine.Cart;
+import mine.Elevator;
+import mine.Station;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the event-driven StallDetector fed by Location waits.
+ */
+public class StallDetectorTest {
+
+    @AfterEach
+    public void cleanup() {
+        TokenControllerProvider.reset();
+    }
+
+    private static Thread role(ThreadToken token, ThrowingRunnable body) {
+        Thread t = new Thread(() -> {
+            try {
+                body.run();
+            } catch (InterruptedException ignored) {
+            }
+        }, token.getUniqueId());
+        TokenControllerProvider.getRegistry().register(t, token);
+        t.setDaemon(true);
+        return t;
+    }
+
+    private interface ThrowingRunnable {
+        void run() throws InterruptedException;
+    }
+
+    @Test
+    public void testFlagsStallWhenAllRolesWait() throws InterruptedException {
+        Station station = new Station(0);
+        Elevator elevator = new Elevator();
+        StallDetector detector = TokenControllerProvider.getStallDetector();
+        detector.arm(2);
+
+        Thread engine = role(new ThreadToken(ThreadToken.Role.ENGINE, 0), station::collect);
+        Thread consumer = role(new ThreadToken(ThreadToken.Role.CONSUMER, 0), elevator::depart);
+        engine.start();
+        consumer.start();
+
+        StallReport report = detector.awaitStall(5000);
+        assertNotNull(report, "Both roles wait forever, the stall must be flagged");
+        assertEquals(2, report.getEntries().size());
+
+        StallReport.Entry first = report.getEntries().get(0);
+        assertEquals(ThreadToken.Role.CONSUMER, first.getToken().getRole());
+        assertEquals("canDepart", first.getPredicate());
+        StallReport.Entry second = report.getEntries().get(1);
+        assertEquals("canCollect", second.getPredicate());
+        assertEquals("station 0", second.getLocation());
+
+        engine.interrupt();
+        consumer.interrupt();
+    }
+
+    @Test
+    public void testSignalledWaiterIsNotBlocked() throws InterruptedException {
+        Station station = new Station(0);
+        StallDetector detector = TokenControllerProvider.getStallDetector();
+        detector.arm(2);
+
+        Thread engine = role(new ThreadToken(ThreadToken.Role.ENGINE, 0), station::collect);
+        engine.start();
+        while (detector.getBlockedCount() < 1) {
+            Thread.sleep(1);
+        }
+
+        // A second role makes the collect possible, then blocks itself:
+        // whatever the interleaving, the third gem can never be deposited
+        Thread miner = role(new ThreadToken(ThreadToken.Role.MINER, 0), () -> {
+            station.deliver(Cart.getNewCart());
+            station.depositGem();
+            station.depositGem();
+            station.depositGem();
+        });
+        miner.start();
+        engine.join(5000);
+        while (detector.getBlockedCount() < 1) {
+            Thread.sleep(1);
+        }
+
+        assertFalse(engine.isAlive(), "Engine should have collected the cart");
+        assertNull(detector.awaitStall(100), "Only one role is blocked");
+        assertEquals(1, detector.getBlockedCount());
+
+        miner.interrupt();
+    }
+}
@@ -0,0 +1,58 @@
+package mine.fuzzing;
+
+import java.util.List;
+
+/**
+ * A liveness finding, deduplicated by its {@link StallSignature}.
+ *
+ * Jazzer buckets findings by the stack trace of the error thrown. A stall is
+ * always thrown from the same place, so every stall would land in one bucket
+ * and hide the others; this error's stack trace is made up from the
+ * signature instead, one frame per blocked role followed by the occupancy
+ * pattern. Findings with the same signature get the same trace and are
+ * reported once; different stalls get different ones.
+ */
+public class StallFinding extends AssertionError {
+
+    private static final long serialVersionUID = 1L;
+
+    private final StallSignature signature;
+
+    public StallFinding(String message, StallSignature signature) {
+        super(message + " [" + signature + "]");
+        this.signature = signature;
+        setStackTrace(frames(signature));
+    }
+
+    /**
+     * Fingerprint the roles blocked on the given detector and the state of
+     * the given board.
+     */
+    public static StallFinding of(String message, StallReport report, StateBoard board) {
+        MineSnapshot state;
+        try {
+            state = board.snapshot();
+        } catch (IllegalStateException e) {
+            // No mine attached to the board
+            state = null;
+        }
+        return new StallFinding(message + ": " + report, StallSignature.of(report, state));
+    }
+
+    public StallSignature getSignature() {
+        return signature;
+    }
+
+    // e.g. "at stall.ENGINE_2.canDeliver(station 3)", then "at stall.occupancy.<id>([C-|...])"
+    static StackTraceElement[] frames(StallSignature signature) {
+        List<StallReport.Entry> blocked = signature.getBlocked();
+        StackTraceElement[] frames = new StackTraceElement[blocked.size() + 1];
+        for (int i = 0; i < blocked.size(); i++) {
+            StallReport.Entry e = blocked.get(i);
+            frames[i] = new StackTraceElement("stall." + e.getToken(), e.getPredicate(), e.getLocation(), -1);
+        }
+        frames[blocked.size()] = new StackTraceElement("stall.occupancy", signature.getId(),
+                signature.getOccupancy(), -1);
+        return frames;
+    }
+}
@@ -0,0 +1,131 @@
+package mine.fuzzing;
+
+import mine.Params;
+import mine.PauseProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for fingerprinting stalls and deduplicating findings by them.
+ */
+public class StallSignatureTest {
+
+    @AfterEach
+    public void cleanup() {
+        Params.resetPauseProvider();
+        TokenControllerProvider.reset();
+    }
+
+    // Random ready roles until no role can proceed
+    private static VirtualMine randomStall(int stations, long seed) {
+        Random random = new Random(seed);
+        VirtualMine mine = new VirtualMine(stations);
+        while (!mine.isStalled()) {
+            mine.step(random.nextInt(mine.roleCount()));
+        }
+        return mine;
+    }
+
+    private static StallSignature signature(VirtualMine mine) {
+        return StallSignature.of(mine.stallReport(), mine.snapshot());
+    }
+
+    @Test
+    public void testSignatureDependsOnlyOnTheStall() {
+        Map<MineSnapshot, StallSignature> byState = new HashMap<>();
+        for (int stations = 2; stations <= 5; stations++) {
+            for (long seed = 0; seed < 50; seed++) {
+                VirtualMine mine = randomStall(stations, seed);
+                StallSignature signature = signature(mine);
+                assertEquals(mine.roleCount(), signature.getBlocked().size());
+
+                StallSignature seen = byState.putIfAbsent(mine.snapshot(), signature);
+                if (seen != null) {
+                    assertEquals(seen, signature, "Same stall, different schedule");
+                    assertEquals(seen.getId(), signature.getId());
+                }
+            }
+        }
+        assertTrue(byState.size() >= 4, "Each mine size should reach its own stall");
+        assertEquals(byState.size(), byState.values().stream().distinct().count(),
+                "Different stalls should have different signatures");
+    }
+
+    @Test
+    public void testPartialStallHasItsOwnSignature() {
+        VirtualMine mine = randomStall(Params.STATIONS, 3);
+        StallReport all = mine.stallReport();
+        StallReport some = new StallReport(all.getEntries().subList(0, 3));
+
+        StallSignature global = StallSignature.of(all, mine.snapshot());
+        StallSignature partial = StallSignature.of(some, mine.snapshot());
+        assertNotEquals(global, partial);
+        assertEquals(partial, StallSignature.of(new StallReport(all.getEntries().subList(0, 3)), mine.snapshot()));
+        assertNotEquals(partial, StallSignature.of(some, null), "Occupancy is part of the signature");
+    }
+
+    @Test
+    public void testFindingsWithTheSameSignatureShareAStackTrace() {
+        StallSignature a = signature(randomStall(Params.STATIONS, 1));
+        StallSignature b = signature(randomStall(Params.STATIONS - 1, 1));
+
+        assertEquals(a, signature(randomStall(Params.STATIONS, 2)));
+
+        StallFinding first = new StallFinding("Logical deadlock detected", a);
+        StallFinding again = new StallFinding("No progress for too long", a);
+        StallFinding other = new StallFinding("Logical deadlock detected", b);
+        assertArrayEquals(first.getStackTrace(), again.getStackTrace());
+        assertFalse(Arrays.equals(first.getStackTrace(), other.getStackTrace()));
+        assertTrue(first.getMessage().contains(a.getId()));
+        assertEquals("stall.PRODUCER_0", first.getStackTrace()[0].getClassName());
+        assertEquals("canArrive", first.getStackTrace()[0].getMethodName());
+    }
+
+    @Test
+    public void testDetectedStallMatchesVirtualMine() throws InterruptedException {
+        Params.setPauseProvider(new PauseProvider() {
+            public long arrivalPause() { return 0; }
+            public long departurePause() { return 0; }
+            public long operatorPause() { return 0; }
+            public long minerPause() { return 0; }
+            public long miningTime() { return 0; }
+            public long elevatorTime() { return 0; }
+            public long engineTime() { return 0; }
+        });
+        try (PersistentMine mine = new PersistentMine()) {
+            Gates gates = new Gates();
+            mine.begin(gates);
+            MineSimulation sim = mine.getSimulation();
+            List<ThreadToken> tokens = sim.getTokens();
+
+            // The same operations on the threads and on the model
+            VirtualMine model = new VirtualMine();
+            Random random = new Random(5);
+            long[] ready;
+            int count;
+            while ((count = ReadySet.count(ready = sim.getReadySet().bits())) != 0) {
+                ThreadToken token = sim.getReadySet().select(ready, random.nextInt(count));
+                assertTrue(model.step(tokens.indexOf(token)), "Model diverged at " + token);
+                gates.step(token);
+            }
+            assertTrue(model.isStalled());
+
+            for (ThreadToken token : tokens) {
+                gates.grant(token);
+            }
+            StallReport report = TokenControllerProvider.getStallDetector().awaitStall(5000);
+            assertNotNull(report, "Every role should end up waiting");
+            StallSignature detected = StallSignature.of(report, TokenControllerProvider.getStateBoard().snapshot());
+            assertEquals(signature(model), detected);
+            mine.reset();
+        }
+    }
+}
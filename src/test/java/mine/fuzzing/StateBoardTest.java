@@ -0,0 +1,157 @@
+package mine.fuzzing;
+
+import mine.Cart;
+import mine.Elevator;
+import mine.Station;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for consistent global snapshots taken through the StateBoard.
+ */
+public class StateBoardTest {
+
+    @AfterEach
+    public void cleanup() {
+        TokenControllerProvider.reset();
+    }
+
+    private static Thread role(ThreadToken token, ThrowingRunnable body) {
+        Thread t = new Thread(() -> {
+            try {
+                while (true) {
+                    body.run();
+                }
+            } catch (InterruptedException ignored) {
+            }
+        }, token.getUniqueId());
+        TokenControllerProvider.getRegistry().register(t, token);
+        t.setDaemon(true);
+        return t;
+    }
+
+    private interface ThrowingRunnable {
+        void run() throws InterruptedException;
+    }
+
+    @Test
+    public void testSnapshotTracksLocationsAndEngines() throws InterruptedException {
+        Station[] stations = { new Station(0), new Station(1) };
+        Elevator elevator = new Elevator();
+        StateBoard board = TokenControllerProvider.getStateBoard();
+        board.attach(stations, elevator, 2);
+        TokenControllerProvider.getRegistry().register(Thread.currentThread(),
+                new ThreadToken(ThreadToken.Role.ENGINE, 1));
+
+        MineSnapshot initial = board.snapshot();
+        assertEquals("[--|--] E[-^] M[00]", initial.toString());
+        assertTrue(initial.canArrive());
+
+        stations[0].deliver(Cart.getNewCart());
+        stations[0].depositGem();
+        MineSnapshot loaded = board.snapshot();
+        assertTrue(loaded.canCollect(0));
+        assertFalse(loaded.canDeliver(0));
+        assertTrue(loaded.getVersion() > initial.getVersion());
+
+        Cart cart = stations[0].collect();
+        MineSnapshot inTransit = board.snapshot();
+        assertTrue(inTransit.engineInMid(1), "The engine holds the cart it collected");
+        assertFalse(inTransit.engineInMid(0));
+        assertFalse(inTransit.stationHasCart(0));
+
+        stations[1].deliver(cart);
+        MineSnapshot delivered = board.snapshot();
+        assertEquals("[--|C-] E[-^] M[00]", delivered.toString());
+        assertNotEquals(initial, delivered);
+    }
+
+    @Test
+    public void testFingerprintIsKeptUpToDate() throws InterruptedException {
+        Station[] stations = { new Station(0), new Station(1) };
+        Elevator elevator = new Elevator();
+        StateBoard board = TokenControllerProvider.getStateBoard();
+        board.attach(stations, elevator, 2);
+        TokenControllerProvider.getRegistry().register(Thread.currentThread(),
+                new ThreadToken(ThreadToken.Role.ENGINE, 0));
+
+        long initial = board.fingerprint();
+        assertEquals(board.snapshot().fingerprint(), initial);
+
+        // Every transition, nested ones included, updates the hash
+        elevator.operateEmpty();
+        assertEquals(board.snapshot().fingerprint(), board.fingerprint());
+        assertNotEquals(initial, board.fingerprint());
+        elevator.operateEmpty();
+        assertEquals(initial, board.fingerprint(), "Back in the initial state");
+
+        stations[0].deliver(Cart.getNewCart());
+        stations[0].depositGem();
+        long loaded = board.fingerprint();
+        assertEquals(board.snapshot().fingerprint(), loaded);
+        Cart cart = stations[0].collect();
+        assertEquals(board.snapshot().fingerprint(), board.fingerprint(), "The engine's key is toggled");
+        stations[0].deliver(cart);
+        assertEquals(board.snapshot().fingerprint(), board.fingerprint());
+        stations[0].depositGem();
+        assertEquals(loaded, board.fingerprint(), "The same state has the same hash");
+
+        // A board attached to a mine already in use starts from its state
+        StateBoard other = new StateBoard();
+        other.attach(stations, elevator, 2);
+        assertEquals(loaded, other.fingerprint());
+    }
+
+    @Test
+    public void testExpressAndSidingStationsAreRejected() {
+        StateBoard board = new StateBoard();
+        Elevator elevator = new Elevator();
+        assertThrows(IllegalArgumentException.class,
+                () -> board.attach(new Station[] { new Station(0, true) }, elevator, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> board.attach(new Station[] { new Station(0, false, 1) }, elevator, 1));
+        board.attach(new Station[] { new Station(0, false, 0) }, elevator, 1);
+    }
+
+    @Test
+    public void testSnapshotsAreNeverTorn() throws InterruptedException {
+        // One cart shuttles around a ring of two stations; in every state
+        // that really existed it is at exactly one station or in one engine
+        Station[] stations = { new Station(0), new Station(1) };
+        StateBoard board = TokenControllerProvider.getStateBoard();
+        board.attach(stations, new Elevator(), 2);
+        stations[0].deliver(Cart.getNewCart());
+
+        Thread[] roles = {
+            role(new ThreadToken(ThreadToken.Role.MINER, 0), stations[0]::depositGem),
+            role(new ThreadToken(ThreadToken.Role.MINER, 1), stations[1]::depositGem),
+            role(new ThreadToken(ThreadToken.Role.ENGINE, 0), () -> stations[1].deliver(stations[0].collect())),
+            role(new ThreadToken(ThreadToken.Role.ENGINE, 1), () -> stations[0].deliver(stations[1].collect())),
+        };
+        for (Thread t : roles) {
+            t.start();
+        }
+
+        long lastVersion = -1;
+        for (int i = 0; i < 20_000; i++) {
+            MineSnapshot s = board.snapshot();
+            int carts = (s.stationHasCart(0) ? 1 : 0) + (s.stationHasCart(1) ? 1 : 0)
+                    + (s.engineInMid(0) ? 1 : 0) + (s.engineInMid(1) ? 1 : 0);
+            assertEquals(1, carts, "Torn snapshot: " + s);
+            assertTrue(s.getVersion() >= lastVersion, "Snapshots must not go back in time");
+            lastVersion = s.getVersion();
+        }
+        assertTrue(lastVersion > 0, "The roles should have made progress");
+
+        for (Thread t : roles) {
+            t.interrupt();
+        }
+        for (Thread t : roles) {
+            t.join();
+        }
+        assertEquals(board.snapshot().fingerprint(), board.fingerprint(),
+                "Concurrent updates of the hash must not be lost");
+    }
+}
@@ -0,0 +1,71 @@
+package mine.fuzzing;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size set of global state fingerprints, for telling new states from
+ * ones already reached. An open-addressing table of primitive longs, so that
+ * adding a fingerprint neither boxes nor allocates; once three quarters full
+ * it is cleared, keeping memory flat over a long persistent campaign at the
+ * cost of counting states forgotten that way as new again.
+ */
+public class StateSet {
+
+    private final long[] slots;
+    // fingerprint 0 marks an empty slot, so it is tracked on its own
+    private boolean hasZero = false;
+    private int size = 0;
+
+    /**
+     * @param capacity Number of slots, rounded up to a power of two
+     */
+    public StateSet(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2: " + capacity);
+        }
+        this.slots = new long[Integer.highestOneBit(capacity - 1) << 1];
+    }
+
+    /**
+     * @return true if the fingerprint was not in the set
+     */
+    public boolean add(long fingerprint) {
+        if (fingerprint == 0) {
+            boolean added = !hasZero;
+            hasZero = true;
+            return added;
+        }
+        int mask = slots.length - 1;
+        // mix the bits, fingerprints need not be uniform in their low bits
+        int i = (int) (fingerprint * 0x9E3779B97F4A7C15L >>> 32) & mask;
+        while (slots[i] != 0) {
+            if (slots[i] == fingerprint) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        if (size >= slots.length - (slots.length >> 2)) {
+            clear();
+            return add(fingerprint);
+        }
+        slots[i] = fingerprint;
+        size++;
+        return true;
+    }
+
+    /**
+     * Forgets every fingerprint.
+     */
+    public void clear() {
+        Arrays.fill(slots, 0);
+        hasZero = false;
+        size = 0;
+    }
+
+    /**
+     * @return Number of fingerprints in the set
+     */
+    public int size() {
+        return size + (hasZero ? 1 : 0);
+    }
+}
@@ -0,0 +1,32 @@
+package mine.fuzzing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the fixed-size set of state fingerprints.
+ */
+public class StateSetTest {
+
+    @Test
+    public void testAddsEachFingerprintOnce() {
+        StateSet set = new StateSet(16);
+        assertTrue(set.add(42));
+        assertFalse(set.add(42));
+        assertTrue(set.add(0), "0 is a fingerprint like any other");
+        assertFalse(set.add(0));
+        assertTrue(set.add(42L << 32), "Differs in the high bits only");
+        assertEquals(3, set.size());
+    }
+
+    @Test
+    public void testClearsOnceFull() {
+        StateSet set = new StateSet(16);
+        for (long f = 1; f <= 1000; f++) {
+            assertTrue(set.add(f));
+            assertTrue(set.size() <= 12, "Never more than three quarters full");
+        }
+        assertTrue(set.add(1), "Forgotten when the set was cleared");
+    }
+}
@@ -0,0 +1,133 @@
+package mine.fuzzing;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Direct handoff between the gated driver and the roles it grants.
+ *
+ * The driver grants one role an operation and parks; the role, parked at its
+ * gate, is unparked, performs the operation and acknowledges it with
+ * {@link #done}, which unparks the driver. One scheduling step costs two
+ * context switches, instead of a fixed sleep long enough for any operation.
+ *
+ * Roles are addressed by their registry index. Each has a count of granted
+ * operations not yet taken, so grants may run ahead of the role, and a count
+ * of operations done, which is what the driver waits on.
+ */
+public class StepSequencer {
+
+    // Longest the driver parks before looking at the role again
+    private static final long MAX_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final AtomicIntegerArray permits;
+    private final AtomicLongArray done;
+    private final AtomicReferenceArray<Thread> waiters;
+    private volatile Thread driver = null;
+    private volatile boolean open = false;
+
+    /**
+     * @param roles Number of roles, indexed 0 to roles - 1
+     */
+    public StepSequencer(int roles) {
+        this.permits = new AtomicIntegerArray(roles);
+        this.done = new AtomicLongArray(roles);
+        this.waiters = new AtomicReferenceArray<>(roles);
+    }
+
+    /**
+     * Grant a role operations; wakes it if it waits at its gate.
+     */
+    public void grant(int index, int count) {
+        permits.addAndGet(index, count);
+        LockSupport.unpark(waiters.get(index));
+    }
+
+    /**
+     * Stop gating: every role passes its gate from now on.
+     */
+    public void openAll() {
+        open = true;
+        for (int i = 0; i < waiters.length(); i++) {
+            LockSupport.unpark(waiters.get(i));
+        }
+    }
+
+    /**
+     * Called by a role at its gate: take one granted operation, parking until
+     * there is one. Returns without taking one, the interrupt left pending,
+     * if the role is interrupted.
+     */
+    public void await(int index) {
+        Thread self = Thread.currentThread();
+        while (!open && !self.isInterrupted() && !take(index)) {
+            waiters.set(index, self);
+            // A grant made before we were visible did not unpark us
+            if (open || take(index)) {
+                break;
+            }
+            LockSupport.park(this);
+        }
+        waiters.set(index, null);
+    }
+
+    private boolean take(int index) {
+        int p;
+        while ((p = permits.get(index)) > 0) {
+            if (permits.compareAndSet(index, p, p - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Called by a role once its operation completed: the step is done.
+     */
+    public void done(int index) {
+        done.incrementAndGet(index);
+        LockSupport.unpark(driver);
+    }
+
+    /**
+     * Grant a role one operation and wait until it is done.
+     *
+     * @param index The role's index
+     * @param timeoutMs Longest to wait for the operation
+     * @param blocked Whether the role waits inside a Location instead, where
+     *        only another role's operation can wake it
+     * @return true if the operation was done, false if the role blocked or
+     *         the timeout passed first
+     * @throws InterruptedException if the driver was interrupted
+     */
+    public boolean step(int index, long timeoutMs, BooleanSupplier blocked) throws InterruptedException {
+        Thread self = Thread.currentThread();
+        driver = self;
+        long target = done.get(index) + 1;
+        grant(index, 1);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        long poll = TimeUnit.MICROSECONDS.toNanos(100);
+        while (done.get(index) < target) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            // Blocking in a Location does not go through the hooks; poll it,
+            // less and less often while the operation runs
+            if (blocked.getAsBoolean()) {
+                return false;
+            }
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(this, Math.min(left, poll));
+            poll = Math.min(poll * 2, MAX_POLL_NANOS);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,91 @@
+package mine.fuzzing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the handoff between the gated driver and its roles.
+ */
+public class StepSequencerTest {
+
+    // A role performing operations through the sequencer, recording each
+    private static Thread role(StepSequencer sequencer, int index, int operations, List<String> log) {
+        Thread t = new Thread(() -> {
+            for (int i = 0; i < operations; i++) {
+                sequencer.await(index);
+                if (Thread.currentThread().isInterrupted()) {
+                    log.add(index + " interrupted");
+                    return;
+                }
+                log.add(index + " op " + i);
+                sequencer.done(index);
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    @Test
+    public void testStepReturnsOnceTheOperationIsDone() throws InterruptedException {
+        StepSequencer sequencer = new StepSequencer(2);
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        Thread a = role(sequencer, 0, 2, log);
+        Thread b = role(sequencer, 1, 1, log);
+
+        assertTrue(sequencer.step(1, 5000, () -> false));
+        assertEquals(List.of("1 op 0"), log, "Only the granted role ran");
+        assertTrue(sequencer.step(0, 5000, () -> false));
+        assertTrue(sequencer.step(0, 5000, () -> false));
+        assertEquals(List.of("1 op 0", "0 op 0", "0 op 1"), log);
+
+        a.join(5000);
+        b.join(5000);
+        assertFalse(a.isAlive() || b.isAlive());
+    }
+
+    @Test
+    public void testStepGivesUpOnABlockedRole() throws InterruptedException {
+        StepSequencer sequencer = new StepSequencer(1);
+        AtomicBoolean blocked = new AtomicBoolean(false);
+        Thread t = new Thread(() -> {
+            sequencer.await(0);
+            // Takes its grant, then waits for something that never comes
+            blocked.set(true);
+        });
+        t.setDaemon(true);
+        t.start();
+
+        long start = System.nanoTime();
+        assertFalse(sequencer.step(0, 60_000, blocked::get));
+        assertTrue(System.nanoTime() - start < 30_000_000_000L, "Should not wait out the timeout");
+        assertFalse(sequencer.step(0, 50, () -> false), "Nobody takes the grant before the timeout");
+    }
+
+    @Test
+    public void testGrantsRunAheadAndInterruptsStayPending() throws InterruptedException {
+        StepSequencer sequencer = new StepSequencer(1);
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+
+        // Granted before the role reaches its gate
+        sequencer.grant(0, 2);
+        role(sequencer, 0, 2, log).join(5000);
+        assertEquals(List.of("0 op 0", "0 op 1"), log);
+
+        Thread t = role(sequencer, 0, 1, log);
+        t.interrupt();
+        t.join(5000);
+        assertFalse(t.isAlive());
+        assertEquals("0 interrupted", log.get(2), "An interrupted role returns without a grant");
+
+        sequencer.openAll();
+        role(sequencer, 0, 3, log).join(5000);
+        assertEquals(6, log.size(), "An open sequencer gates nobody");
+    }
+}
@@ -0,0 +1,268 @@
+package mine.fuzzing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Per-step telemetry of the gated driver, kept in memory in binary form.
+ *
+ * Printing a status table after every step costs far more than the step
+ * itself once steps are handed off directly. In quiet mode the driver only
+ * records each step here instead: the granted role, whether it completed,
+ * the input left, the ready roles and the mine state bits, a few longs in a
+ * preallocated ring that keeps the newest steps. The ring is written to a
+ * file only when a finding is reported, and rendered as the status tables
+ * the driver would have printed offline:
+ *
+ * <pre>
+ * java -cp "target/test-classes:target/classes" mine.fuzzing.StepTrace \
+ *   target/step-traces/*.trace
+ * </pre>
+ *
+ * Not thread-safe: written by the driver thread only.
+ */
+public class StepTrace {
+
+    static final int DEFAULT_CAPACITY = 4096;
+
+    private static final int MAGIC = 0x4D535452; // "MSTR"
+    private static final int VERSION = 1;
+
+    // Longs per step: step and input left, role and outcome, then the
+    // ready roles' words and the state words
+    private static final int HEADER = 2;
+
+    private final int capacity;
+    private List<ThreadToken> tokens = List.of();
+    private int stations;
+    private int engines;
+    private int readyWords = 1;
+    private int stride = HEADER + 1;
+    private long[] ring = new long[0];
+    private long steps = 0;
+
+    public StepTrace() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Number of newest steps kept
+     */
+    public StepTrace(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Start a new trace, dropping the steps recorded so far. The ring is
+     * reused as long as the mine's shape does not change.
+     *
+     * @param roles The roles in ready-set order
+     * @param initial State of the mine, for its shape
+     */
+    public void begin(List<ThreadToken> roles, MineSnapshot initial) {
+        this.tokens = List.copyOf(roles);
+        this.stations = initial.getStationCount();
+        this.engines = initial.getEngineCount();
+        this.readyWords = ReadySet.words(roles.size());
+        int s = HEADER + readyWords + initial.wordCount();
+        if (s != stride || ring.length == 0) {
+            stride = s;
+            ring = new long[capacity * stride];
+        }
+        steps = 0;
+    }
+
+    /**
+     * Record one step.
+     *
+     * @param role Index of the granted role in ready-set order
+     * @param done Whether the role completed its operation
+     * @param remainingBytes Input left after the step
+     * @param ready The ready roles after the step, as {@link ReadySet#bits()}
+     * @param state The mine after the step
+     */
+    public void record(int role, boolean done, int remainingBytes, long[] ready, MineSnapshot state) {
+        int at = (int) (steps % capacity) * stride;
+        ring[at] = (steps << 32) | (remainingBytes & 0xFFFFFFFFL);
+        ring[at + 1] = ((long) role << 1) | (done ? 1 : 0);
+        System.arraycopy(ready, 0, ring, at + HEADER, readyWords);
+        int state0 = HEADER + readyWords;
+        for (int w = 0; w < stride - state0; w++) {
+            ring[at + state0 + w] = state.word(w);
+        }
+        steps++;
+    }
+
+    /**
+     * Record one step of a mine of at most 64 roles.
+     */
+    public void record(int role, boolean done, int remainingBytes, long ready, MineSnapshot state) {
+        record(role, done, remainingBytes, new long[] {ready}, state);
+    }
+
+    /**
+     * @return Steps recorded since {@link #begin}, including those dropped
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return Steps still held, at most the capacity
+     */
+    public int size() {
+        return (int) Math.min(steps, capacity);
+    }
+
+    // --- binary form ---
+
+    /**
+     * Write the roles, the mine's shape and the steps held, oldest first.
+     */
+    public void write(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null) {
+            dir.mkdirs();
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(stations);
+            out.writeInt(engines);
+            out.writeInt(tokens.size());
+            for (ThreadToken t : tokens) {
+                out.writeUTF(t.getRole().name());
+                out.writeInt(t.getInstanceId());
+            }
+            out.writeInt(stride);
+            out.writeLong(steps);
+            int n = size();
+            out.writeInt(n);
+            for (long s = steps - n; s < steps; s++) {
+                int at = (int) (s % capacity) * stride;
+                for (int i = 0; i < stride; i++) {
+                    out.writeLong(ring[at + i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read a trace written by {@link #write}.
+     */
+    public static StepTrace read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a step trace: " + file);
+            }
+            int stations = in.readInt();
+            int engines = in.readInt();
+            int roles = in.readInt();
+            List<ThreadToken> tokens = new ArrayList<>(roles);
+            for (int i = 0; i < roles; i++) {
+                tokens.add(new ThreadToken(ThreadToken.Role.valueOf(in.readUTF()), in.readInt()));
+            }
+            int stride = in.readInt();
+            long steps = in.readLong();
+            int n = in.readInt();
+
+            StepTrace trace = new StepTrace(Math.max(n, 1));
+            trace.tokens = tokens;
+            trace.stations = stations;
+            trace.engines = engines;
+            trace.readyWords = ReadySet.words(roles);
+            trace.stride = stride;
+            trace.ring = new long[trace.capacity * stride];
+            trace.steps = steps;
+            // The newest steps, each back at its place in the ring
+            for (long s = steps - n; s < steps; s++) {
+                int at = (int) (s % trace.capacity) * stride;
+                for (int i = 0; i < stride; i++) {
+                    trace.ring[at + i] = in.readLong();
+                }
+            }
+            return trace;
+        }
+    }
+
+    // --- rendering ---
+
+    /**
+     * Print every step held as the driver prints it when not quiet.
+     */
+    public void render(PrintStream out) {
+        if (steps > size()) {
+            out.println("(" + (steps - size()) + " earlier steps dropped)");
+        }
+        for (long s = steps - size(); s < steps; s++) {
+            int at = (int) (s % capacity) * stride;
+            int role = (int) (ring[at + 1] >>> 1);
+            boolean done = (ring[at + 1] & 1) != 0;
+            long[] ready = new long[readyWords];
+            System.arraycopy(ring, at + HEADER, ready, 0, readyWords);
+            long[] words = new long[stride - HEADER - readyWords];
+            System.arraycopy(ring, at + HEADER + readyWords, words, 0, words.length);
+
+            out.println("Step " + s + ": token granted to: " + tokens.get(role));
+            if (!done) {
+                out.println("WARNING: " + tokens.get(role) + " did not complete its operation");
+            }
+            out.println("Remaining bytes: " + (int) ring[at]);
+            printTable(out, tokens, ready, new MineSnapshot(stations, engines, 0, words));
+        }
+    }
+
+    /**
+     * Print which roles can proceed, sorted by role and instance, and the
+     * mine state.
+     *
+     * @param tokens The roles
+     * @param canProceed Bit i of word i / 64 set if role i can proceed
+     * @param state The mine state
+     */
+    static void printTable(PrintStream out, List<ThreadToken> tokens, long[] canProceed, MineSnapshot state) {
+        out.println("\n╔════════════════════════════════════════════════════╗");
+        out.println("║         Thread Status Table (Current Tick)         ║");
+        out.println("╠════════════════════════════════╦═══════════════════╣");
+        out.println("║ Thread                         ║ Can Proceed?      ║");
+        out.println("╠════════════════════════════════╬═══════════════════╣");
+
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparing((Integer i) -> tokens.get(i).getRole())
+                .thenComparingInt(i -> tokens.get(i).getInstanceId()));
+        for (int i : order) {
+            String status = (canProceed[i >>> 6] & (1L << i)) != 0 ? "✅ Yes" : "❌ No";
+            String threadName = String.format("%-30s", tokens.get(i).getUniqueId());
+            out.printf("║ %s ║ %-16s ║%n", threadName, status);
+        }
+
+        out.println("╚════════════════════════════════╩═══════════════════╝");
+        out.println("Mine state: " + state);
+        out.println();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: StepTrace file.trace...");
+            System.exit(2);
+        }
+        for (String arg : args) {
+            StepTrace trace = read(new File(arg));
+            System.out.println("=== " + arg + ": " + trace.getSteps() + " steps ===");
+            trace.render(System.out);
+        }
+    }
+}
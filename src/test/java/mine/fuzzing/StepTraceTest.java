@@ -0,0 +1,114 @@
+package mine.fuzzing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the binary per-step telemetry of the gated driver.
+ */
+public class StepTraceTest {
+
+    private static List<ThreadToken> tokens(VirtualMine mine) {
+        List<ThreadToken> tokens = new ArrayList<>();
+        for (int i = 0; i < mine.roleCount(); i++) {
+            tokens.add(mine.token(i));
+        }
+        return tokens;
+    }
+
+    // Random ready roles, each step traced; the states reached
+    private static List<MineSnapshot> run(VirtualMine mine, StepTrace trace, int steps, long seed) {
+        Random random = new Random(seed);
+        List<MineSnapshot> states = new ArrayList<>();
+        for (int s = 0; s < steps && !mine.isStalled(); s++) {
+            long ready = mine.readyBits();
+            int n = random.nextInt(Long.bitCount(ready));
+            int role = 0;
+            for (long bits = ready; ; bits &= bits - 1) {
+                role = Long.numberOfTrailingZeros(bits);
+                if (n-- == 0) {
+                    break;
+                }
+            }
+            mine.step(role);
+            trace.record(role, true, 1000 - s, mine.readyBits(), mine.snapshot());
+            states.add(mine.snapshot());
+        }
+        return states;
+    }
+
+    private static String render(StepTrace trace) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        trace.render(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testRingKeepsTheNewestSteps() {
+        VirtualMine mine = new VirtualMine();
+        StepTrace trace = new StepTrace(8);
+        trace.begin(tokens(mine), mine.snapshot());
+        List<MineSnapshot> states = run(mine, trace, 20, 1);
+        assertEquals(20, states.size(), "Should not stall this early");
+
+        assertEquals(20, trace.getSteps());
+        assertEquals(8, trace.size());
+        String text = render(trace);
+        assertTrue(text.startsWith("(12 earlier steps dropped)"));
+        assertFalse(text.contains("Step 11:"));
+        assertTrue(text.contains("Step 12:"));
+        assertTrue(text.contains("Mine state: " + states.get(19)));
+        assertTrue(text.contains("Remaining bytes: 981"));
+
+        trace.begin(tokens(mine), mine.snapshot());
+        assertEquals(0, trace.size(), "A new input starts a new trace");
+    }
+
+    @Test
+    public void testRoundTripRendersTheSameTables() throws IOException {
+        VirtualMine mine = new VirtualMine();
+        StepTrace trace = new StepTrace(16);
+        trace.begin(tokens(mine), mine.snapshot());
+        run(mine, trace, 40, 2);
+        trace.record(VirtualMine.OPERATOR, false, 3, 0, mine.snapshot());
+
+        File file = Files.createTempFile("finding", ".trace").toFile();
+        file.deleteOnExit();
+        trace.write(file);
+        assertTrue(file.length() < 16 * 5 * Long.BYTES + 512, "A few longs per step");
+
+        StepTrace read = StepTrace.read(file);
+        assertEquals(trace.getSteps(), read.getSteps());
+        assertEquals(trace.size(), read.size());
+        String text = render(read);
+        assertEquals(render(trace), text);
+        assertTrue(text.contains("WARNING: OPERATOR_0 did not complete its operation"));
+    }
+
+    @Test
+    public void testTableShowsTheReadyRoles() {
+        VirtualMine mine = new VirtualMine();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StepTrace.printTable(new PrintStream(bytes, true, StandardCharsets.UTF_8), tokens(mine),
+                new long[] {mine.readyBits()}, mine.snapshot());
+        String text = bytes.toString(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < mine.roleCount(); i++) {
+            String row = String.format("║ %-30s ║ %-16s ║", mine.token(i).getUniqueId(),
+                    mine.canStep(i) ? "✅ Yes" : "❌ No");
+            assertTrue(text.contains(row), "Missing row " + row);
+        }
+        assertTrue(text.contains("Mine state: " + mine.snapshot()));
+    }
+}
@@ -82,6 +82,35 @@ public class ThreadTokenRegistryTest {
         assertNull(registry.getToken(thread));
         assertNull(registry.getThread(token));
     }
+
+    @Test
+    public void testDenseIndexInRegistrationOrder() {
+        ThreadToken producer = new ThreadToken(ThreadToken.Role.PRODUCER, 0);
+        ThreadToken miner = new ThreadToken(ThreadToken.Role.MINER, 30);
+        registry.register(new Thread(), producer);
+        registry.register(new Thread(), miner);
+        registry.register(new Thread(), producer);
+
+        assertEquals(2, registry.getTokenCount(), "Re-registering keeps the token's index");
+        assertEquals(0, registry.indexOf(producer));
+        assertEquals(1, registry.indexOf(miner));
+        assertSame(miner, registry.getTokenAt(1));
+        assertEquals(1, registry.indexOf(new ThreadToken(ThreadToken.Role.MINER, 30)),
+                "An equal token resolves to the same index");
+        assertEquals(-1, registry.indexOf(new ThreadToken(ThreadToken.Role.MINER, 0)));
+
+        // A token indexed by another registry does not confuse this one
+        ThreadTokenRegistry other = new ThreadTokenRegistry();
+        ThreadToken engine = new ThreadToken(ThreadToken.Role.ENGINE, 0);
+        other.register(new Thread(), engine);
+        assertEquals(-1, registry.indexOf(engine));
+
+        registry.clear();
+        assertEquals(0, registry.getTokenCount());
+        assertEquals(-1, registry.indexOf(miner));
+        registry.register(new Thread(), miner);
+        assertEquals(0, registry.indexOf(miner));
+    }
     
     @Test
     public void testCurrentThreadToken() {
@@ -15,8 +15,19 @@ public class TokenControllerTest {
         
         // Should not throw any exceptions
         controller.onLoopIteration(token);
-        controller.beforeOperation(token, "test");
-        controller.afterOperation(token, "test");
+        controller.beforeOperation(token, Operation.STATION_COLLECT);
+        controller.afterOperation(token, Operation.STATION_COLLECT);
+    }
+    
+    @Test
+    public void testInterruptsStopThreadsByDefault() {
+        // Written before the interrupt hook existed
+        TokenController controller = new TokenController() {
+            public void onLoopIteration(ThreadToken token) {}
+            public void beforeOperation(ThreadToken token, Operation operation) {}
+            public void afterOperation(ThreadToken token, Operation operation) {}
+        };
+        assertFalse(controller.onInterrupted(new ThreadToken(ThreadToken.Role.MINER, 0)));
     }
     
     @Test
@@ -25,7 +36,67 @@ public class TokenControllerTest {
         
         // Should handle null gracefully (no-op)
         controller.onLoopIteration(null);
-        controller.beforeOperation(null, "test");
-        controller.afterOperation(null, "test");
+        controller.beforeOperation(null, Operation.STATION_COLLECT);
+        controller.afterOperation(null, Operation.STATION_COLLECT);
+    }
+
+    @Test
+    public void testFuzzingControllerGatesEveryRegisteredInstance() {
+        ThreadTokenRegistry registry = new ThreadTokenRegistry();
+        for (int id = 0; id < 32; id++) {
+            registry.register(new Thread(), new ThreadToken(ThreadToken.Role.MINER, id));
+        }
+        FuzzingTokenController controller = new FuzzingTokenController(
+                new SimpleFuzzerTest.SimpleMockProvider(new byte[0]), registry, true);
+
+        // Well past the old limit of 20 instances per role
+        ThreadToken miner = new ThreadToken(ThreadToken.Role.MINER, 25);
+        controller.releaseIteration(miner);
+        assertTimeoutPreemptively(java.time.Duration.ofSeconds(5), () -> {
+            controller.beforeOperation(registry.getTokenAt(25), Operation.STATION_COLLECT);
+            controller.beforeOperation(new ThreadToken(ThreadToken.Role.ENGINE, 0), Operation.STATION_DELIVER);
+        }, "A granted instance, and one that is not controlled, should not wait");
+
+        controller.releaseIterations(ThreadToken.Role.MINER, 2);
+        assertTimeoutPreemptively(java.time.Duration.ofSeconds(5), () -> {
+            controller.beforeOperation(miner, Operation.STATION_COLLECT);
+            controller.beforeOperation(miner, Operation.STATION_COLLECT);
+            controller.beforeOperation(new ThreadToken(ThreadToken.Role.MINER, 31), Operation.STATION_COLLECT);
+        });
+    }
+
+    @Test
+    public void testOperationHooksWrapStationOperations() throws InterruptedException {
+        ThreadToken token = new ThreadToken(ThreadToken.Role.ENGINE, 0);
+        ThreadTokenRegistry registry = new ThreadTokenRegistry();
+        registry.register(Thread.currentThread(), token);
+        TokenControllerProvider.setRegistry(registry);
+
+        java.util.List<String> events = new java.util.ArrayList<>();
+        TokenControllerProvider.setController(new NoOpTokenController() {
+            @Override
+            public void beforeOperation(ThreadToken t, Operation operation) {
+                events.add("before " + operation + " " + t);
+            }
+
+            @Override
+            public void afterOperation(ThreadToken t, Operation operation) {
+                events.add("after " + operation + " " + t);
+            }
+        });
+
+        try {
+            mine.Station station = new mine.Station(0);
+            station.deliver(mine.Cart.getNewCart());
+            station.depositGem();
+            station.collect();
+        } finally {
+            TokenControllerProvider.reset();
+        }
+
+        assertEquals(java.util.List.of(
+                "before STATION_DELIVER ENGINE_0", "after STATION_DELIVER ENGINE_0",
+                "before STATION_DEPOSIT_GEM ENGINE_0", "after STATION_DEPOSIT_GEM ENGINE_0",
+                "before STATION_COLLECT ENGINE_0", "after STATION_COLLECT ENGINE_0"), events);
     }
 }
@@ -91,14 +91,13 @@ public class TokenFuzzingIntegrationTest {
         ThreadTokenRegistry registry = new ThreadTokenRegistry();
         sim.registerThreadTokens(registry);
         
-        MineProgress.reset();
         sim.startAll();
         
         // Let simulation run briefly
         Thread.sleep(500);
         
         // Verify progress is being made (simulation is running)
-        long progress = MineProgress.snapshot();
+        long progress = TokenControllerProvider.getHeartbeats().total();
         assertTrue(progress > 0, "Simulation should make progress");
         
         // Clean up
@@ -112,7 +111,6 @@ public class TokenFuzzingIntegrationTest {
         ThreadTokenRegistry registry = new ThreadTokenRegistry();
         sim.registerThreadTokens(registry);
         
-        MineProgress.reset();
         sim.startAll();
         
         // Run deadlock watcher for a short time
@@ -0,0 +1,298 @@
+package mine.fuzzing;
+
+import mine.Params;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Single-threaded, sleep-free model of a gated mine run.
+ *
+ * Under per-operation gating each grant lets exactly one role perform one
+ * Location operation, and the driver waits for it to finish before the next
+ * grant, so a run is fully described by the order of its operations. This
+ * model replays that order directly: no threads, no sleeps, no monitors.
+ * The operations mirror the bodies of {@code Station} and {@code Elevator},
+ * as {@link MineSimulation} builds them: strict stations without a siding,
+ * and an operator on a fixed rhythm.
+ *
+ * Roles are numbered in {@link MineSimulation}'s thread order: producer,
+ * consumer, operator, one miner per station, then the engines by token id
+ * (station i to i+1, then elevator to station 0, then last station to
+ * elevator).
+ */
+public final class VirtualMine {
+
+    public static final int PRODUCER = 0;
+    public static final int CONSUMER = 1;
+    public static final int OPERATOR = 2;
+
+    // The Elevator's toString(), as stall reports name it
+    private static final String ELEVATOR = "elevator";
+
+    private final int stations;
+    private final boolean[] stationCart;
+    private final boolean[] stationGem;
+    private boolean elevatorCart = false;
+    private boolean atTop = true;
+
+    // Engines between collect and deliver, by token id
+    private final boolean[] carrying;
+
+    // Roles granted while blocked, which complete as soon as they can
+    private final boolean[] waiting;
+
+    // Grants given to a role that was already waiting; each one lets it
+    // through its next gate without a further grant
+    private final int[] pending;
+
+    // Told of every operation performed, in order
+    private IntConsumer listener = role -> { };
+
+    public VirtualMine() {
+        this(Params.STATIONS);
+    }
+
+    public VirtualMine(int stations) {
+        this.stations = stations;
+        this.stationCart = new boolean[stations];
+        this.stationGem = new boolean[stations];
+        this.carrying = new boolean[stations + 1];
+        this.waiting = new boolean[roleCount()];
+        this.pending = new int[roleCount()];
+    }
+
+    /**
+     * Observe every operation performed, including those of woken waiters.
+     */
+    public void onStep(IntConsumer listener) {
+        this.listener = listener;
+    }
+
+    public int roleCount() {
+        return 3 + stations + stations + 1;
+    }
+
+    /**
+     * @return The token of the role, as MineSimulation assigns them
+     */
+    public ThreadToken token(int role) {
+        if (role == PRODUCER) return new ThreadToken(ThreadToken.Role.PRODUCER, 0);
+        if (role == CONSUMER) return new ThreadToken(ThreadToken.Role.CONSUMER, 0);
+        if (role == OPERATOR) return new ThreadToken(ThreadToken.Role.OPERATOR, 0);
+        if (role < 3 + stations) return new ThreadToken(ThreadToken.Role.MINER, role - 3);
+        return new ThreadToken(ThreadToken.Role.ENGINE, role - 3 - stations);
+    }
+
+    /**
+     * @return True if the role's next operation would not block
+     */
+    public boolean canStep(int role) {
+        if (role == PRODUCER) return !elevatorCart && atTop;
+        if (role == CONSUMER) return elevatorCart && atTop;
+        if (role == OPERATOR) return !elevatorCart;
+        if (role < 3 + stations) return !stationGem[role - 3];
+
+        int engine = role - 3 - stations;
+        if (!carrying[engine]) {
+            int origin = origin(engine);
+            return origin < 0 ? elevatorCart && !atTop : stationCart[origin] && stationGem[origin];
+        }
+        int destination = destination(engine);
+        return destination < 0 ? !elevatorCart && !atTop : !stationCart[destination];
+    }
+
+    /**
+     * Perform the role's next operation if it would not block.
+     *
+     * @return True if the operation was performed
+     */
+    public boolean step(int role) {
+        if (!canStep(role)) {
+            return false;
+        }
+        perform(role);
+        wakeWaiters();
+        return true;
+    }
+
+    /**
+     * Grant a role whether or not it can proceed: a blocked role waits inside
+     * its operation and completes it as soon as another role makes that
+     * possible. Granting a role that is already waiting is kept for its next
+     * operation, as the gate's semaphore would.
+     */
+    public void forceGrant(int role) {
+        if (waiting[role]) {
+            pending[role]++;
+        } else if (!step(role)) {
+            waiting[role] = true;
+        }
+    }
+
+    public boolean isWaiting(int role) {
+        return waiting[role];
+    }
+
+    /**
+     * @return Bit r set if role r can perform its next operation, as the
+     *         target's {@link ReadySet}
+     */
+    public long readyBits() {
+        long bits = 0;
+        for (int r = 0; r < waiting.length; r++) {
+            if (canStep(r)) {
+                bits |= 1L << r;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * @return True if no role can perform its next operation
+     */
+    public boolean isStalled() {
+        for (int r = 0; r < waiting.length; r++) {
+            if (canStep(r)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Describe the stall as the target's {@link StallDetector} would: every
+     * role waiting in its next operation.
+     *
+     * @throws IllegalStateException if some role can still proceed
+     */
+    public StallReport stallReport() {
+        if (!isStalled()) {
+            throw new IllegalStateException("Not stalled: " + snapshot());
+        }
+        List<StallReport.Entry> entries = new ArrayList<>(roleCount());
+        for (int r = 0; r < roleCount(); r++) {
+            entries.add(nextOperation(r));
+        }
+        return new StallReport(entries);
+    }
+
+    // The operation the role performs next, and the Location it is performed on
+    private StallReport.Entry nextOperation(int role) {
+        ThreadToken token = token(role);
+        if (role == PRODUCER) return new StallReport.Entry(token, Operation.ELEVATOR_ARRIVE, ELEVATOR);
+        if (role == CONSUMER) return new StallReport.Entry(token, Operation.ELEVATOR_DEPART, ELEVATOR);
+        if (role == OPERATOR) return new StallReport.Entry(token, Operation.ELEVATOR_OPERATE_EMPTY, ELEVATOR);
+        if (role < 3 + stations) {
+            return new StallReport.Entry(token, Operation.STATION_DEPOSIT_GEM, station(role - 3));
+        }
+
+        int engine = role - 3 - stations;
+        if (!carrying[engine]) {
+            int origin = origin(engine);
+            return origin < 0
+                    ? new StallReport.Entry(token, Operation.ELEVATOR_COLLECT, ELEVATOR)
+                    : new StallReport.Entry(token, Operation.STATION_COLLECT, station(origin));
+        }
+        int destination = destination(engine);
+        return destination < 0
+                ? new StallReport.Entry(token, Operation.ELEVATOR_DELIVER, ELEVATOR)
+                : new StallReport.Entry(token, Operation.STATION_DELIVER, station(destination));
+    }
+
+    // A Station's toString()
+    private static String station(int id) {
+        return "station " + id;
+    }
+
+    /**
+     * @return The model state, in the same form as the real mine's snapshots
+     */
+    public MineSnapshot snapshot() {
+        long[] words = MineSnapshot.newWords(stations, carrying.length);
+        for (int i = 0; i < stations; i++) {
+            MineSnapshot.set(words, MineSnapshot.stationCartBit(i), stationCart[i]);
+            MineSnapshot.set(words, MineSnapshot.stationGemBit(i), stationGem[i]);
+        }
+        MineSnapshot.set(words, MineSnapshot.elevatorCartBit(stations), elevatorCart);
+        MineSnapshot.set(words, MineSnapshot.elevatorTopBit(stations), atTop);
+        for (int i = 0; i < carrying.length; i++) {
+            MineSnapshot.set(words, MineSnapshot.engineBit(stations, i), carrying[i]);
+        }
+        return new MineSnapshot(stations, carrying.length, 0, words);
+    }
+
+    // Station index the engine collects from, or -1 for the elevator
+    private int origin(int engine) {
+        if (engine < stations - 1) return engine;
+        if (engine == stations - 1) return -1;
+        return stations - 1;
+    }
+
+    // Station index the engine delivers to, or -1 for the elevator
+    private int destination(int engine) {
+        if (engine < stations - 1) return engine + 1;
+        if (engine == stations - 1) return 0;
+        return -1;
+    }
+
+    private void perform(int role) {
+        if (role == PRODUCER) {
+            // arrive: load the cart and descend
+            elevatorCart = true;
+            atTop = false;
+        } else if (role == CONSUMER) {
+            // depart
+            elevatorCart = false;
+        } else if (role == OPERATOR) {
+            // operateEmpty
+            atTop = !atTop;
+        } else if (role < 3 + stations) {
+            // depositGem
+            stationGem[role - 3] = true;
+        } else {
+            int engine = role - 3 - stations;
+            if (!carrying[engine]) {
+                int origin = origin(engine);
+                if (origin < 0) {
+                    elevatorCart = false;
+                } else {
+                    stationCart[origin] = false;
+                    stationGem[origin] = false;
+                }
+                carrying[engine] = true;
+            } else {
+                int destination = destination(engine);
+                if (destination < 0) {
+                    // deliver to the bottom, then ascend
+                    elevatorCart = true;
+                    atTop = true;
+                } else {
+                    stationCart[destination] = true;
+                }
+                carrying[engine] = false;
+            }
+        }
+        listener.accept(role);
+    }
+
+    // Waiting roles complete, in role order, for as long as any of them can
+    private void wakeWaiters() {
+        boolean woke = true;
+        while (woke) {
+            woke = false;
+            for (int r = 0; r < waiting.length; r++) {
+                if (waiting[r] && canStep(r)) {
+                    perform(r);
+                    // A kept grant sends it straight into its next operation
+                    waiting[r] = pending[r] > 0;
+                    if (waiting[r]) {
+                        pending[r]--;
+                    }
+                    woke = true;
+                }
+            }
+        }
+    }
+}